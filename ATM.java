@@ -0,0 +1,182 @@
+// Enhanced ATM class with detailed error messages
+class ATM extends BankOperations {
+    private static final double MAX_WITHDRAWAL = 1000.0;
+    private static final double MAX_DEPOSIT = 10000.0;
+    private static final double MAX_TRANSFER = 5000.0;
+
+    public ATM(double initialBalance, String pin, String accountNumber, String holderName) {
+        super(initialBalance, pin, accountNumber, holderName);
+    }
+
+    public ATM(double initialBalance, String pin, String accountNumber, String holderName, BankCurrency currency) {
+        super(initialBalance, pin, accountNumber, holderName, currency);
+    }
+
+    public ATM(double initialBalance, String pin, String accountNumber, String holderName, BankCurrency currency,
+               double openingBalance) {
+        super(initialBalance, pin, accountNumber, holderName, currency, openingBalance);
+    }
+
+    @Override
+    public void showMenu() {
+        // This will be handled by the GUI
+    }
+
+    public TransactionResult withdraw(double amount) {
+        if (amount <= 0) {
+            return new TransactionResult(false, "Amount must be greater than " + currency.getPrefix() + "0");
+        }
+
+        long stamp = stateLock.writeLock();
+        try {
+            if (amount > balance) {
+                return new TransactionResult(false, "Insufficient balance. Current balance: " + formatMoney(balance));
+            }
+            if (amount > MAX_WITHDRAWAL) {
+                return new TransactionResult(false, "Daily withdrawal limit exceeded. Maximum: " + formatMoney(MAX_WITHDRAWAL));
+            }
+
+            balance -= amount;
+            recordTransaction("WITHDRAWAL", amount);
+        } finally {
+            stateLock.unlockWrite(stamp);
+            publish();
+        }
+        return new TransactionResult(true, "Successfully withdrawn " + formatMoney(amount));
+    }
+
+    public TransactionResult deposit(double amount) {
+        if (amount <= 0) {
+            return new TransactionResult(false, "Amount must be greater than " + currency.getPrefix() + "0");
+        }
+        if (amount > MAX_DEPOSIT) {
+            return new TransactionResult(false, "Daily deposit limit exceeded. Maximum: " + formatMoney(MAX_DEPOSIT));
+        }
+
+        long stamp = stateLock.writeLock();
+        try {
+            balance += amount;
+            recordTransaction("DEPOSIT", amount);
+        } finally {
+            stateLock.unlockWrite(stamp);
+            publish();
+        }
+        return new TransactionResult(true, "Successfully deposited " + formatMoney(amount));
+    }
+
+    public TransactionResult transfer(double amount, String targetAccount) {
+        if (amount <= 0) {
+            return new TransactionResult(false, "Amount must be greater than " + currency.getPrefix() + "0");
+        }
+
+        long stamp = stateLock.writeLock();
+        try {
+            if (amount > balance) {
+                return new TransactionResult(false, "Insufficient balance. Current balance: " + formatMoney(balance));
+            }
+            if (amount > MAX_TRANSFER) {
+                return new TransactionResult(false, "Daily transfer limit exceeded. Maximum: " + formatMoney(MAX_TRANSFER));
+            }
+            int accountCheck = InputParser.validateAccountNumber(targetAccount, false);
+            if (accountCheck != InputParser.ACCOUNT_OK) {
+                return new TransactionResult(false, InputParser.describeAccountError(accountCheck));
+            }
+            targetAccount = targetAccount.trim().toUpperCase();
+
+            balance -= amount;
+            recordTransaction("TRANSFER TO " + targetAccount, amount);
+        } finally {
+            stateLock.unlockWrite(stamp);
+            publish();
+        }
+        return new TransactionResult(true, "Successfully transferred " + formatMoney(amount) + " to " + targetAccount);
+    }
+
+    // Dispenses cash in another currency. The amount is in cashCurrency and the account
+    // is debited its converted value, checked against the usual balance and limits.
+    public TransactionResult withdraw(double amount, BankCurrency cashCurrency, FxRateService rates) {
+        if (cashCurrency == currency) {
+            return withdraw(amount);
+        }
+        if (amount <= 0) {
+            return new TransactionResult(false, "Amount must be greater than " + cashCurrency.getPrefix() + "0");
+        }
+        FxRateTable table = rates.current();
+        if (!table.hasRate(cashCurrency, currency)) {
+            return noRate(cashCurrency, currency);
+        }
+        double debit = table.convert(amount, cashCurrency, currency);
+        TransactionResult result = withdraw(debit);
+        if (!result.isSuccess()) {
+            return result;
+        }
+        return new TransactionResult(true, "Successfully withdrawn " + BankFormat.formatMoney(amount, cashCurrency)
+                + " (debited " + formatMoney(debit) + ")");
+    }
+
+    // Transfers to an account held in another currency. The amount is in this account's
+    // currency and is debited first, under the usual checks; the target is then credited
+    // the converted amount, with the rate used recorded in its history entry.
+    public TransactionResult transfer(double amount, ATM target, FxRateService rates) {
+        FxRateTable table = rates.current();
+        if (!table.hasRate(currency, target.currency)) {
+            return noRate(currency, target.currency);
+        }
+        TransactionResult result = transfer(amount, target.getAccountNumber());
+        if (!result.isSuccess()) {
+            return result;
+        }
+        double credit = table.convert(amount, currency, target.currency);
+        target.receiveTransfer(credit, accountNumber, table.rate(currency, target.currency));
+        if (target.currency == currency) {
+            return result;
+        }
+        return new TransactionResult(true, result.getMessage() + " (credited "
+                + BankFormat.formatMoney(credit, target.currency) + ")");
+    }
+
+    // The credit side of a transfer: no deposit limit applies, as the money is already in the bank
+    private void receiveTransfer(double amount, String sourceAccount, double rate) {
+        String type = "TRANSFER FROM " + sourceAccount;
+        if (rate != 1.0) {
+            type += " @ " + rate;
+        }
+        long stamp = stateLock.writeLock();
+        try {
+            balance += amount;
+            recordTransaction(type, amount);
+        } finally {
+            stateLock.unlockWrite(stamp);
+            publish();
+        }
+    }
+
+    private static TransactionResult noRate(BankCurrency from, BankCurrency to) {
+        return new TransactionResult(false, "No exchange rate available from " + from + " to " + to);
+    }
+
+    public boolean changePin(String oldPin, String newPin) {
+        // Hashed up front, since PBKDF2 is too slow to run under the lock
+        String newHash = newPin.length() == 4 ? PinHash.hash(newPin) : null;
+        return withCheckedPin(oldPin, accepted -> {
+            if (!accepted) {
+                recordSecurityEvent(AuditEventType.PIN_CHANGE_REJECTED, "current PIN did not match");
+                return false;
+            }
+            if (newHash == null) {
+                recordSecurityEvent(AuditEventType.PIN_CHANGE_REJECTED, "new PIN is not 4 digits");
+                return false;
+            }
+
+            replacePin(newHash);
+            // Goes to the audit stream, not the customer's transaction history
+            recordSecurityEvent(AuditEventType.PIN_CHANGED, "PIN changed");
+            return true;
+        });
+    }
+
+    // Getter methods for limits (for UI display)
+    public double getMaxWithdrawal() { return MAX_WITHDRAWAL; }
+    public double getMaxDeposit() { return MAX_DEPOSIT; }
+    public double getMaxTransfer() { return MAX_TRANSFER; }
+}
@@ -5,203 +5,27 @@
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.text.SimpleDateFormat;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
 
-// Transaction class to store transaction history
-class Transaction {
-    private String type;
-    private double amount;
-    private Date timestamp;
-    private double balanceAfter;
-
-    public Transaction(String type, double amount, double balanceAfter) {
-        this.type = type;
-        this.amount = amount;
-        this.balanceAfter = balanceAfter;
-        this.timestamp = new Date();
-    }
-
-    // Getters
-    public String getType() { return type; }
-    public double getAmount() { return amount; }
-    public Date getTimestamp() { return timestamp; }
-    public double getBalanceAfter() { return balanceAfter; }
-
-    @Override
-    public String toString() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        return String.format("%s | %s | Rs %.2f | Balance: Rs %.2f",
-                sdf.format(timestamp), type, amount, balanceAfter);
-    }
-
-    public String getFormattedAmount() {
-        return String.format("Rs %.2f", amount);
-    }
-
-    public String getFormattedBalance() {
-        return String.format("Rs %.2f", balanceAfter);
-    }
-
-    public String getFormattedTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        return sdf.format(timestamp);
-    }
-}
-
-// Enhanced Bank Operations class
-abstract class BankOperations {
-    protected double balance;
-    protected String pin;
-    protected String accountNumber;
-    protected String accountHolderName;
-    protected List<Transaction> transactionHistory;
-    protected boolean isBlocked;
-    protected int failedAttempts;
-    private static final int MAX_FAILED_ATTEMPTS = 3;
-
-    public BankOperations(double initialBalance, String pin, String accountNumber, String holderName) {
-        this.balance = initialBalance;
-        this.pin = pin;
-        this.accountNumber = accountNumber;
-        this.accountHolderName = holderName;
-        this.transactionHistory = new ArrayList<>();
-        this.isBlocked = false;
-        this.failedAttempts = 0;
-    }
-
-    // Getters and Setters
-    public double getBalance() { return balance; }
-    public void setBalance(double balance) { this.balance = balance; }
-    public String getAccountNumber() { return accountNumber; }
-    public String getAccountHolderName() { return accountHolderName; }
-    public List<Transaction> getTransactionHistory() { return transactionHistory; }
-    public boolean isBlocked() { return isBlocked; }
-
-    public boolean validatePin(String enteredPin) {
-        if (isBlocked) return false;
-
-        if (this.pin.equals(enteredPin)) {
-            failedAttempts = 0;
-            return true;
-        } else {
-            failedAttempts++;
-            if (failedAttempts >= MAX_FAILED_ATTEMPTS) {
-                isBlocked = true;
-            }
-            return false;
-        }
-    }
-
-    public void addTransaction(String type, double amount) {
-        transactionHistory.add(new Transaction(type, amount, balance));
-    }
-
-    public abstract void showMenu();
-}
-
-// Enhanced ATM class with detailed error messages
-class ATM extends BankOperations {
-    private static final double MAX_WITHDRAWAL = 1000.0;
-    private static final double MAX_DEPOSIT = 10000.0;
-    private static final double MAX_TRANSFER = 5000.0;
-
-    public ATM(double initialBalance, String pin, String accountNumber, String holderName) {
-        super(initialBalance, pin, accountNumber, holderName);
-    }
-
-    @Override
-    public void showMenu() {
-        // This will be handled by the GUI
-    }
-
-    public TransactionResult withdraw(double amount) {
-        if (amount <= 0) {
-            return new TransactionResult(false, "Amount must be greater than Rs 0");
-        }
-        if (amount > balance) {
-            return new TransactionResult(false, String.format("Insufficient balance. Current balance: Rs %.2f", balance));
-        }
-        if (amount > MAX_WITHDRAWAL) {
-            return new TransactionResult(false, String.format("Daily withdrawal limit exceeded. Maximum: Rs %.2f", MAX_WITHDRAWAL));
-        }
-
-        balance -= amount;
-        addTransaction("WITHDRAWAL", amount);
-        return new TransactionResult(true, String.format("Successfully withdrawn Rs %.2f", amount));
-    }
-
-    public TransactionResult deposit(double amount) {
-        if (amount <= 0) {
-            return new TransactionResult(false, "Amount must be greater than Rs 0");
-        }
-        if (amount > MAX_DEPOSIT) {
-            return new TransactionResult(false, String.format("Daily deposit limit exceeded. Maximum: Rs %.2f", MAX_DEPOSIT));
-        }
-
-        balance += amount;
-        addTransaction("DEPOSIT", amount);
-        return new TransactionResult(true, String.format("Successfully deposited Rs %.2f", amount));
-    }
-
-    public TransactionResult transfer(double amount, String targetAccount) {
-        if (amount <= 0) {
-            return new TransactionResult(false, "Amount must be greater than Rs 0");
-        }
-        if (amount > balance) {
-            return new TransactionResult(false, String.format("Insufficient balance. Current balance: Rs %.2f", balance));
-        }
-        if (amount > MAX_TRANSFER) {
-            return new TransactionResult(false, String.format("Daily transfer limit exceeded. Maximum: Rs %.2f", MAX_TRANSFER));
-        }
-        if (targetAccount == null || targetAccount.trim().isEmpty()) {
-            return new TransactionResult(false, "Target account number is required");
-        }
-
-        balance -= amount;
-        addTransaction("TRANSFER TO " + targetAccount, amount);
-        return new TransactionResult(true, String.format("Successfully transferred Rs %.2f to %s", amount, targetAccount));
-    }
-
-    public boolean changePin(String oldPin, String newPin) {
-        if (!validatePin(oldPin)) return false;
-        if (newPin.length() != 4) return false;
-
-        this.pin = newPin;
-        addTransaction("PIN CHANGE", 0);
-        return true;
-    }
-
-    // Getter methods for limits (for UI display)
-    public double getMaxWithdrawal() { return MAX_WITHDRAWAL; }
-    public double getMaxDeposit() { return MAX_DEPOSIT; }
-    public double getMaxTransfer() { return MAX_TRANSFER; }
-}
-
-// Transaction result class for better error handling
-class TransactionResult {
-    private boolean success;
-    private String message;
-
-    public TransactionResult(boolean success, String message) {
-        this.success = success;
-        this.message = message;
-    }
-
-    public boolean isSuccess() { return success; }
-    public String getMessage() { return message; }
-}
-
 // Main ATM GUI Application
 public class ATMApplication extends JFrame{
+    private static final String DEMO_ACCOUNT = "ACC123456789";
+
     private ATM atm;
     private JPanel currentPanel;
     private CardLayout cardLayout;
     private JPanel mainContainer;
     private Transaction lastTransaction;
+    private SessionManager sessionManager;
+    private String sessionToken;
+    private AuditLog auditLog;
+    private volatile String auditStatus = "Audit log not opened";
 
     // Color scheme
     private final Color PRIMARY_COLOR = new Color(33, 150, 243);
@@ -212,15 +36,82 @@ public class ATMApplication extends JFrame{
     private final Color CARD_COLOR = Color.WHITE;
 
     public ATMApplication() {
-        // Initialize ATM with sample data (amount in Rs)
-        atm = new ATM(25000.00, "1234", "ACC123456789", "John Doe");
+        // Load the account through the repository, so every change is written back to it
+        AccountRepository repository = openRepository();
+        atm = repository.loadAtm(DEMO_ACCOUNT);
+        Runtime.getRuntime().addShutdownHook(new Thread(repository::close, "repository-close"));
+        // 2 minute idle timeout, 10 minute absolute timeout
+        sessionManager = new SessionManager(2 * 60 * 1000L, 10 * 60 * 1000L, 16);
+        sessionManager.start();
+        openAuditLog();
 
         initializeGUI();
+        if (auditLog == null) {
+            SwingUtilities.invokeLater(() -> showMessage(auditStatus, "Audit Log", JOptionPane.WARNING_MESSAGE));
+        }
+    }
+
+    // The log goes to -Datm.audit.log (atm-audit.log by default), MAC'd with the key in
+    // -Datm.audit.key (the log's name plus .key, created on first start). Keep the key
+    // where whoever can write the log cannot.
+    private void openAuditLog() {
+        Path file = Paths.get(System.getProperty("atm.audit.log", "atm-audit.log"));
+        Path keyFile = Paths.get(System.getProperty("atm.audit.key", file + ".key"));
+        try {
+            auditLog = new AuditLog(file, AuditFormat.readOrCreateKey(keyFile));
+            atm.addSecurityEventListener(auditLog);
+            auditStatus = "Audit log open: " + file;
+            // A JVM exit that skips the window's close handler still drains the writer thread
+            Runtime.getRuntime().addShutdownHook(new Thread(this::closeAuditLog, "audit-log-close"));
+        } catch (IOException e) {
+            auditStatus = "Audit log unavailable: " + e.getMessage();
+        }
+    }
+
+    // Whether the audit log is open, failed to open, or was closed, and why
+    public String getAuditStatus() {
+        return auditStatus;
+    }
+
+    // Accounts live in the database at -Datm.db.url (user and password from atm.db.user and
+    // atm.db.password), or in memory when it is not set. The sample account is created
+    // on first start (amount in Rs).
+    private static AccountRepository openRepository() {
+        String url = System.getProperty("atm.db.url");
+        AccountRepository repository = url == null ? new InMemoryAccountRepository()
+                : new JdbcAccountRepository(new ConnectionPool(url, System.getProperty("atm.db.user", ""),
+                        System.getProperty("atm.db.password", ""), 4, 5000));
+        if (repository.findAccount(DEMO_ACCOUNT) == null) {
+            repository.saveAccount(new AccountRecord(DEMO_ACCOUNT, "John Doe", 25000.00, false, 0));
+            repository.savePin(DEMO_ACCOUNT, "1234");
+        }
+        return repository;
+    }
+
+    // Returns false when events may not have reached the file
+    private boolean closeAuditLog() {
+        try {
+            auditLog.close();
+            auditStatus = "Audit log closed";
+            return true;
+        } catch (IOException e) {
+            auditStatus = "Audit log not closed cleanly: " + e.getMessage();
+            return false;
+        }
     }
 
     private void initializeGUI() {
         setTitle("SecureBank ATM - Advanced Banking System");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        // Drain the audit log before EXIT_ON_CLOSE ends the JVM, while a failure can still be shown
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                if (auditLog != null && !closeAuditLog()) {
+                    showMessage(auditStatus, "Audit Log", JOptionPane.WARNING_MESSAGE);
+                }
+            }
+        });
         setSize(800, 600);
         setLocationRelativeTo(null);
         setResizable(false);
@@ -322,11 +213,14 @@ public class ATMApplication extends JFrame{
 
         enterButton.addActionListener(e -> {
             String enteredPin = new String(pinField.getPassword());
-            if (atm.isBlocked()) {
-                showMessage("Account is blocked due to multiple failed attempts.", "Account Blocked", JOptionPane.ERROR_MESSAGE);
-            } else if (atm.validatePin(enteredPin)) {
+            // Every attempt goes through validatePin, so one on a locked account is audited too
+            if (atm.validatePin(enteredPin)) {
+                sessionToken = sessionManager.open(atm).getToken();
                 cardLayout.show(mainContainer, "MENU");
                 pinField.setText("");
+            } else if (atm.isBlocked()) {
+                showMessage("Account is blocked due to multiple failed attempts.", "Account Blocked", JOptionPane.ERROR_MESSAGE);
+                pinField.setText("");
             } else {
                 showMessage("Invalid PIN. Please try again.", "Invalid PIN", JOptionPane.ERROR_MESSAGE);
                 pinField.setText("");
@@ -389,40 +283,40 @@ public class ATMApplication extends JFrame{
         gbc.gridy = 1;
 
         JButton balanceButton = createMenuButton("Check Balance", "💰");
-        balanceButton.addActionListener(e -> cardLayout.show(mainContainer, "BALANCE"));
+        balanceButton.addActionListener(e -> showSecured("BALANCE"));
         gbc.gridx = 0;
         centerPanel.add(balanceButton, gbc);
 
         JButton withdrawButton = createMenuButton("Withdraw Money", "💸");
-        withdrawButton.addActionListener(e -> cardLayout.show(mainContainer, "WITHDRAW"));
+        withdrawButton.addActionListener(e -> showSecured("WITHDRAW"));
         gbc.gridx = 1;
         centerPanel.add(withdrawButton, gbc);
 
         gbc.gridy = 2;
         JButton depositButton = createMenuButton("Deposit Money", "💵");
-        depositButton.addActionListener(e -> cardLayout.show(mainContainer, "DEPOSIT"));
+        depositButton.addActionListener(e -> showSecured("DEPOSIT"));
         gbc.gridx = 0;
         centerPanel.add(depositButton, gbc);
 
         JButton transferButton = createMenuButton("Transfer Money", "🔄");
-        transferButton.addActionListener(e -> cardLayout.show(mainContainer, "TRANSFER"));
+        transferButton.addActionListener(e -> showSecured("TRANSFER"));
         gbc.gridx = 1;
         centerPanel.add(transferButton, gbc);
 
         gbc.gridy = 3;
         JButton historyButton = createMenuButton("Transaction History","📄");
-        historyButton.addActionListener(e -> cardLayout.show(mainContainer, "HISTORY"));
+        historyButton.addActionListener(e -> showSecured("HISTORY"));
         gbc.gridx = 0;
         centerPanel.add(historyButton, gbc);
 
         JButton settingsButton = createMenuButton("Settings","settings");
-        settingsButton.addActionListener(e -> cardLayout.show(mainContainer, "SETTINGS"));
+        settingsButton.addActionListener(e -> showSecured("SETTINGS"));
         gbc.gridx = 1;
         centerPanel.add(settingsButton, gbc);
 
         gbc.gridy = 4; gbc.gridx = 0; gbc.gridwidth = 2;
         JButton exitButton = createStyledButton("EXIT", ERROR_COLOR);
-        exitButton.addActionListener(e -> cardLayout.show(mainContainer, "WELCOME"));
+        exitButton.addActionListener(e -> endSession());
         centerPanel.add(exitButton, gbc);
 
         panel.add(headerPanel, BorderLayout.NORTH);
@@ -443,7 +337,7 @@ public class ATMApplication extends JFrame{
         JPanel cardPanel = createCard();
         cardPanel.setLayout(new BoxLayout(cardPanel, BoxLayout.Y_AXIS));
 
-        JLabel balanceLabel = new JLabel(String.format("Rs %.2f", atm.getBalance()));
+        JLabel balanceLabel = new JLabel(atm.formatMoney(atm.getBalance()));
         balanceLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         balanceLabel.setFont(new Font("Arial", Font.BOLD, 48));
         balanceLabel.setForeground(SUCCESS_COLOR);
@@ -451,13 +345,13 @@ public class ATMApplication extends JFrame{
         JLabel accountLabel = new JLabel(String.format("Account: %s", atm.getAccountNumber()));
         accountLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        JLabel dateLabel = new JLabel(String.format("As of: %s", new SimpleDateFormat("dd/MM/yyyy HH:mm:ss").format(new Date())));
+        JLabel dateLabel = new JLabel("As of: " + BankFormat.formatDisplayTimestamp(new Date()));
         dateLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         dateLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         dateLabel.setForeground(Color.GRAY);
 
         JButton backButton = createStyledButton("BACK TO MENU", PRIMARY_COLOR);
-        backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
+        backButton.addActionListener(e -> showSecured("MENU"));
 
         cardPanel.add(Box.createVerticalStrut(20));
         cardPanel.add(balanceLabel);
@@ -491,10 +385,10 @@ public class ATMApplication extends JFrame{
         JPanel cardPanel = createCard();
         cardPanel.setLayout(new BoxLayout(cardPanel, BoxLayout.Y_AXIS));
 
-        JLabel instructionLabel = new JLabel("Enter amount to withdraw (Rs):");
+        JLabel instructionLabel = new JLabel("Enter amount to withdraw (" + atm.getCurrency().getPrefix().trim() + "):");
         instructionLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        JLabel limitLabel = new JLabel(String.format("Daily withdrawal limit: Rs %.2f", atm.getMaxWithdrawal()));
+        JLabel limitLabel = new JLabel("Daily withdrawal limit: " + atm.formatMoney(atm.getMaxWithdrawal()));
         limitLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         limitLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         limitLabel.setForeground(Color.GRAY);
@@ -507,35 +401,38 @@ public class ATMApplication extends JFrame{
         JButton backButton = createStyledButton("BACK", PRIMARY_COLOR);
 
         withdrawButton.addActionListener(e -> {
-            try {
-                double amount = Double.parseDouble(amountField.getText());
-                TransactionResult result = atm.withdraw(amount);
-
-                if (result.isSuccess()) {
-                    lastTransaction = atm.getTransactionHistory().get(atm.getTransactionHistory().size() - 1);
-                    int choice = JOptionPane.showOptionDialog(this,
-                            String.format("%s\nNew balance: Rs %.2f\n\nWould you like to print a receipt?",
-                                    result.getMessage(), atm.getBalance()),
-                            "Transaction Successful",
-                            JOptionPane.YES_NO_OPTION,
-                            JOptionPane.INFORMATION_MESSAGE,
-                            null,
-                            new String[]{"Print Receipt", "No Thanks"},
-                            "Print Receipt");
-
-                    if (choice == 0) {
-                        cardLayout.show(mainContainer, "RECEIPT");
-                    }
-                    amountField.setText("");
-                } else {
-                    showMessage(result.getMessage(), "Transaction Failed", JOptionPane.ERROR_MESSAGE);
+            if (!ensureSession()) return;
+
+            long paise = InputParser.parseAmount(amountField.getText());
+            if (InputParser.isError(paise)) {
+                showMessage(InputParser.describeAmountError(paise), "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            double amount = Money.fromPaise(paise);
+            TransactionResult result = atm.withdraw(amount);
+
+            if (result.isSuccess()) {
+                lastTransaction = atm.getLastTransaction();
+                int choice = JOptionPane.showOptionDialog(this,
+                        result.getMessage() + "\nNew balance: " + atm.formatMoney(atm.getBalance())
+                                + "\n\nWould you like to print a receipt?",
+                        "Transaction Successful",
+                        JOptionPane.YES_NO_OPTION,
+                        JOptionPane.INFORMATION_MESSAGE,
+                        null,
+                        new String[]{"Print Receipt", "No Thanks"},
+                        "Print Receipt");
+
+                if (choice == 0) {
+                    showSecured("RECEIPT");
                 }
-            } catch (NumberFormatException ex) {
-                showMessage("Please enter a valid numeric amount.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                amountField.setText("");
+            } else {
+                showMessage(result.getMessage(), "Transaction Failed", JOptionPane.ERROR_MESSAGE);
             }
         });
 
-        backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
+        backButton.addActionListener(e -> showSecured("MENU"));
 
         cardPanel.add(Box.createVerticalStrut(20));
         cardPanel.add(instructionLabel);
@@ -570,10 +467,10 @@ public class ATMApplication extends JFrame{
         JPanel cardPanel = createCard();
         cardPanel.setLayout(new BoxLayout(cardPanel, BoxLayout.Y_AXIS));
 
-        JLabel instructionLabel = new JLabel("Enter amount to deposit (Rs):");
+        JLabel instructionLabel = new JLabel("Enter amount to deposit (" + atm.getCurrency().getPrefix().trim() + "):");
         instructionLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        JLabel limitLabel = new JLabel(String.format("Daily deposit limit: Rs %.2f", atm.getMaxDeposit()));
+        JLabel limitLabel = new JLabel("Daily deposit limit: " + atm.formatMoney(atm.getMaxDeposit()));
         limitLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         limitLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         limitLabel.setForeground(Color.GRAY);
@@ -586,35 +483,38 @@ public class ATMApplication extends JFrame{
         JButton backButton = createStyledButton("BACK", PRIMARY_COLOR);
 
         depositButton.addActionListener(e -> {
-            try {
-                double amount = Double.parseDouble(amountField.getText());
-                TransactionResult result = atm.deposit(amount);
-
-                if (result.isSuccess()) {
-                    lastTransaction = atm.getTransactionHistory().get(atm.getTransactionHistory().size() - 1);
-                    int choice = JOptionPane.showOptionDialog(this,
-                            String.format("%s\nNew balance: Rs %.2f\n\nWould you like to print a receipt?",
-                                    result.getMessage(), atm.getBalance()),
-                            "Transaction Successful",
-                            JOptionPane.YES_NO_OPTION,
-                            JOptionPane.INFORMATION_MESSAGE,
-                            null,
-                            new String[]{"Print Receipt", "No Thanks"},
-                            "Print Receipt");
-
-                    if (choice == 0) {
-                        cardLayout.show(mainContainer, "RECEIPT");
-                    }
-                    amountField.setText("");
-                } else {
-                    showMessage(result.getMessage(), "Transaction Failed", JOptionPane.ERROR_MESSAGE);
+            if (!ensureSession()) return;
+
+            long paise = InputParser.parseAmount(amountField.getText());
+            if (InputParser.isError(paise)) {
+                showMessage(InputParser.describeAmountError(paise), "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            double amount = Money.fromPaise(paise);
+            TransactionResult result = atm.deposit(amount);
+
+            if (result.isSuccess()) {
+                lastTransaction = atm.getLastTransaction();
+                int choice = JOptionPane.showOptionDialog(this,
+                        result.getMessage() + "\nNew balance: " + atm.formatMoney(atm.getBalance())
+                                + "\n\nWould you like to print a receipt?",
+                        "Transaction Successful",
+                        JOptionPane.YES_NO_OPTION,
+                        JOptionPane.INFORMATION_MESSAGE,
+                        null,
+                        new String[]{"Print Receipt", "No Thanks"},
+                        "Print Receipt");
+
+                if (choice == 0) {
+                    showSecured("RECEIPT");
                 }
-            } catch (NumberFormatException ex) {
-                showMessage("Please enter a valid numeric amount.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                amountField.setText("");
+            } else {
+                showMessage(result.getMessage(), "Transaction Failed", JOptionPane.ERROR_MESSAGE);
             }
         });
 
-        backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
+        backButton.addActionListener(e -> showSecured("MENU"));
 
         cardPanel.add(Box.createVerticalStrut(20));
         cardPanel.add(instructionLabel);
@@ -656,10 +556,10 @@ public class ATMApplication extends JFrame{
         accountField.setMaximumSize(new Dimension(200, 30));
         accountField.setHorizontalAlignment(SwingConstants.CENTER);
 
-        JLabel instructionLabel2 = new JLabel("Enter amount to transfer (Rs):");
+        JLabel instructionLabel2 = new JLabel("Enter amount to transfer (" + atm.getCurrency().getPrefix().trim() + "):");
         instructionLabel2.setAlignmentX(Component.CENTER_ALIGNMENT);
 
-        JLabel limitLabel = new JLabel(String.format("Daily transfer limit: Rs %.2f", atm.getMaxTransfer()));
+        JLabel limitLabel = new JLabel("Daily transfer limit: " + atm.formatMoney(atm.getMaxTransfer()));
         limitLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
         limitLabel.setFont(new Font("Arial", Font.PLAIN, 12));
         limitLabel.setForeground(Color.GRAY);
@@ -672,37 +572,40 @@ public class ATMApplication extends JFrame{
         JButton backButton = createStyledButton("BACK", PRIMARY_COLOR);
 
         transferButton.addActionListener(e -> {
-            try {
-                String targetAccount = accountField.getText().trim();
-                double amount = Double.parseDouble(amountField.getText());
-                TransactionResult result = atm.transfer(amount, targetAccount);
-
-                if (result.isSuccess()) {
-                    lastTransaction = atm.getTransactionHistory().get(atm.getTransactionHistory().size() - 1);
-                    int choice = JOptionPane.showOptionDialog(this,
-                            String.format("%s\nNew balance: Rs %.2f\n\nWould you like to print a receipt?",
-                                    result.getMessage(), atm.getBalance()),
-                            "Transaction Successful",
-                            JOptionPane.YES_NO_OPTION,
-                            JOptionPane.INFORMATION_MESSAGE,
-                            null,
-                            new String[]{"Print Receipt", "No Thanks"},
-                            "Print Receipt");
-
-                    if (choice == 0) {
-                        cardLayout.show(mainContainer, "RECEIPT");
-                    }
-                    accountField.setText("");
-                    amountField.setText("");
-                } else {
-                    showMessage(result.getMessage(), "Transaction Failed", JOptionPane.ERROR_MESSAGE);
+            if (!ensureSession()) return;
+
+            String targetAccount = accountField.getText().trim();
+            long paise = InputParser.parseAmount(amountField.getText());
+            if (InputParser.isError(paise)) {
+                showMessage(InputParser.describeAmountError(paise), "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            double amount = Money.fromPaise(paise);
+            TransactionResult result = atm.transfer(amount, targetAccount);
+
+            if (result.isSuccess()) {
+                lastTransaction = atm.getLastTransaction();
+                int choice = JOptionPane.showOptionDialog(this,
+                        result.getMessage() + "\nNew balance: " + atm.formatMoney(atm.getBalance())
+                                + "\n\nWould you like to print a receipt?",
+                        "Transaction Successful",
+                        JOptionPane.YES_NO_OPTION,
+                        JOptionPane.INFORMATION_MESSAGE,
+                        null,
+                        new String[]{"Print Receipt", "No Thanks"},
+                        "Print Receipt");
+
+                if (choice == 0) {
+                    showSecured("RECEIPT");
                 }
-            } catch (NumberFormatException ex) {
-                showMessage("Please enter a valid numeric amount.", "Invalid Input", JOptionPane.ERROR_MESSAGE);
+                accountField.setText("");
+                amountField.setText("");
+            } else {
+                showMessage(result.getMessage(), "Transaction Failed", JOptionPane.ERROR_MESSAGE);
             }
         });
 
-        backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
+        backButton.addActionListener(e -> showSecured("MENU"));
 
         cardPanel.add(Box.createVerticalStrut(20));
         cardPanel.add(instructionLabel1);
@@ -764,7 +667,7 @@ public class ATMApplication extends JFrame{
         scrollPane.setPreferredSize(new Dimension(700, 300));
 
         JButton backButton = createStyledButton("BACK TO MENU", PRIMARY_COLOR);
-        backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
+        backButton.addActionListener(e -> showSecured("MENU"));
 
         if (history.isEmpty()) {
             JLabel noDataLabel = new JLabel("No transactions found", SwingConstants.CENTER);
@@ -825,6 +728,8 @@ public class ATMApplication extends JFrame{
         JButton backButton = createStyledButton("BACK", PRIMARY_COLOR);
 
         changePinButton.addActionListener(e -> {
+            if (!ensureSession()) return;
+
             String oldPin = new String(oldPinField.getPassword());
             String newPin = new String(newPinField.getPassword());
             String confirmPin = new String(confirmPinField.getPassword());
@@ -846,7 +751,7 @@ public class ATMApplication extends JFrame{
             }
         });
 
-        backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
+        backButton.addActionListener(e -> showSecured("MENU"));
 
         cardPanel.add(Box.createVerticalStrut(20));
         cardPanel.add(instructionLabel);
@@ -934,7 +839,7 @@ public class ATMApplication extends JFrame{
             showMessage("Receipt saved as receipt.txt", "Save Success", JOptionPane.INFORMATION_MESSAGE);
         });
 
-        backButton.addActionListener(e -> cardLayout.show(mainContainer, "MENU"));
+        backButton.addActionListener(e -> showSecured("MENU"));
 
         JPanel buttonPanel = new JPanel(new FlowLayout());
         buttonPanel.add(printButton);
@@ -1021,6 +926,29 @@ public class ATMApplication extends JFrame{
         return button;
     }
 
+    // Shows a card that needs a logged-in session, or returns to the welcome screen
+    private void showSecured(String card) {
+        if (ensureSession()) {
+            cardLayout.show(mainContainer, card);
+        }
+    }
+
+    private boolean ensureSession() {
+        if (sessionManager.validate(sessionToken) != null) {
+            return true;
+        }
+        sessionToken = null;
+        showMessage("Your session has expired. Please enter your PIN again.", "Session Expired", JOptionPane.WARNING_MESSAGE);
+        cardLayout.show(mainContainer, "WELCOME");
+        return false;
+    }
+
+    private void endSession() {
+        sessionManager.close(sessionToken);
+        sessionToken = null;
+        cardLayout.show(mainContainer, "WELCOME");
+    }
+
     private void showMessage(String message, String title, int messageType) {
         JOptionPane.showMessageDialog(this, message, title, messageType);
     }
@@ -1035,4 +963,4 @@ public class ATMApplication extends JFrame{
             new ATMApplication().setVisible(true);
         });
     }
-}
\ No newline at end of file
+}
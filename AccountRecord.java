@@ -0,0 +1,45 @@
+// Stored state of one account, without its credentials or history.
+// The opening balance is the balance before the first history entry the repository
+// holds; repositories fix it when the account is first saved and keep it after that.
+class AccountRecord {
+    private final String accountNumber;
+    private final String holderName;
+    private final double balance;
+    private final boolean blocked;
+    private final int failedAttempts;
+    private final BankCurrency currency;
+    private final double openingBalance;
+
+    public AccountRecord(String accountNumber, String holderName, double balance, boolean blocked, int failedAttempts) {
+        this(accountNumber, holderName, balance, blocked, failedAttempts, BankCurrency.INR);
+    }
+
+    public AccountRecord(String accountNumber, String holderName, double balance, boolean blocked, int failedAttempts,
+                         BankCurrency currency) {
+        this(accountNumber, holderName, balance, blocked, failedAttempts, currency, balance);
+    }
+
+    public AccountRecord(String accountNumber, String holderName, double balance, boolean blocked, int failedAttempts,
+                         BankCurrency currency, double openingBalance) {
+        this.accountNumber = accountNumber;
+        this.holderName = holderName;
+        this.balance = balance;
+        this.blocked = blocked;
+        this.failedAttempts = failedAttempts;
+        this.currency = currency;
+        this.openingBalance = openingBalance;
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public String getHolderName() { return holderName; }
+    public double getBalance() { return balance; }
+    public boolean isBlocked() { return blocked; }
+    public int getFailedAttempts() { return failedAttempts; }
+    public BankCurrency getCurrency() { return currency; }
+    public double getOpeningBalance() { return openingBalance; }
+
+    // The same record with another opening balance
+    public AccountRecord withOpeningBalance(double opening) {
+        return new AccountRecord(accountNumber, holderName, balance, blocked, failedAttempts, currency, opening);
+    }
+}
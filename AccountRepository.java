@@ -0,0 +1,53 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+// Storage backend for accounts, credentials and transaction history
+interface AccountRepository extends AutoCloseable {
+    // Returns null when the account does not exist
+    AccountRecord findAccount(String accountNumber);
+
+    // Inserts or updates the account. An update keeps the stored opening balance.
+    void saveAccount(AccountRecord account);
+
+    void saveAccounts(Collection<AccountRecord> accounts);
+
+    // Returns null when no PIN is stored for the account. The value may be a PinHash
+    // rather than the PIN itself; ATM accepts either form.
+    String findPin(String accountNumber);
+
+    void savePin(String accountNumber, String pin);
+
+    // Appends to the end of the account's history, keeping the given order
+    void appendTransactions(String accountNumber, List<Transaction> transactions);
+
+    // Streams the history oldest first without materializing it
+    void forEachTransaction(String accountNumber, Consumer<Transaction> consumer);
+
+    // Holds no connection or lock while calling the consumer, so the consumer may call
+    // back into the repository, for example to stream each account's history
+    void forEachAccount(Consumer<AccountRecord> consumer);
+
+    int countAccounts();
+
+    default List<Transaction> findTransactions(String accountNumber) {
+        List<Transaction> history = new ArrayList<>();
+        forEachTransaction(accountNumber, history::add);
+        return history;
+    }
+
+    // Builds a live ATM for the account that writes its changes back here, or returns
+    // null when the account does not exist
+    default ATM loadAtm(String accountNumber) {
+        AccountRecord record = findAccount(accountNumber);
+        String pin = findPin(accountNumber);
+        if (record == null || pin == null) return null;
+        ATM atm = new ATM(record.getBalance(), pin, record.getAccountNumber(), record.getHolderName(),
+                record.getCurrency(), record.getOpeningBalance());
+        atm.restore(findTransactions(accountNumber), record.isBlocked(), record.getFailedAttempts());
+        atm.setRepository(this);
+        return atm;
+    }
+
+    @Override
+    default void close() { }
+}
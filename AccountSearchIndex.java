@@ -0,0 +1,412 @@
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntPredicate;
+
+// In-memory index for operator lookups by holder name and account number.
+//
+// Every account gets an int id. Holder names and account numbers are lower-cased and
+// broken into trigrams, with each word padded by two leading spaces and one trailing
+// space, so "john" yields "  j", " jo", "joh", "ohn", "hn ". The leading grams make
+// one- and two-letter prefixes searchable. Each character maps to a 6-bit code, so a
+// trigram is an 18-bit int that indexes an array of postings directly. A postings
+// list is a sorted int[] of ids that grows as needed.
+//
+// Prefix and partial account number queries intersect the postings of the query's grams
+// and then check each candidate's text. Fuzzy name queries count shared grams per id
+// (ScanCount) and rank by Jaccard similarity.
+//
+// Updates are incremental. A new or renamed account gets a fresh id that is appended
+// to its postings; the old id is tombstoned, skipped by queries, and dropped when its
+// lists are next compacted. Ids are never reused, so the per-id arrays grow with the
+// number of updates. Queries share a read lock and updates take the write lock.
+class AccountSearchIndex {
+    private static final int GRAM_SPACE = 1 << 18;
+    private static final int[] EMPTY = new int[0];
+
+    // Sorted ids that contain one gram. Ids only ever grow, so adding is an append.
+    // Removed ids stay in the list until half of it is dead, then it is compacted.
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+        int dead;
+
+        void add(int id) {
+            if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = id;
+        }
+
+        void markDead(String[] live) {
+            if (++dead * 2 <= size) return;
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (live[ids[i]] != null) ids[n++] = ids[i];
+            }
+            size = n;
+            dead = 0;
+            if (ids.length > 16 && size < ids.length / 4) ids = Arrays.copyOf(ids, ids.length / 2);
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private final Postings[] nameGrams = new Postings[GRAM_SPACE];
+    private final Postings[] accountGrams = new Postings[GRAM_SPACE];
+    private final Map<String, Integer> idByAccount = new HashMap<>();
+
+    // Indexed by id; null once removed
+    private String[] accountNumbers = new String[1024];
+    private String[] holderNames = new String[1024];
+    private String[] normalizedNames = new String[1024];
+    private int[] nameGramCounts = new int[1024];
+    private int nextId;
+    private int liveCount;
+
+    // Per-thread ScanCount buffers for fuzzy queries
+    private final ThreadLocal<int[]> counts = ThreadLocal.withInitial(() -> EMPTY);
+
+    public static AccountSearchIndex build(AccountRepository repository) {
+        AccountSearchIndex index = new AccountSearchIndex();
+        repository.forEachAccount(index::put);
+        return index;
+    }
+
+    public void put(AccountRecord record) {
+        put(record.getAccountNumber(), record.getHolderName());
+    }
+
+    // Adds the account, or re-indexes it when its holder name changed
+    public void put(String accountNumber, String holderName) {
+        String normalizedName = normalize(holderName);
+        int[] newNameGrams = grams(normalizedName, true);
+        int[] newAccountGrams = grams(normalize(accountNumber), true);
+        long stamp = lock.writeLock();
+        try {
+            Integer existing = idByAccount.get(accountNumber);
+            if (existing != null) {
+                if (normalizedName.equals(normalizedNames[existing])) {
+                    holderNames[existing] = holderName;
+                    return;
+                }
+                kill(existing);
+            } else {
+                liveCount++;
+            }
+            int id = nextId++;
+            ensureCapacity(id);
+            idByAccount.put(accountNumber, id);
+            accountNumbers[id] = accountNumber;
+            holderNames[id] = holderName;
+            normalizedNames[id] = normalizedName;
+            nameGramCounts[id] = newNameGrams.length;
+            for (int gram : newNameGrams) {
+                postings(nameGrams, gram).add(id);
+            }
+            for (int gram : newAccountGrams) {
+                postings(accountGrams, gram).add(id);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // True when the account is indexed under exactly this holder name
+    public boolean contains(String accountNumber, String holderName) {
+        long stamp = lock.readLock();
+        try {
+            Integer id = idByAccount.get(accountNumber);
+            return id != null && holderName.equals(holderNames[id]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean remove(String accountNumber) {
+        long stamp = lock.writeLock();
+        try {
+            Integer id = idByAccount.remove(accountNumber);
+            if (id == null) return false;
+            kill(id);
+            liveCount--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Tombstones an id; caller holds the write lock
+    private void kill(int id) {
+        int[] oldNameGrams = grams(normalizedNames[id], true);
+        int[] oldAccountGrams = grams(normalize(accountNumbers[id]), true);
+        accountNumbers[id] = null;
+        holderNames[id] = null;
+        normalizedNames[id] = null;
+        for (int gram : oldNameGrams) {
+            nameGrams[gram].markDead(accountNumbers);
+        }
+        for (int gram : oldAccountGrams) {
+            accountGrams[gram].markDead(accountNumbers);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return liveCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Accounts where every query word starts some word of the holder name, in id order
+    public List<SearchHit> searchNamePrefix(String prefix, int limit) {
+        String query = normalize(prefix);
+        if (query.isEmpty()) return Collections.emptyList();
+        String[] words = query.split(" ");
+        String[] wordStarts = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            wordStarts[i] = " " + words[i];
+        }
+        int[] queryGrams = grams(query, false);
+        List<SearchHit> hits = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            intersect(nameGrams, queryGrams, id -> {
+                if (normalizedNames[id] != null && startsEveryWord(normalizedNames[id], words, wordStarts)) {
+                    hits.add(new SearchHit(accountNumbers[id], holderNames[id], 1.0));
+                }
+                return hits.size() < limit;
+            });
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return hits;
+    }
+
+    // Accounts whose number contains the partial number; one or two characters match a prefix
+    public List<SearchHit> searchAccountNumber(String partial, int limit) {
+        String query = normalize(partial).replace(" ", "");
+        if (query.isEmpty()) return Collections.emptyList();
+        boolean prefixOnly = query.length() < 3;
+        int[] queryGrams = prefixOnly ? grams(query, false) : substringGrams(query);
+        List<SearchHit> hits = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            intersect(accountGrams, queryGrams, id -> {
+                if (accountNumbers[id] == null) return true;
+                String number = accountNumbers[id].toLowerCase(Locale.ROOT);
+                if (prefixOnly ? number.startsWith(query) : number.contains(query)) {
+                    hits.add(new SearchHit(accountNumbers[id], holderNames[id], 1.0));
+                }
+                return hits.size() < limit;
+            });
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return hits;
+    }
+
+    // Holder names that share at least minSimilarity (Jaccard over trigrams) with the
+    // query, best first. Tolerates typos, missing letters and swapped words.
+    public List<SearchHit> searchNameFuzzy(String name, int limit, double minSimilarity) {
+        int[] queryGrams = grams(normalize(name), true);
+        int q = queryGrams.length;
+        if (q == 0 || limit <= 0) return Collections.emptyList();
+        // Jaccard >= t needs at least t * |query| shared grams, so a match must appear in at
+        // least one of the q - minShared + 1 shortest lists (prefix filter). Only those can
+        // add candidates. The remaining lists are probed per candidate with binary search
+        // while that is cheaper than reading them, and read once otherwise.
+        int minShared = Math.max(1, (int) Math.ceil(minSimilarity * q));
+        int scanned = q - minShared + 1;
+        PriorityQueue<SearchHit> best = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble(SearchHit::getScore));
+
+        long stamp = lock.readLock();
+        try {
+            Postings[] lists = new Postings[q];
+            for (int i = 0; i < q; i++) {
+                lists[i] = nameGrams[queryGrams[i]] != null ? nameGrams[queryGrams[i]] : new Postings();
+            }
+            Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+
+            int[] shared = counts.get();
+            if (shared.length < nextId) {
+                shared = new int[accountNumbers.length];
+                counts.set(shared);
+            }
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            for (int l = 0; l < scanned; l++) {
+                Postings p = lists[l];
+                for (int i = 0; i < p.size; i++) {
+                    int id = p.ids[i];
+                    if (shared[id]++ == 0) {
+                        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = id;
+                    }
+                }
+            }
+            int probed = scanned;
+            while (probed < q && (long) touchedCount * (33 - Integer.numberOfLeadingZeros(lists[probed].size))
+                    < lists[probed].size) {
+                probed++;
+            }
+            for (int l = probed; l < q; l++) {
+                Postings p = lists[l];
+                for (int i = 0; i < p.size; i++) {
+                    int id = p.ids[i];
+                    if (shared[id] > 0) shared[id]++;
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int id = touched[i];
+                int common = shared[id];
+                shared[id] = 0;
+                if (normalizedNames[id] == null) continue;
+                int docGrams = nameGramCounts[id];
+                // Jaccard can be at most min/max of the two gram counts
+                if (Math.min(q, docGrams) < minSimilarity * Math.max(q, docGrams)) continue;
+                for (int l = scanned; l < probed && common + (probed - l) >= minShared; l++) {
+                    if (Arrays.binarySearch(lists[l].ids, 0, lists[l].size, id) >= 0) common++;
+                }
+                if (common < minShared) continue;
+                double score = (double) common / (q + docGrams - common);
+                if (score < minSimilarity) continue;
+                if (best.size() < limit) {
+                    best.add(new SearchHit(accountNumbers[id], holderNames[id], score));
+                } else if (score > best.peek().getScore()) {
+                    best.poll();
+                    best.add(new SearchHit(accountNumbers[id], holderNames[id], score));
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        List<SearchHit> hits = new ArrayList<>(best);
+        hits.sort(Comparator.comparingDouble(SearchHit::getScore).reversed());
+        return hits;
+    }
+
+    // Passes every id present in all the grams' postings to the visitor, in id order,
+    // until the visitor returns false
+    private static void intersect(Postings[] index, int[] queryGrams, IntPredicate visitor) {
+        if (queryGrams.length == 0) return;
+        Postings[] lists = new Postings[queryGrams.length];
+        for (int i = 0; i < queryGrams.length; i++) {
+            lists[i] = index[queryGrams[i]];
+            if (lists[i] == null || lists[i].size == 0) return;
+        }
+        // Walk the shortest list and probe the others, skipping ahead with binary search
+        Arrays.sort(lists, Comparator.comparingInt(p -> p.size));
+        int[] cursors = new int[lists.length];
+        Postings driver = lists[0];
+        outer:
+        for (int i = 0; i < driver.size; i++) {
+            int id = driver.ids[i];
+            for (int l = 1; l < lists.length; l++) {
+                Postings p = lists[l];
+                int at = Arrays.binarySearch(p.ids, cursors[l], p.size, id);
+                if (at < 0) {
+                    cursors[l] = -at - 1;
+                    if (cursors[l] == p.size) return;
+                    continue outer;
+                }
+                cursors[l] = at;
+            }
+            if (!visitor.test(id)) return;
+        }
+    }
+
+    private static boolean startsEveryWord(String name, String[] words, String[] wordStarts) {
+        for (int i = 0; i < words.length; i++) {
+            if (!name.startsWith(words[i]) && !name.contains(wordStarts[i])) return false;
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < accountNumbers.length) return;
+        int capacity = accountNumbers.length * 2;
+        accountNumbers = Arrays.copyOf(accountNumbers, capacity);
+        holderNames = Arrays.copyOf(holderNames, capacity);
+        normalizedNames = Arrays.copyOf(normalizedNames, capacity);
+        nameGramCounts = Arrays.copyOf(nameGramCounts, capacity);
+    }
+
+    private static Postings postings(Postings[] index, int gram) {
+        Postings p = index[gram];
+        if (p == null) {
+            p = new Postings();
+            index[gram] = p;
+        }
+        return p;
+    }
+
+    // Lower case, with runs of anything other than letters and digits collapsed to one space
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else if (!space) {
+                sb.append(' ');
+                space = true;
+            }
+        }
+        int length = sb.length();
+        if (length > 0 && sb.charAt(length - 1) == ' ') sb.setLength(length - 1);
+        return sb.toString();
+    }
+
+    // Distinct padded trigrams of every word. Prefix queries leave out the trailing
+    // grams, so each query word only has to start a word of the name.
+    private static int[] grams(String normalized, boolean closeWords) {
+        if (normalized.isEmpty()) return EMPTY;
+        int[] out = new int[normalized.length() * 2 + 4];
+        int count = 0;
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i <= normalized.length(); i++) {
+            int c = i == normalized.length() ? 0 : code(normalized.charAt(i));
+            if (c != 0 || (b != 0 && closeWords)) {
+                out[count++] = (a << 12) | (b << 6) | c;
+            }
+            if (c == 0) {
+                a = 0;
+                b = 0;
+            } else {
+                a = b;
+                b = c;
+            }
+        }
+        return distinct(out, count);
+    }
+
+    // Unpadded trigrams, for substring matches inside an account number
+    private static int[] substringGrams(String text) {
+        int[] out = new int[Math.max(0, text.length() - 2)];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (code(text.charAt(i)) << 12) | (code(text.charAt(i + 1)) << 6) | code(text.charAt(i + 2));
+        }
+        return distinct(out, out.length);
+    }
+
+    private static int[] distinct(int[] grams, int count) {
+        Arrays.sort(grams, 0, count);
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (n == 0 || grams[n - 1] != grams[i]) grams[n++] = grams[i];
+        }
+        return Arrays.copyOf(grams, n);
+    }
+
+    // 0 is the word boundary, 1-26 letters, 27-36 digits, 37-63 other letters folded together
+    private static int code(char c) {
+        if (c == ' ') return 0;
+        if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+        if (c >= '0' && c <= '9') return c - '0' + 27;
+        return 37 + c % 27;
+    }
+}
@@ -0,0 +1,25 @@
+// Which rows a query looks at: a time range [fromMillis, toMillis), a set of kinds and
+// optionally one currency. Amounts in different currencies are never added together
+// unless the filter leaves currency open.
+class AnalyticsFilter {
+    final long fromMillis;
+    final long toMillis;
+    final long tagMask;
+
+    public AnalyticsFilter(long fromMillis, long toMillis, BankCurrency currency, TransactionKind... kinds) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        long mask = 0;
+        for (BankCurrency c : BankCurrency.values()) {
+            if (currency != null && c != currency) continue;
+            for (TransactionKind kind : kinds.length == 0 ? TransactionKind.VALUES : kinds) {
+                mask |= 1L << HistoryColumns.tag(c, kind);
+            }
+        }
+        this.tagMask = mask;
+    }
+
+    public static AnalyticsFilter of(BankCurrency currency, TransactionKind... kinds) {
+        return new AnalyticsFilter(Long.MIN_VALUE, Long.MAX_VALUE, currency, kinds);
+    }
+}
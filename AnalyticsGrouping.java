@@ -0,0 +1,25 @@
+// How matching rows are grouped
+class AnalyticsGrouping {
+    static final int ALL = 0;
+    static final int ACCOUNT = 1;
+    static final int KIND = 2;
+    static final int TIME_BUCKET = 3;
+
+    final int mode;
+    final long bucketMillis;
+
+    private AnalyticsGrouping(int mode, long bucketMillis) {
+        this.mode = mode;
+        this.bucketMillis = bucketMillis;
+    }
+
+    public static AnalyticsGrouping all() { return new AnalyticsGrouping(ALL, 0); }
+    public static AnalyticsGrouping byAccount() { return new AnalyticsGrouping(ACCOUNT, 0); }
+    public static AnalyticsGrouping byKind() { return new AnalyticsGrouping(KIND, 0); }
+
+    // Buckets are aligned to the epoch in UTC, e.g. whole UTC hours for 3600000
+    public static AnalyticsGrouping byTimeBucket(long bucketMillis) {
+        if (bucketMillis <= 0) throw new IllegalArgumentException("Bucket must be positive");
+        return new AnalyticsGrouping(TIME_BUCKET, bucketMillis);
+    }
+}
@@ -0,0 +1,8 @@
+// Security events kept out of the customer's transaction history
+enum AuditEventType {
+    LOGIN_FAILED,
+    LOGIN_REJECTED_LOCKED,
+    ACCOUNT_LOCKED,
+    PIN_CHANGED,
+    PIN_CHANGE_REJECTED
+}
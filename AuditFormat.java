@@ -0,0 +1,149 @@
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+// Line format shared by AuditLog and AuditVerifier, one event per line:
+//   seq|timestampMillis|account|TYPE|detail|prevHash|hash
+// hash is the hex HMAC-SHA256, under the log's secret key, of everything before its
+// separator, prevHash included, so each line commits to the whole chain before it and
+// cannot be recomputed without the key. The first line's prevHash is GENESIS.
+// Changing, removing or reordering any line breaks the chain from that point on.
+//
+// Cutting lines off the end leaves a valid chain, so the last seq and hash are also kept
+// in a head file beside the log, under the same key. It has two fixed-size slots that are
+// written in turn, so a torn write loses at most the newer one; the head may lag the log
+// by one batch after a crash, never lead it.
+final class AuditFormat {
+    static final int HASH_HEX_LENGTH = 64;
+    static final String GENESIS = repeat('0', HASH_HEX_LENGTH);
+    static final int HEAD_SLOT_BYTES = 192;
+    private static final int MIN_KEY_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // The newest valid head slot
+    static final class Head {
+        final long seq;
+        final String hash;
+        final int slot;
+
+        Head(long seq, String hash, int slot) {
+            this.seq = seq;
+            this.hash = hash;
+            this.slot = slot;
+        }
+    }
+
+    private AuditFormat() { }
+
+    static Mac newMac(byte[] key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    static Path headFile(Path log) {
+        return log.resolveSibling(log.getFileName() + ".head");
+    }
+
+    static byte[] readKey(Path keyFile) throws IOException {
+        byte[] key = Files.readAllBytes(keyFile);
+        if (key.length < MIN_KEY_BYTES) {
+            throw new IOException("Audit key " + keyFile + " is shorter than " + MIN_KEY_BYTES + " bytes");
+        }
+        return key;
+    }
+
+    // Creates a random key, readable by the owner only where the file system allows, on first use
+    static byte[] readOrCreateKey(Path keyFile) throws IOException {
+        if (!Files.exists(keyFile)) {
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            try {
+                if (keyFile.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                    Files.createFile(keyFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+                } else {
+                    Files.createFile(keyFile);
+                }
+                Files.write(keyFile, key);
+            } catch (FileAlreadyExistsException e) {
+                // Created by another process in the meantime
+            }
+        }
+        return readKey(keyFile);
+    }
+
+    static Head readHead(FileChannel channel, Mac mac) throws IOException {
+        Head newest = null;
+        for (int slot = 0; slot < 2; slot++) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEAD_SLOT_BYTES);
+            channel.read(buffer, (long) slot * HEAD_SLOT_BYTES);
+            String[] fields = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim().split("\\|");
+            if (fields.length != 3 || !fields[2].equals(headMac(mac, fields[0], fields[1]))) continue;
+            long seq = Long.parseLong(fields[0]);
+            if (newest == null || seq > newest.seq) newest = new Head(seq, fields[1], slot);
+        }
+        return newest;
+    }
+
+    static Head readHead(Path log, Mac mac) throws IOException {
+        Path head = headFile(log);
+        if (!Files.exists(head)) return null;
+        try (FileChannel channel = FileChannel.open(head, StandardOpenOption.READ)) {
+            return readHead(channel, mac);
+        }
+    }
+
+    static void writeHead(FileChannel channel, Mac mac, int slot, long seq, String hash) throws IOException {
+        String text = seq + "|" + hash + "|" + headMac(mac, Long.toString(seq), hash);
+        byte[] record = new byte[HEAD_SLOT_BYTES];
+        Arrays.fill(record, (byte) ' ');
+        System.arraycopy(text.getBytes(StandardCharsets.US_ASCII), 0, record, 0, text.length());
+        record[HEAD_SLOT_BYTES - 1] = '\n';
+        ByteBuffer out = ByteBuffer.wrap(record);
+        long position = (long) slot * HEAD_SLOT_BYTES;
+        while (out.hasRemaining()) {
+            position += channel.write(out, position);
+        }
+        channel.force(false);
+    }
+
+    private static String headMac(Mac mac, String seq, String hash) {
+        return toHex(mac.doFinal(("head|" + seq + "|" + hash).getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+
+    // Keeps free text from breaking the field and line structure
+    static String clean(String text) {
+        if (text == null) return "";
+        return text.replace('|', '/').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
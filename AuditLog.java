@@ -0,0 +1,213 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.crypto.Mac;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tamper-evident, append-only log of security events.
+// Register it with BankOperations.addSecurityEventListener. The login path only puts a
+// small record on a queue; a writer thread assigns sequence numbers, MACs the chain,
+// and appends each drained batch with one write and one force to disk, then records the
+// new head in the head file. Events are never dropped: when the queue is full the caller
+// blocks until the writer catches up.
+// Reopening an existing log continues its chain; a torn last line left by a crash is cut
+// off. A log whose last line fails its MAC or ends before its head is refused.
+class AuditLog implements SecurityEventListener, Closeable {
+    private static final class Pending {
+        final long timestamp;
+        final String accountNumber;
+        final AuditEventType type;
+        final String detail;
+
+        Pending(String accountNumber, AuditEventType type, String detail) {
+            this.timestamp = System.currentTimeMillis();
+            this.accountNumber = accountNumber;
+            this.type = type;
+            this.detail = detail;
+        }
+    }
+
+    private final FileChannel channel;
+    private final FileChannel headChannel;
+    private final Mac mac;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    private long seq;
+    private String lastHash;
+    private int nextHeadSlot;
+    private final AtomicLong enqueued = new AtomicLong();
+    private volatile long written;
+    private final AtomicLong batches = new AtomicLong();
+
+    public AuditLog(Path file, byte[] key, int queueCapacity, int batchSize) throws IOException {
+        this.mac = AuditFormat.newMac(key);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.headChannel = FileChannel.open(AuditFormat.headFile(file), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        try {
+            resumeChain();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            headChannel.close();
+            throw e;
+        }
+        this.writerThread = new Thread(this::writeLoop, "audit-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public AuditLog(Path file, byte[] key) throws IOException {
+        this(file, key, 8192, 256);
+    }
+
+    // Finds the last complete line, truncating anything after it, and continues from there
+    private void resumeChain() throws IOException {
+        seq = 0;
+        lastHash = AuditFormat.GENESIS;
+        AuditFormat.Head head = AuditFormat.readHead(headChannel, mac);
+        if (head != null) nextHeadSlot = 1 - head.slot;
+        long size = channel.size();
+        if (size == 0) {
+            if (head != null) throw new IOException("Audit log is empty but its head is at seq " + head.seq);
+            return;
+        }
+
+        int tailLength = (int) Math.min(size, 64 * 1024);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength);
+        channel.read(tail, size - tailLength);
+        byte[] bytes = tail.array();
+        int end = tailLength - 1;
+        while (end >= 0 && bytes[end] != '\n') end--;
+        if (end < 0) {
+            throw new IOException("Audit log has no complete line in its last " + tailLength + " bytes");
+        }
+        int start = end - 1;
+        while (start >= 0 && bytes[start] != '\n') start--;
+        if (start < 0 && tailLength < size) {
+            throw new IOException("Audit log line longer than " + tailLength + " bytes");
+        }
+        String line = new String(bytes, start + 1, end - start - 1, StandardCharsets.UTF_8);
+        seq = Long.parseLong(line.substring(0, line.indexOf('|')));
+        lastHash = line.substring(line.length() - AuditFormat.HASH_HEX_LENGTH);
+        byte[] signed = line.substring(0, line.length() - AuditFormat.HASH_HEX_LENGTH - 1).getBytes(StandardCharsets.UTF_8);
+        if (!lastHash.equals(AuditFormat.toHex(mac.doFinal(signed)))) {
+            throw new IOException("Audit log's last line fails its MAC; wrong key or altered log");
+        }
+        if (head == null || head.seq > seq || (head.seq == seq && !head.hash.equals(lastHash))) {
+            throw new IOException("Audit log ends at seq " + seq + " but its head is "
+                    + (head == null ? "missing" : "at seq " + head.seq) + "; it may have been cut short");
+        }
+
+        long validEnd = size - tailLength + end + 1;
+        if (validEnd < size) {
+            channel.truncate(validEnd);
+        }
+    }
+
+    @Override
+    public void onSecurityEvent(String accountNumber, AuditEventType type, String detail) {
+        if (!running) return;
+        try {
+            queue.put(new Pending(accountNumber, type, detail));
+            enqueued.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        StringBuilder line = new StringBuilder(256);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(batchSize * 160);
+        long position = 0;
+        try {
+            position = channel.size();
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                buffer.reset();
+                for (Pending p : batch) {
+                    line.setLength(0);
+                    line.append(seq + 1).append('|').append(p.timestamp).append('|')
+                            .append(AuditFormat.clean(p.accountNumber)).append('|').append(p.type.name()).append('|')
+                            .append(AuditFormat.clean(p.detail)).append('|').append(lastHash);
+                    byte[] hashed = line.toString().getBytes(StandardCharsets.UTF_8);
+                    String hash = AuditFormat.toHex(mac.doFinal(hashed));
+                    buffer.write(hashed);
+                    buffer.write('|');
+                    buffer.write(hash.getBytes(StandardCharsets.US_ASCII));
+                    buffer.write('\n');
+                    seq++;
+                    lastHash = hash;
+                }
+
+                ByteBuffer out = ByteBuffer.wrap(buffer.toByteArray());
+                while (out.hasRemaining()) {
+                    position += channel.write(out, position);
+                }
+                channel.force(false);
+                AuditFormat.writeHead(headChannel, mac, nextHeadSlot, seq, lastHash);
+                nextHeadSlot = 1 - nextHeadSlot;
+                written += batch.size();
+                batches.incrementAndGet();
+                batch.clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+            running = false;
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getEnqueuedCount() { return enqueued.get(); }
+    public long getWrittenCount() { return written; }
+    public long getBatchCount() { return batches.get(); }
+    public int getQueueDepth() { return queue.size(); }
+    public boolean isHealthy() { return failure == null; }
+    public IOException getFailure() { return failure; }
+
+    // Waits until everything enqueued so far is on disk
+    public boolean awaitWritten(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (written < enqueued.get()) {
+            if (failure != null || System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    // Writes everything still queued before closing the file
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!writerThread.isAlive() && failure == null && !queue.isEmpty()) {
+            // An event enqueued just as the writer saw an empty queue and stopped
+            writeLoop();
+        }
+        channel.close();
+        headChannel.close();
+    }
+}
@@ -0,0 +1,30 @@
+// Outcome of an audit log verification
+class AuditVerification {
+    private final long records;
+    private final long firstBadSeq;
+    private final String problem;
+    private final long elapsedMillis;
+
+    public AuditVerification(long records, long firstBadSeq, String problem, long elapsedMillis) {
+        this.records = records;
+        this.firstBadSeq = firstBadSeq;
+        this.problem = problem;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getRecords() { return records; }
+    // -1 when the chain is intact
+    public long getFirstBadSeq() { return firstBadSeq; }
+    public String getProblem() { return problem; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public boolean isIntact() { return firstBadSeq < 0; }
+
+    @Override
+    public String toString() {
+        if (isIntact()) {
+            return String.format("%d records verified in %d ms", records, elapsedMillis);
+        }
+        return String.format("chain broken at seq %d: %s (%d records read in %d ms)",
+                firstBadSeq, problem, records, elapsedMillis);
+    }
+}
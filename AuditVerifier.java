@@ -0,0 +1,219 @@
+import javax.crypto.Mac;
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Checks an audit log's MAC chain. Every line carries its own prevHash, so lines can be
+// checked independently: the file is split into byte ranges that are verified in parallel,
+// and only the seams between ranges are checked afterwards, in order. Finally the chain
+// must reach the head recorded in the head file, which catches a log cut short.
+//
+// Run standalone with: java AuditVerifier <audit log> <key file> [threads]
+class AuditVerifier {
+    // What one range found: its first and last links, and its earliest problem
+    private static final class Segment {
+        long records;
+        long firstSeq = -1;
+        String firstPrevHash;
+        long lastSeq = -1;
+        String lastHash;
+        long badSeq = -1;
+        String problem;
+        // Hash of the line the head points at, if it is in this range
+        String headHash;
+    }
+
+    // Longest line a range may read past its end to finish; longer lines are reported as torn
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    // At most this much of the file is mapped per range
+    private static final long MAX_RANGE_BYTES = 256L * 1024 * 1024;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private AuditVerifier() { }
+
+    public static AuditVerification verify(Path file, byte[] key, int parallelism) throws IOException {
+        long start = System.currentTimeMillis();
+        AuditFormat.Head head = AuditFormat.readHead(file, AuditFormat.newMac(key));
+        long headSeq = head == null ? -1 : head.seq;
+        long size = Files.size(file);
+        int ranges = (int) Math.max(Math.max(1, Math.min(parallelism * 4L, size / (1024 * 1024))),
+                (size + MAX_RANGE_BYTES - 1) / MAX_RANGE_BYTES);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        List<Future<Segment>> futures = new ArrayList<>(ranges);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges; i++) {
+                long from = size * i / ranges;
+                long to = size * (i + 1) / ranges;
+                futures.add(pool.submit(() -> verifyRange(channel, key, headSeq, from, to)));
+            }
+
+            long records = 0;
+            long expectedSeq = 1;
+            String expectedPrev = AuditFormat.GENESIS;
+            String headHash = null;
+            for (Future<Segment> future : futures) {
+                Segment s = join(future);
+                if (s.records == 0 && s.badSeq < 0) continue;
+                if (s.firstSeq >= 0 && s.firstSeq != expectedSeq) {
+                    return done(records, expectedSeq, "expected seq " + expectedSeq + " but found " + s.firstSeq, start);
+                }
+                if (s.firstPrevHash != null && !s.firstPrevHash.equals(expectedPrev)) {
+                    return done(records, expectedSeq, "prevHash does not match the previous line", start);
+                }
+                if (s.badSeq >= 0) {
+                    // 0 means the range's first line was unreadable, so its seq is the expected one
+                    return done(records + s.records, s.badSeq > 0 ? s.badSeq : expectedSeq, s.problem, start);
+                }
+                records += s.records;
+                expectedSeq = s.lastSeq + 1;
+                expectedPrev = s.lastHash;
+                if (s.headHash != null) headHash = s.headHash;
+            }
+            if (head == null) {
+                return records == 0 ? done(0, -1, null, start) : done(records, 1, "head file missing or invalid", start);
+            }
+            if (head.seq >= expectedSeq) {
+                return done(records, expectedSeq, "log ends before its head at seq " + head.seq, start);
+            }
+            if (!head.hash.equals(headHash)) {
+                return done(records, head.seq, "line does not match the head", start);
+            }
+            return done(records, -1, null, start);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static AuditVerification done(long records, long badSeq, String problem, long start) {
+        return new AuditVerification(records, badSeq, problem, System.currentTimeMillis() - start);
+    }
+
+    private static Segment join(Future<Segment> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Verification interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Verifies every line that starts inside [from, to). The range is memory-mapped, plus
+    // enough of the next range to finish its last line, and scanned in place.
+    private static Segment verifyRange(FileChannel channel, byte[] key, long headSeq, long from, long to)
+            throws IOException {
+        Segment segment = new Segment();
+        long mapStart = from == 0 ? 0 : from - 1;
+        long mapEnd = Math.min(channel.size(), to + MAX_LINE_BYTES);
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        int limit = buf.limit();
+        int rangeEnd = (int) (to - mapStart);
+        int pos = 0;
+        if (from > 0) {
+            // Skip the tail of a line that started in the previous range
+            while (pos < limit && buf.get(pos) != '\n') pos++;
+            pos++;
+        }
+
+        Mac mac = AuditFormat.newMac(key);
+        byte[] line = new byte[512];
+        byte[] previousHash = new byte[AuditFormat.HASH_HEX_LENGTH];
+        long expectedSeq = -1;
+        while (pos < rangeEnd && pos < limit) {
+            int newline = pos;
+            while (newline < limit && buf.get(newline) != '\n') newline++;
+            int length = newline - pos;
+            if (line.length < length) line = new byte[Math.max(length, line.length * 2)];
+            buf.position(pos);
+            buf.get(line, 0, length);
+            pos = newline + 1;
+
+            int hashAt = length - AuditFormat.HASH_HEX_LENGTH;
+            int prevAt = hashAt - 1 - AuditFormat.HASH_HEX_LENGTH;
+            long seq = 0;
+            int i = 0;
+            while (i < length && i < 19 && line[i] >= '0' && line[i] <= '9') {
+                seq = seq * 10 + (line[i++] - '0');
+            }
+            boolean wellFormed = i > 0 && i < length && line[i] == '|' && prevAt > i
+                    && line[hashAt - 1] == '|' && line[prevAt - 1] == '|';
+            if (newline == limit && limit == mapEnd - mapStart && mapEnd == channel.size()) {
+                return fail(segment, Math.max(seq, expectedSeq), "torn last line");
+            }
+            if (!wellFormed) {
+                return fail(segment, expectedSeq >= 0 ? expectedSeq : seq, "malformed line");
+            }
+            if (expectedSeq >= 0 && seq != expectedSeq) {
+                return fail(segment, expectedSeq, "expected seq " + expectedSeq + " but found " + seq);
+            }
+            if (expectedSeq >= 0 && !regionEquals(line, prevAt, previousHash)) {
+                return fail(segment, seq, "prevHash does not match the previous line");
+            }
+            mac.update(line, 0, hashAt - 1);
+            if (!hexEquals(mac.doFinal(), line, hashAt)) {
+                return fail(segment, seq, "hash does not match the line's contents");
+            }
+
+            if (segment.firstSeq < 0) {
+                segment.firstSeq = seq;
+                segment.firstPrevHash = new String(line, prevAt, AuditFormat.HASH_HEX_LENGTH, StandardCharsets.US_ASCII);
+            }
+            System.arraycopy(line, hashAt, previousHash, 0, AuditFormat.HASH_HEX_LENGTH);
+            if (seq == headSeq) {
+                segment.headHash = new String(line, hashAt, AuditFormat.HASH_HEX_LENGTH, StandardCharsets.US_ASCII);
+            }
+            segment.records++;
+            segment.lastSeq = seq;
+            expectedSeq = seq + 1;
+        }
+        if (segment.records > 0) {
+            segment.lastHash = new String(previousHash, StandardCharsets.US_ASCII);
+        }
+        return segment;
+    }
+
+    private static boolean regionEquals(byte[] line, int offset, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (line[offset + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    // Compares a digest with its lower-case hex form in place
+    private static boolean hexEquals(byte[] digest, byte[] line, int offset) {
+        for (int i = 0; i < digest.length; i++) {
+            if (line[offset + i * 2] != HEX_DIGITS[(digest[i] >> 4) & 0xF]
+                    || line[offset + i * 2 + 1] != HEX_DIGITS[digest[i] & 0xF]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Segment fail(Segment segment, long seq, String problem) {
+        segment.badSeq = Math.max(seq, 0);
+        segment.problem = problem;
+        return segment;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java AuditVerifier <audit log> <key file> [threads]");
+            System.exit(2);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        AuditVerification result = AuditVerifier.verify(Paths.get(args[0]), AuditFormat.readKey(Paths.get(args[1])), threads);
+        System.out.println(result);
+        System.exit(result.isIntact() ? 0 : 1);
+    }
+}
@@ -0,0 +1,27 @@
+// Currencies an account can be held in. Every supported currency has two decimal
+// places, so amounts keep using the same fixed-point paise (minor unit) conversion.
+enum BankCurrency {
+    INR("Rs "),
+    USD("$ "),
+    EUR("EUR "),
+    GBP("GBP "),
+    AED("AED "),
+    SGD("SGD ");
+
+    private final String prefix;
+
+    BankCurrency(String prefix) {
+        this.prefix = prefix;
+    }
+
+    // Written before amounts, e.g. "Rs " in "Rs 1250.00"
+    public String getPrefix() { return prefix; }
+
+    // Returns null for codes that are not supported
+    static BankCurrency fromCode(String code) {
+        for (BankCurrency currency : values()) {
+            if (currency.name().equalsIgnoreCase(code)) return currency;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+// Shared date and currency formatting for display, receipts and exports.
+// DateTimeFormatter is immutable, so unlike SimpleDateFormat the instances here
+// can be used from any thread. Amounts are written as fixed-point values straight
+// into the caller's buffer instead of going through String.format.
+final class BankFormat {
+    // Used by Transaction.toString() and text exports
+    static final DateTimeFormatter LOG_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    // Used on screen and on receipts
+    static final DateTimeFormatter DISPLAY_TIMESTAMP =
+            DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    // Largest value whose paise count still fits in a long without losing precision
+    private static final double MAX_FIXED_POINT = 9.0e13;
+
+    private BankFormat() { }
+
+    // Appends the amount with exactly two decimals, rounding half up. Amounts already
+    // in whole paise print the same as "%.2f"; a negative zero prints as 0.00.
+    static StringBuilder appendAmount(StringBuilder sb, double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount) || Math.abs(amount) >= MAX_FIXED_POINT) {
+            return sb.append(String.format("%.2f", amount));
+        }
+        long paise = Math.round(Math.abs(amount) * 100.0);
+        if (amount < 0 && paise != 0) {
+            sb.append('-');
+        }
+        int fraction = (int) (paise % 100);
+        sb.append(paise / 100).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction);
+    }
+
+    // Appends the amount with the currency prefix, e.g. "Rs 1250.00"
+    static StringBuilder appendMoney(StringBuilder sb, double amount, BankCurrency currency) {
+        return appendAmount(sb.append(currency.getPrefix()), amount);
+    }
+
+    static String formatMoney(double amount, BankCurrency currency) {
+        return appendMoney(new StringBuilder(16), amount, currency).toString();
+    }
+
+    static StringBuilder appendLogTimestamp(StringBuilder sb, Date date) {
+        LOG_TIMESTAMP.formatTo(Instant.ofEpochMilli(date.getTime()), sb);
+        return sb;
+    }
+
+    static StringBuilder appendDisplayTimestamp(StringBuilder sb, Date date) {
+        DISPLAY_TIMESTAMP.formatTo(Instant.ofEpochMilli(date.getTime()), sb);
+        return sb;
+    }
+
+    static String formatDisplayTimestamp(Date date) {
+        return appendDisplayTimestamp(new StringBuilder(19), date).toString();
+    }
+}
@@ -0,0 +1,356 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+// Enhanced Bank Operations class
+// Account state is guarded by a StampedLock: writers take the write lock, while
+// balance and statement reads use optimistic reads and only fall back to the
+// read lock when a writer got in between. Nothing slow runs under the write lock:
+// PIN hashes are compared before it is taken, and listener calls are queued in commit
+// order and run by publish() once it is released. An account loaded from an
+// AccountRepository writes every committed change back to it the same way.
+abstract class BankOperations {
+    protected double balance;
+    protected String pin;
+    protected String accountNumber;
+    protected String accountHolderName;
+    protected List<Transaction> transactionHistory;
+    protected boolean isBlocked;
+    protected int failedAttempts;
+    protected final BankCurrency currency;
+    // Balance before the first entry of the history, as stored in AccountRecord
+    protected final double openingBalance;
+    protected final StampedLock stateLock = new StampedLock();
+    private final List<TransactionListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<SecurityEventListener> securityListeners = new CopyOnWriteArrayList<>();
+    private final Queue<Runnable> outbox = new ConcurrentLinkedQueue<>();
+    private final Object publishLock = new Object();
+    // Where committed changes are written back; null for an account that lives only in memory
+    private volatile AccountRepository repository;
+    private static final int MAX_FAILED_ATTEMPTS = 3;
+
+    public BankOperations(double initialBalance, String pin, String accountNumber, String holderName) {
+        this(initialBalance, pin, accountNumber, holderName, BankCurrency.INR);
+    }
+
+    public BankOperations(double initialBalance, String pin, String accountNumber, String holderName,
+                          BankCurrency currency) {
+        this(initialBalance, pin, accountNumber, holderName, currency, initialBalance);
+    }
+
+    // For an account loaded with history, whose first entry started from openingBalance
+    public BankOperations(double initialBalance, String pin, String accountNumber, String holderName,
+                          BankCurrency currency, double openingBalance) {
+        this.balance = initialBalance;
+        this.openingBalance = openingBalance;
+        this.currency = currency;
+        this.pin = pin;
+        this.accountNumber = accountNumber;
+        this.accountHolderName = holderName;
+        this.transactionHistory = new ArrayList<>();
+        this.isBlocked = false;
+        this.failedAttempts = 0;
+    }
+
+    // Getters and Setters
+    public double getBalance() {
+        long stamp = stateLock.tryOptimisticRead();
+        double current = balance;
+        if (!stateLock.validate(stamp)) {
+            stamp = stateLock.readLock();
+            try {
+                current = balance;
+            } finally {
+                stateLock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    public void setBalance(double balance) {
+        long stamp = stateLock.writeLock();
+        try {
+            this.balance = balance;
+            recordStateChange();
+        } finally {
+            stateLock.unlockWrite(stamp);
+            publish();
+        }
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public String getAccountHolderName() { return accountHolderName; }
+    public BankCurrency getCurrency() { return currency; }
+    public double getOpeningBalance() { return openingBalance; }
+
+    // Formats an amount in this account's currency
+    public String formatMoney(double amount) {
+        return BankFormat.formatMoney(amount, currency);
+    }
+
+    // Returns a copy, so callers can iterate while writers keep appending
+    public List<Transaction> getTransactionHistory() {
+        long stamp = stateLock.readLock();
+        try {
+            return new ArrayList<>(transactionHistory);
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    // Copies the history into the list and returns the balance, both under one read lock,
+    // so no commit can land between the two
+    public double copyHistoryAndBalance(List<Transaction> into) {
+        long stamp = stateLock.readLock();
+        try {
+            into.addAll(transactionHistory);
+            return balance;
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    // Returns the latest transactions, newest last
+    public List<Transaction> getMiniStatement(int count) {
+        long stamp = stateLock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                List<Transaction> statement = copyLatest(count);
+                if (stateLock.validate(stamp)) {
+                    return statement;
+                }
+            } catch (RuntimeException raced) {
+                // The list was resized under us; retry under the read lock
+            }
+        }
+        stamp = stateLock.readLock();
+        try {
+            return copyLatest(count);
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    public Transaction getLastTransaction() {
+        List<Transaction> latest = getMiniStatement(1);
+        return latest.isEmpty() ? null : latest.get(0);
+    }
+
+    private List<Transaction> copyLatest(int count) {
+        int size = transactionHistory.size();
+        int from = Math.max(0, size - count);
+        List<Transaction> statement = new ArrayList<>(size - from);
+        for (int i = from; i < size; i++) {
+            statement.add(transactionHistory.get(i));
+        }
+        return statement;
+    }
+
+    // Replaces history and lockout state with values loaded from storage
+    public void restore(List<Transaction> history, boolean blocked, int failedAttempts) {
+        long stamp = stateLock.writeLock();
+        try {
+            List<Transaction> restored = new ArrayList<>(history.size());
+            for (Transaction t : history) {
+                // Stored history does not carry a currency; it is always the account's own
+                restored.add(t.getCurrency() == currency ? t
+                        : new Transaction(t.getType(), t.getAmount(), t.getBalanceAfter(), t.getTimestamp(), currency));
+            }
+            this.transactionHistory = restored;
+            this.isBlocked = blocked;
+            this.failedAttempts = failedAttempts;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    // Consistent copy of the persistent fields, for saving to an AccountRepository
+    public AccountRecord toRecord() {
+        long stamp = stateLock.readLock();
+        try {
+            return currentRecord();
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    private AccountRecord currentRecord() {
+        return new AccountRecord(accountNumber, accountHolderName, balance, isBlocked, failedAttempts, currency,
+                openingBalance);
+    }
+
+    // Writes every later commit, lockout change and PIN change through to the repository
+    public void setRepository(AccountRepository repository) {
+        this.repository = repository;
+    }
+
+    public boolean isBlocked() {
+        long stamp = stateLock.tryOptimisticRead();
+        boolean blocked = isBlocked;
+        if (!stateLock.validate(stamp)) {
+            stamp = stateLock.readLock();
+            try {
+                blocked = isBlocked;
+            } finally {
+                stateLock.unlockRead(stamp);
+            }
+        }
+        return blocked;
+    }
+
+    public boolean validatePin(String enteredPin) {
+        return withCheckedPin(enteredPin, accepted -> accepted);
+    }
+
+    // Compares the PIN without holding any lock, since PBKDF2 takes milliseconds, then
+    // records the attempt and runs action under the write lock. If the PIN or the blocked
+    // flag changed in between, the comparison is redone.
+    protected <T> T withCheckedPin(String enteredPin, Function<Boolean, T> action) {
+        while (true) {
+            String storedPin;
+            boolean blocked;
+            long stamp = stateLock.readLock();
+            try {
+                storedPin = pin;
+                blocked = isBlocked;
+            } finally {
+                stateLock.unlockRead(stamp);
+            }
+            boolean matches = !blocked && PinHash.matches(storedPin, enteredPin);
+
+            stamp = stateLock.writeLock();
+            try {
+                if (storedPin == pin && blocked == isBlocked) {
+                    return action.apply(recordPinAttempt(matches));
+                }
+            } finally {
+                stateLock.unlockWrite(stamp);
+                publish();
+            }
+        }
+    }
+
+    // Caller must hold the write lock
+    private boolean recordPinAttempt(boolean matches) {
+        if (isBlocked) {
+            recordSecurityEvent(AuditEventType.LOGIN_REJECTED_LOCKED, "PIN entered on a locked account");
+            return false;
+        }
+
+        if (matches) {
+            if (failedAttempts != 0) {
+                failedAttempts = 0;
+                recordStateChange();
+            }
+            return true;
+        } else {
+            failedAttempts++;
+            recordSecurityEvent(AuditEventType.LOGIN_FAILED,
+                    "wrong PIN, attempt " + failedAttempts + " of " + MAX_FAILED_ATTEMPTS);
+            if (failedAttempts >= MAX_FAILED_ATTEMPTS) {
+                isBlocked = true;
+                recordSecurityEvent(AuditEventType.ACCOUNT_LOCKED, "locked after " + failedAttempts + " failed attempts");
+            }
+            recordStateChange();
+            return false;
+        }
+    }
+
+    public void addTransaction(String type, double amount) {
+        long stamp = stateLock.writeLock();
+        try {
+            recordTransaction(type, amount);
+        } finally {
+            stateLock.unlockWrite(stamp);
+            publish();
+        }
+    }
+
+    // Caller must hold the write lock, and call publish() after releasing it
+    protected void recordTransaction(String type, double amount) {
+        Transaction transaction = new Transaction(type, amount, balance, new Date(), currency);
+        transactionHistory.add(transaction);
+        String account = accountNumber;
+        AccountRepository target = repository;
+        if (target != null) {
+            AccountRecord record = currentRecord();
+            outbox.add(() -> {
+                target.appendTransactions(account, Collections.singletonList(transaction));
+                target.saveAccount(record);
+            });
+        }
+        for (TransactionListener listener : listeners) {
+            outbox.add(() -> listener.onCommit(account, transaction));
+        }
+    }
+
+    // Caller must hold the write lock, and call publish() after releasing it
+    protected void recordStateChange() {
+        AccountRepository target = repository;
+        if (target != null) {
+            AccountRecord record = currentRecord();
+            outbox.add(() -> target.saveAccount(record));
+        }
+    }
+
+    // Caller must hold the write lock, and call publish() after releasing it.
+    // Takes a PinHash, computed before the lock was taken.
+    protected void replacePin(String pinHash) {
+        this.pin = pinHash;
+        AccountRepository target = repository;
+        if (target != null) {
+            String account = accountNumber;
+            outbox.add(() -> target.savePin(account, pinHash));
+        }
+    }
+
+    // Caller must hold the write lock, and call publish() after releasing it
+    protected void recordSecurityEvent(AuditEventType type, String detail) {
+        String account = accountNumber;
+        for (SecurityEventListener listener : securityListeners) {
+            outbox.add(() -> listener.onSecurityEvent(account, type, detail));
+        }
+    }
+
+    // Runs the listener calls queued by commits, in commit order. Call it after releasing
+    // the write lock. Whoever holds the publish lock drains for everyone, so a caller
+    // returns only once its own events have been delivered.
+    protected void publish() {
+        synchronized (publishLock) {
+            Runnable event;
+            while ((event = outbox.poll()) != null) {
+                event.run();
+            }
+        }
+    }
+
+    public void addSecurityEventListener(SecurityEventListener listener) {
+        securityListeners.add(listener);
+    }
+
+    public void removeSecurityEventListener(SecurityEventListener listener) {
+        securityListeners.remove(listener);
+    }
+
+    // Registers under the write lock, so no commit falls between onAttach and the first onCommit
+    public void addTransactionListener(TransactionListener listener) {
+        long stamp = stateLock.writeLock();
+        try {
+            String account = accountNumber;
+            double current = balance;
+            outbox.add(() -> listener.onAttach(account, currency, current));
+            listeners.add(listener);
+        } finally {
+            stateLock.unlockWrite(stamp);
+            publish();
+        }
+    }
+
+    public void removeTransactionListener(TransactionListener listener) {
+        listeners.remove(listener);
+    }
+
+    public abstract void showMenu();
+}
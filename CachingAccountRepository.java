@@ -0,0 +1,300 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Bounded write-behind cache in front of a slower AccountRepository.
+//
+// Accounts and PINs are cached together in segmented-LRU shards. New entries start in
+// the probation segment and move to the protected segment on their second hit, so one
+// scan of cold accounts cannot flush the hot set. Each shard has its own lock.
+//
+// Account writes update the cache and the dirty map at once, then return. A background
+// flusher saves the dirty map to the store in batches. Several writes to the same account
+// between flushes become one store write. Dirty records live outside the LRU segments,
+// so evicting an entry never drops an unflushed write; reads check the dirty map before
+// the store. When the dirty map reaches maxDirty, the writer flushes inline.
+// PINs and history pass straight through to the store.
+class CachingAccountRepository implements AccountRepository {
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private static final class Entry {
+        final AccountRecord record;
+        final String pin;
+
+        Entry(AccountRecord record, String pin) {
+            this.record = record;
+            this.pin = pin;
+        }
+    }
+
+    private static final class Shard {
+        final LinkedHashMap<String, Entry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<String, Entry> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        final int probationCapacity;
+        final int protectedCapacity;
+        // Bumped by every write, so a load that raced with a write can be detected
+        long writes;
+
+        Shard(int capacity) {
+            this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+            this.probationCapacity = Math.max(1, capacity - protectedCapacity);
+        }
+    }
+
+    private final AccountRepository store;
+    private final Shard[] shards;
+    private final int shardShift;
+    private final ConcurrentHashMap<String, AccountRecord> dirty = new ConcurrentHashMap<>();
+    private final int maxDirty;
+    private final int flushBatchSize;
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedRecords = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private volatile RuntimeException lastFlushError;
+
+    public CachingAccountRepository(AccountRepository store, int capacity, int shardCount,
+                                    long flushIntervalMillis, int maxDirty) {
+        this.store = store;
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        this.shardShift = 32 - Integer.numberOfTrailingZeros(size);
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard(Math.max(2, capacity / size));
+        }
+        this.maxDirty = maxDirty;
+        this.flushBatchSize = Math.max(1, Math.min(maxDirty, 1000));
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "account-cache-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public AccountRecord findAccount(String accountNumber) {
+        Entry entry = lookup(accountNumber);
+        return entry == null ? null : entry.record;
+    }
+
+    @Override
+    public String findPin(String accountNumber) {
+        Entry entry = lookup(accountNumber);
+        return entry == null ? null : entry.pin;
+    }
+
+    private Entry lookup(String accountNumber) {
+        Shard shard = shardFor(accountNumber);
+        for (int attempt = 1; ; attempt++) {
+            long writesBefore;
+            synchronized (shard) {
+                Entry entry = shard.protectedSegment.get(accountNumber);
+                if (entry == null) {
+                    entry = shard.probation.remove(accountNumber);
+                    if (entry != null) {
+                        promote(shard, accountNumber, entry);
+                    }
+                }
+                if (entry != null) {
+                    // A retry that finds the entry cached by another thread stays one miss
+                    if (attempt == 1) hits.incrementAndGet();
+                    return entry;
+                }
+                writesBefore = shard.writes;
+            }
+
+            if (attempt == 1) misses.incrementAndGet();
+            AccountRecord record = dirty.get(accountNumber);
+            if (record == null) {
+                record = store.findAccount(accountNumber);
+                if (record == null) return null;
+            }
+            Entry loaded = new Entry(record, store.findPin(accountNumber));
+            synchronized (shard) {
+                // Only cache what we loaded if no write to this shard slipped in meanwhile
+                if (shard.writes == writesBefore) {
+                    admit(shard, accountNumber, loaded);
+                    return loaded;
+                }
+            }
+            if (attempt == MAX_LOAD_ATTEMPTS) {
+                // Shard is too busy to cache safely; serve the fresh read uncached
+                return loaded;
+            }
+        }
+    }
+
+    @Override
+    public void saveAccount(AccountRecord account) {
+        String accountNumber = account.getAccountNumber();
+        Shard shard = shardFor(accountNumber);
+        synchronized (shard) {
+            shard.writes++;
+            dirty.put(accountNumber, account);
+            Entry current = shard.protectedSegment.get(accountNumber);
+            if (current != null) {
+                shard.protectedSegment.put(accountNumber, new Entry(account, current.pin));
+            } else {
+                current = shard.probation.get(accountNumber);
+                if (current != null) {
+                    shard.probation.put(accountNumber, new Entry(account, current.pin));
+                }
+            }
+        }
+        if (dirty.size() >= maxDirty) {
+            flush();
+        }
+    }
+
+    @Override
+    public void saveAccounts(Collection<AccountRecord> accounts) {
+        for (AccountRecord account : accounts) {
+            saveAccount(account);
+        }
+    }
+
+    @Override
+    public void savePin(String accountNumber, String pin) {
+        store.savePin(accountNumber, pin);
+        Shard shard = shardFor(accountNumber);
+        synchronized (shard) {
+            shard.writes++;
+            Entry current = shard.protectedSegment.get(accountNumber);
+            if (current != null) {
+                shard.protectedSegment.put(accountNumber, new Entry(current.record, pin));
+            } else if ((current = shard.probation.get(accountNumber)) != null) {
+                shard.probation.put(accountNumber, new Entry(current.record, pin));
+            }
+        }
+    }
+
+    @Override
+    public void appendTransactions(String accountNumber, List<Transaction> transactions) {
+        store.appendTransactions(accountNumber, transactions);
+    }
+
+    @Override
+    public void forEachTransaction(String accountNumber, Consumer<Transaction> consumer) {
+        store.forEachTransaction(accountNumber, consumer);
+    }
+
+    // Flushes first so the store's view of every account is current
+    @Override
+    public void forEachAccount(Consumer<AccountRecord> consumer) {
+        flush();
+        store.forEachAccount(consumer);
+    }
+
+    @Override
+    public int countAccounts() {
+        flush();
+        return store.countAccounts();
+    }
+
+    // Writes every dirty record to the store in batches
+    public void flush() {
+        synchronized (flushLock) {
+            if (dirty.isEmpty()) return;
+            List<AccountRecord> batch = new ArrayList<>(flushBatchSize);
+            for (AccountRecord record : dirty.values()) {
+                batch.add(record);
+                if (batch.size() == flushBatchSize) {
+                    writeBatch(batch);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+            }
+        }
+    }
+
+    private void writeBatch(List<AccountRecord> batch) {
+        store.saveAccounts(batch);
+        for (AccountRecord record : batch) {
+            // Keep entries that were overwritten after we took them
+            dirty.remove(record.getAccountNumber(), record);
+        }
+        flushes.incrementAndGet();
+        flushedRecords.addAndGet(batch.size());
+    }
+
+    // Background flush; a failed batch leaves its records dirty, so the next run retries them
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            lastFlushError = e;
+        }
+    }
+
+    // Caller holds the shard lock
+    private void admit(Shard shard, String accountNumber, Entry entry) {
+        shard.probation.put(accountNumber, entry);
+        if (shard.probation.size() > shard.probationCapacity) {
+            Iterator<String> eldest = shard.probation.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    // Caller holds the shard lock; the entry has already left probation
+    private void promote(Shard shard, String accountNumber, Entry entry) {
+        shard.protectedSegment.put(accountNumber, entry);
+        if (shard.protectedSegment.size() > shard.protectedCapacity) {
+            Iterator<Map.Entry<String, Entry>> eldest = shard.protectedSegment.entrySet().iterator();
+            Map.Entry<String, Entry> demoted = eldest.next();
+            eldest.remove();
+            admit(shard, demoted.getKey(), demoted.getValue());
+        }
+    }
+
+    private Shard shardFor(String accountNumber) {
+        return shards[(accountNumber.hashCode() * 0x9E3779B9) >>> shardShift];
+    }
+
+    public long getHitCount() { return hits.get(); }
+    public long getMissCount() { return misses.get(); }
+    public long getEvictionCount() { return evictions.get(); }
+    public long getFlushCount() { return flushes.get(); }
+    public long getFlushedRecordCount() { return flushedRecords.get(); }
+    public int getDirtyCount() { return dirty.size(); }
+    public long getFlushFailureCount() { return flushFailures.get(); }
+
+    // Most recent background flush failure, or null if none has failed yet
+    public RuntimeException getLastFlushError() { return lastFlushError; }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            store.close();
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not close account store", e);
+        }
+    }
+}
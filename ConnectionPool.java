@@ -0,0 +1,96 @@
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Fixed-size pool of JDBC connections, opened lazily up to the limit
+class ConnectionPool implements AutoCloseable {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> all = new ArrayList<>();
+    private boolean closed;
+
+    public ConnectionPool(String url, String user, String password, int maxSize, long borrowTimeoutMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    public Connection borrow() throws SQLException {
+        Connection connection = idle.poll();
+        if (connection == null) {
+            connection = openIfBelowLimit();
+        }
+        if (connection == null) {
+            try {
+                connection = idle.poll(borrowTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+            if (connection == null) {
+                throw new SQLException("No database connection available within " + borrowTimeoutMillis + " ms");
+            }
+        }
+        return connection;
+    }
+
+    // Returns a connection; broken ones are dropped so the pool can open a replacement
+    public void release(Connection connection) {
+        try {
+            if (connection.isClosed()) {
+                discard(connection);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+            return;
+        }
+        if (!idle.offer(connection)) {
+            discard(connection);
+        }
+    }
+
+    private synchronized Connection openIfBelowLimit() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        if (all.size() >= maxSize) return null;
+        Connection connection = DriverManager.getConnection(url, user, password);
+        all.add(connection);
+        return connection;
+    }
+
+    private synchronized void discard(Connection connection) {
+        all.remove(connection);
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Already broken
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Connection connection : all) {
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+                // Closing anyway
+            }
+        }
+        all.clear();
+        idle.clear();
+    }
+}
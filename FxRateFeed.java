@@ -0,0 +1,154 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams rate updates from a local text file into an FxRateService.
+// The file is append-only, one rate per line as "<code> <rupees per unit>", e.g.
+//   USD 83.1250
+// Blank lines and lines starting with '#' are skipped, and a line longer than
+// MAX_LINE_BYTES is dropped up to its end and counted as rejected. Each poll reads only the bytes
+// added since the last poll and applies all complete lines as one snapshot. The file is
+// read again from the start when it was rotated: when its identity (inode where the
+// file system has one, else creation time) changed, or when it shrank.
+// Background polls never stop on an error; failures are counted and the last one kept.
+class FxRateFeed implements Closeable {
+    static final int MAX_LINE_BYTES = 4096;
+
+    private final Path file;
+    private final FxRateService rates;
+    private long position;
+    private Object fileKey;
+    private FileTime created;
+    private final byte[] buffer = new byte[MAX_LINE_BYTES];
+    // Inside an oversized line, which may span polls
+    private boolean skippingLine;
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong pollFailures = new AtomicLong();
+    private volatile Exception lastPollError;
+    private ScheduledExecutorService poller;
+
+    public FxRateFeed(Path file, FxRateService rates) {
+        this.file = file;
+        this.rates = rates;
+    }
+
+    public synchronized void start(long intervalMillis) {
+        if (poller != null) return;
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "fx-rate-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        // A RuntimeException escaping the task would cancel every later poll
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (IOException | RuntimeException e) {
+                pollFailures.incrementAndGet();
+                lastPollError = e;
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Reads new lines and returns the number of rates applied
+    public synchronized int poll() throws IOException {
+        if (!Files.exists(file)) return 0;
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        // Without birth time support, creationTime() reports the last change, so it is only used without a key
+        boolean replaced = attributes.fileKey() != null ? !attributes.fileKey().equals(fileKey)
+                : fileKey != null || !attributes.creationTime().equals(created);
+        if (replaced) {
+            fileKey = attributes.fileKey();
+            created = attributes.creationTime();
+            position = 0;
+            skippingLine = false;
+        }
+        Map<BankCurrency, Double> updates = new EnumMap<>(BankCurrency.class);
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            long length = in.length();
+            if (length < position) {
+                position = 0;
+                skippingLine = false;
+            }
+            while (position < length) {
+                int want = (int) Math.min(buffer.length, length - position);
+                in.seek(position);
+                in.readFully(buffer, 0, want);
+                int lineStart = 0;
+                for (int i = 0; i < want; i++) {
+                    if (buffer[i] == '\n') {
+                        if (skippingLine) {
+                            skippingLine = false;
+                        } else {
+                            parseLine(new String(buffer, lineStart, i - lineStart, StandardCharsets.US_ASCII), updates);
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart == 0) {
+                    if (!skippingLine) {
+                        if (want < buffer.length) break; // Last line is still being written
+                        // A full buffer without a line end cannot be a rate
+                        rejected.incrementAndGet();
+                        skippingLine = true;
+                    }
+                    position += want;
+                    continue;
+                }
+                position += lineStart;
+            }
+        }
+        if (updates.isEmpty()) return 0;
+        rates.update(updates);
+        applied.addAndGet(updates.size());
+        return updates.size();
+    }
+
+    private void parseLine(String line, Map<BankCurrency, Double> updates) {
+        line = line.trim();
+        if (line.isEmpty() || line.charAt(0) == '#') return;
+        String[] parts = line.split("[\\s,]+");
+        BankCurrency currency = parts.length == 2 ? BankCurrency.fromCode(parts[0]) : null;
+        if (currency == null || currency == BankCurrency.INR) {
+            rejected.incrementAndGet();
+            return;
+        }
+        try {
+            double rate = Double.parseDouble(parts[1]);
+            if (rate > 0 && !Double.isInfinite(rate)) {
+                updates.put(currency, rate);
+                return;
+            }
+        } catch (NumberFormatException e) {
+            // Counted as rejected below
+        }
+        rejected.incrementAndGet();
+    }
+
+    public long getAppliedCount() { return applied.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+    public long getPollFailureCount() { return pollFailures.get(); }
+
+    // Most recent background poll failure, or null if none has failed yet
+    public Exception getLastPollError() { return lastPollError; }
+
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+import java.util.EnumMap;
+import java.util.Map;
+
+// Holds the current FxRateTable. Readers take the snapshot with a single volatile read
+// and never lock; an update builds a new table and swaps it in (copy-on-write), so a
+// conversion always sees one consistent set of rates even while rates are changing.
+class FxRateService {
+    private volatile FxRateTable table = FxRateTable.EMPTY;
+    private final Object updateLock = new Object();
+
+    public FxRateTable current() {
+        return table;
+    }
+
+    // Applies the rates as one new snapshot and returns it
+    public FxRateTable update(Map<BankCurrency, Double> rates) {
+        synchronized (updateLock) {
+            table = table.withRates(rates, System.currentTimeMillis());
+            return table;
+        }
+    }
+
+    public FxRateTable setRate(BankCurrency currency, double inrPerUnit) {
+        Map<BankCurrency, Double> rates = new EnumMap<>(BankCurrency.class);
+        rates.put(currency, inrPerUnit);
+        return update(rates);
+    }
+
+    public double convert(double amount, BankCurrency from, BankCurrency to) {
+        return table.convert(amount, from, to);
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.Arrays;
+import java.util.Map;
+
+// Immutable snapshot of exchange rates. Rates are quoted as rupees per unit of each
+// currency; the cross rate for every pair is worked out once when the snapshot is
+// built, so a conversion is an array lookup and one multiply.
+final class FxRateTable {
+    private static final BankCurrency[] CURRENCIES = BankCurrency.values();
+
+    static final FxRateTable EMPTY = new FxRateTable(new double[CURRENCIES.length], 0, 0);
+
+    // Indexed by ordinal; 0 when no rate is known
+    private final double[] inrPerUnit;
+    // cross[from * n + to], 0 when either side is unknown
+    private final double[] cross;
+    private final long version;
+    private final long asOfMillis;
+
+    private FxRateTable(double[] inrPerUnit, long version, long asOfMillis) {
+        inrPerUnit[BankCurrency.INR.ordinal()] = 1.0;
+        this.inrPerUnit = inrPerUnit;
+        this.version = version;
+        this.asOfMillis = asOfMillis;
+        int n = CURRENCIES.length;
+        this.cross = new double[n * n];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                if (inrPerUnit[from] > 0 && inrPerUnit[to] > 0) {
+                    cross[from * n + to] = from == to ? 1.0 : inrPerUnit[from] / inrPerUnit[to];
+                }
+            }
+        }
+    }
+
+    // Copy of this table with the given rates replaced
+    FxRateTable withRates(Map<BankCurrency, Double> updates, long asOfMillis) {
+        double[] next = Arrays.copyOf(inrPerUnit, inrPerUnit.length);
+        for (Map.Entry<BankCurrency, Double> e : updates.entrySet()) {
+            next[e.getKey().ordinal()] = e.getValue();
+        }
+        return new FxRateTable(next, version + 1, asOfMillis);
+    }
+
+    public long getVersion() { return version; }
+    public long getAsOfMillis() { return asOfMillis; }
+
+    // Units of 'to' per unit of 'from', or 0 when no rate is known
+    public double rate(BankCurrency from, BankCurrency to) {
+        return cross[from.ordinal() * CURRENCIES.length + to.ordinal()];
+    }
+
+    public boolean hasRate(BankCurrency from, BankCurrency to) {
+        return rate(from, to) > 0;
+    }
+
+    // Converts whole minor units, rounding half up. Check hasRate first; an unknown pair converts to 0.
+    public long convertPaise(long paise, BankCurrency from, BankCurrency to) {
+        return Math.round(paise * rate(from, to));
+    }
+
+    public double convert(double amount, BankCurrency from, BankCurrency to) {
+        return Money.fromPaise(convertPaise(Money.toPaise(amount), from, to));
+    }
+}
@@ -0,0 +1,89 @@
+import java.time.Instant;
+import java.util.Arrays;
+
+// Count, sum, min, max and the requested percentiles of the matching amounts, per group.
+// Money values are in paise; an empty group reports zeros.
+class GroupTotals {
+    private final HistoryColumns columns;
+    private final int mode;
+    private final long origin;
+    private final long bucketMillis;
+    private final long[] count;
+    private final long[] sum;
+    private final long[] min;
+    private final long[] max;
+    private final double[] percentiles;
+    private final long[] percentileValues;
+    private final long rowsScanned;
+    private final long elapsedNanos;
+
+    GroupTotals(HistoryColumns columns, AnalyticsGrouping grouping, long origin, long[] count, long[] sum,
+                long[] min, long[] max, double[] percentiles, long[] percentileValues, long elapsedNanos) {
+        this.columns = columns;
+        this.mode = grouping.mode;
+        this.origin = origin;
+        this.bucketMillis = grouping.bucketMillis;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.percentiles = percentiles;
+        this.percentileValues = percentileValues;
+        this.rowsScanned = columns.rows;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getGroupCount() { return count.length; }
+    public long getCount(int group) { return count[group]; }
+    public long getSumPaise(int group) { return sum[group]; }
+    public long getMinPaise(int group) { return count[group] == 0 ? 0 : min[group]; }
+    public long getMaxPaise(int group) { return count[group] == 0 ? 0 : max[group]; }
+    public double getSum(int group) { return Money.fromPaise(sum[group]); }
+    public long getRowsScanned() { return rowsScanned; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getAverage(int group) {
+        return count[group] == 0 ? 0 : Money.fromPaise(sum[group]) / count[group];
+    }
+
+    // index is the position in the percentiles passed to the query
+    public long getPercentilePaise(int group, int index) {
+        return percentileValues[group * percentiles.length + index];
+    }
+
+    public long getBucketStart(int group) {
+        return origin + group * bucketMillis;
+    }
+
+    // Account number, kind name, bucket start time or "ALL"
+    public String getLabel(int group) {
+        switch (mode) {
+            case AnalyticsGrouping.ACCOUNT: return columns.accounts[group];
+            case AnalyticsGrouping.KIND: return TransactionKind.VALUES[group].name();
+            case AnalyticsGrouping.TIME_BUCKET:
+                return BankFormat.LOG_TIMESTAMP.format(Instant.ofEpochMilli(getBucketStart(group)));
+            default: return "ALL";
+        }
+    }
+
+    // Up to k non-empty groups with the largest sums, largest first
+    public int[] top(int k) {
+        int[] best = new int[Math.min(k, count.length)];
+        int size = 0;
+        for (int g = 0; g < count.length; g++) {
+            if (count[g] == 0) continue;
+            if (size == best.length && sum[g] <= sum[best[size - 1]]) continue;
+            int i = size == best.length ? size - 1 : size++;
+            while (i > 0 && sum[best[i - 1]] < sum[g]) {
+                best[i] = best[i - 1];
+                i--;
+            }
+            best[i] = g;
+        }
+        return Arrays.copyOf(best, size);
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsScanned * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+// Transaction history of every account as primitive columns, for analytics scans.
+// Rows are stored account by account in history order; the rows of account a are
+// [accountStart[a], accountStart[a + 1]). Amounts are unsigned paise as in Transaction.
+// Kind and currency share one byte per row, currency ordinal * 8 + kind ordinal, so
+// a filter on both is one bit test against a 64-bit mask.
+class HistoryColumns {
+    static {
+        // tag() has 3 bits for each part, and a filter mask one bit per tag
+        if (BankCurrency.values().length > 8 || TransactionKind.VALUES.length > 8) {
+            throw new IllegalStateException("Analytics tags hold at most 8 currencies and 8 kinds");
+        }
+    }
+
+    final String[] accounts;
+    final int[] accountStart;
+    final long[] timestamp;
+    final long[] amount;
+    final byte[] tag;
+    final int rows;
+    final long minTimestamp;
+    final long maxTimestamp;
+
+    private HistoryColumns(Builder b) {
+        this.accounts = Arrays.copyOf(b.accounts, b.accountCount);
+        this.accountStart = Arrays.copyOf(b.accountStart, b.accountCount + 1);
+        this.accountStart[b.accountCount] = b.rows;
+        this.timestamp = Arrays.copyOf(b.timestamp, b.rows);
+        this.amount = Arrays.copyOf(b.amount, b.rows);
+        this.tag = Arrays.copyOf(b.tag, b.rows);
+        this.rows = b.rows;
+        this.minTimestamp = b.minTimestamp;
+        this.maxTimestamp = b.maxTimestamp;
+    }
+
+    // Reads the full history of every account in the repository
+    static HistoryColumns load(AccountRepository repository) {
+        Builder builder = new Builder();
+        repository.forEachAccount(account -> {
+            builder.startAccount(account.getAccountNumber(), account.getCurrency());
+            repository.forEachTransaction(account.getAccountNumber(), builder::add);
+        });
+        return builder.build();
+    }
+
+    int getAccountCount() { return accounts.length; }
+    int getRowCount() { return rows; }
+
+    static int tag(BankCurrency currency, TransactionKind kind) {
+        return currency.ordinal() << 3 | kind.ordinal();
+    }
+
+    static class Builder {
+        private String[] accounts = new String[1024];
+        private int[] accountStart = new int[1025];
+        private long[] timestamp = new long[4096];
+        private long[] amount = new long[4096];
+        private byte[] tag = new byte[4096];
+        private int accountCount;
+        private int rows;
+        private int currencyBits;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+
+        // Following add calls belong to this account
+        void startAccount(String accountNumber, BankCurrency currency) {
+            if (accountCount == accounts.length) {
+                accounts = Arrays.copyOf(accounts, accounts.length * 2);
+                accountStart = Arrays.copyOf(accountStart, accounts.length + 1);
+            }
+            accounts[accountCount] = accountNumber;
+            accountStart[accountCount] = rows;
+            accountCount++;
+            currencyBits = currency.ordinal() << 3;
+        }
+
+        void add(Transaction t) {
+            if (rows == timestamp.length) {
+                if (rows == Integer.MAX_VALUE - 8) throw new IllegalStateException("History too large for one column set");
+                int capacity = (int) Math.min(Integer.MAX_VALUE - 8, rows * 2L);
+                timestamp = Arrays.copyOf(timestamp, capacity);
+                amount = Arrays.copyOf(amount, capacity);
+                tag = Arrays.copyOf(tag, capacity);
+            }
+            long time = t.getTimestamp().getTime();
+            timestamp[rows] = time;
+            amount[rows] = Money.toPaise(t.getAmount());
+            tag[rows] = (byte) (currencyBits | TransactionKind.of(t.getType()).ordinal());
+            rows++;
+            if (time < minTimestamp) minTimestamp = time;
+            if (time > maxTimestamp) maxTimestamp = time;
+        }
+
+        HistoryColumns build() {
+            return new HistoryColumns(this);
+        }
+    }
+}
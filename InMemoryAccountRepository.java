@@ -0,0 +1,67 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Keeps everything on the heap; the default backend and the baseline for benchmarks
+class InMemoryAccountRepository implements AccountRepository {
+    private final ConcurrentHashMap<String, AccountRecord> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> pins = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, List<Transaction>> histories = new ConcurrentHashMap<>();
+
+    @Override
+    public AccountRecord findAccount(String accountNumber) {
+        return accounts.get(accountNumber);
+    }
+
+    @Override
+    public void saveAccount(AccountRecord account) {
+        accounts.merge(account.getAccountNumber(), account,
+                (stored, updated) -> updated.withOpeningBalance(stored.getOpeningBalance()));
+    }
+
+    @Override
+    public void saveAccounts(Collection<AccountRecord> batch) {
+        for (AccountRecord account : batch) {
+            saveAccount(account);
+        }
+    }
+
+    @Override
+    public String findPin(String accountNumber) {
+        return pins.get(accountNumber);
+    }
+
+    @Override
+    public void savePin(String accountNumber, String pin) {
+        pins.put(accountNumber, pin);
+    }
+
+    @Override
+    public void appendTransactions(String accountNumber, List<Transaction> transactions) {
+        List<Transaction> history = histories.computeIfAbsent(accountNumber, k -> new ArrayList<>());
+        synchronized (history) {
+            history.addAll(transactions);
+        }
+    }
+
+    @Override
+    public void forEachTransaction(String accountNumber, Consumer<Transaction> consumer) {
+        List<Transaction> history = histories.get(accountNumber);
+        if (history == null) return;
+        List<Transaction> copy;
+        synchronized (history) {
+            copy = new ArrayList<>(history);
+        }
+        copy.forEach(consumer);
+    }
+
+    @Override
+    public void forEachAccount(Consumer<AccountRecord> consumer) {
+        accounts.values().forEach(consumer);
+    }
+
+    @Override
+    public int countAccounts() {
+        return accounts.size();
+    }
+}
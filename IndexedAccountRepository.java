@@ -0,0 +1,78 @@
+import java.util.*;
+import java.util.function.Consumer;
+
+// Keeps an AccountSearchIndex up to date with every account written through it.
+// Wrap the repository the application writes to; reads pass straight through.
+// Most saves are balance changes, so the name is checked under the index's read lock
+// and the write lock is only taken for new accounts and renames.
+class IndexedAccountRepository implements AccountRepository {
+    private final AccountRepository store;
+    private final AccountSearchIndex index;
+
+    public IndexedAccountRepository(AccountRepository store, AccountSearchIndex index) {
+        this.store = store;
+        this.index = index;
+    }
+
+    public AccountSearchIndex getIndex() { return index; }
+
+    @Override
+    public AccountRecord findAccount(String accountNumber) {
+        return store.findAccount(accountNumber);
+    }
+
+    @Override
+    public void saveAccount(AccountRecord account) {
+        store.saveAccount(account);
+        reindex(account);
+    }
+
+    @Override
+    public void saveAccounts(Collection<AccountRecord> accounts) {
+        store.saveAccounts(accounts);
+        for (AccountRecord account : accounts) {
+            reindex(account);
+        }
+    }
+
+    private void reindex(AccountRecord account) {
+        if (!index.contains(account.getAccountNumber(), account.getHolderName())) {
+            index.put(account);
+        }
+    }
+
+    @Override
+    public String findPin(String accountNumber) {
+        return store.findPin(accountNumber);
+    }
+
+    @Override
+    public void savePin(String accountNumber, String pin) {
+        store.savePin(accountNumber, pin);
+    }
+
+    @Override
+    public void appendTransactions(String accountNumber, List<Transaction> transactions) {
+        store.appendTransactions(accountNumber, transactions);
+    }
+
+    @Override
+    public void forEachTransaction(String accountNumber, Consumer<Transaction> consumer) {
+        store.forEachTransaction(accountNumber, consumer);
+    }
+
+    @Override
+    public void forEachAccount(Consumer<AccountRecord> consumer) {
+        store.forEachAccount(consumer);
+    }
+
+    @Override
+    public int countAccounts() {
+        return store.countAccounts();
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+}
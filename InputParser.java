@@ -0,0 +1,174 @@
+// Allocation-free parsing and validation of amount and account number input.
+// Used by the GUI and by headless or batch callers. Results are plain values or
+// error codes, and nothing is thrown for bad input.
+//
+// Amounts: optional surrounding whitespace (anything String.trim() would drop), digits,
+// and an optional '.' with up to two decimals, e.g. "1500", "1500.5", "0.75". The result
+// is a whole number of paise, or a negative error code.
+// Account numbers: "ACC" followed by nine digits. With check digits enabled, the last
+// digit must be the Luhn check digit of the first eight.
+final class InputParser {
+    static final long EMPTY = -1;
+    static final long INVALID_CHARACTER = -2;
+    static final long TOO_MANY_DECIMALS = -3;
+    static final long OUT_OF_RANGE = -4;
+
+    static final int ACCOUNT_OK = 0;
+    static final int ACCOUNT_EMPTY = 1;
+    static final int ACCOUNT_FORMAT = 2;
+    static final int ACCOUNT_CHECK_DIGIT = 3;
+
+    static final String ACCOUNT_PREFIX = "ACC";
+    static final int ACCOUNT_DIGITS = 9;
+
+    // One trillion rupees; keeps every accepted value exact as a double
+    private static final long MAX_PAISE = 100_000_000_000_000L;
+
+    private InputParser() { }
+
+    // Each overload has its own loop over its input type; they must accept the same inputs
+    public static long parseAmount(CharSequence text) {
+        if (text == null) return EMPTY;
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        if (start == end) return EMPTY;
+
+        long paise = 0;
+        int decimals = -1;
+        boolean digitSeen = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (decimals >= 0) return INVALID_CHARACTER;
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') return INVALID_CHARACTER;
+            if (decimals >= 0 && ++decimals > 2) return TOO_MANY_DECIMALS;
+            digitSeen = true;
+            paise = paise * 10 + (c - '0');
+            if (paise > MAX_PAISE) return OUT_OF_RANGE;
+        }
+        if (!digitSeen) return INVALID_CHARACTER;
+        return scale(paise, decimals);
+    }
+
+    public static long parseAmount(char[] buf, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && buf[start] <= ' ') start++;
+        while (end > start && buf[end - 1] <= ' ') end--;
+        if (start == end) return EMPTY;
+
+        long paise = 0;
+        int decimals = -1;
+        boolean digitSeen = false;
+        for (int i = start; i < end; i++) {
+            char c = buf[i];
+            if (c == '.') {
+                if (decimals >= 0) return INVALID_CHARACTER;
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') return INVALID_CHARACTER;
+            if (decimals >= 0 && ++decimals > 2) return TOO_MANY_DECIMALS;
+            digitSeen = true;
+            paise = paise * 10 + (c - '0');
+            if (paise > MAX_PAISE) return OUT_OF_RANGE;
+        }
+        if (!digitSeen) return INVALID_CHARACTER;
+        return scale(paise, decimals);
+    }
+
+    // ASCII bytes, e.g. one field of a batch file
+    public static long parseAmount(byte[] buf, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        while (start < end && (buf[start] & 0xFF) <= ' ') start++;
+        while (end > start && (buf[end - 1] & 0xFF) <= ' ') end--;
+        if (start == end) return EMPTY;
+
+        long paise = 0;
+        int decimals = -1;
+        boolean digitSeen = false;
+        for (int i = start; i < end; i++) {
+            int c = buf[i] & 0xFF;
+            if (c == '.') {
+                if (decimals >= 0) return INVALID_CHARACTER;
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') return INVALID_CHARACTER;
+            if (decimals >= 0 && ++decimals > 2) return TOO_MANY_DECIMALS;
+            digitSeen = true;
+            paise = paise * 10 + (c - '0');
+            if (paise > MAX_PAISE) return OUT_OF_RANGE;
+        }
+        if (!digitSeen) return INVALID_CHARACTER;
+        return scale(paise, decimals);
+    }
+
+    private static long scale(long value, int decimals) {
+        if (decimals <= 0) value *= 100;
+        else if (decimals == 1) value *= 10;
+        return value > MAX_PAISE ? OUT_OF_RANGE : value;
+    }
+
+    public static boolean isError(long parsed) {
+        return parsed < 0;
+    }
+
+    public static String describeAmountError(long code) {
+        if (code == EMPTY) return "Please enter an amount.";
+        if (code == TOO_MANY_DECIMALS) return "Amounts can have at most two decimal places.";
+        if (code == OUT_OF_RANGE) return "The amount entered is too large.";
+        return "Please enter a valid numeric amount.";
+    }
+
+    public static int validateAccountNumber(CharSequence text, boolean requireCheckDigit) {
+        if (text == null) return ACCOUNT_EMPTY;
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        if (start == end) return ACCOUNT_EMPTY;
+        if (end - start != ACCOUNT_PREFIX.length() + ACCOUNT_DIGITS) return ACCOUNT_FORMAT;
+
+        for (int i = 0; i < ACCOUNT_PREFIX.length(); i++) {
+            if (Character.toUpperCase(text.charAt(start + i)) != ACCOUNT_PREFIX.charAt(i)) return ACCOUNT_FORMAT;
+        }
+        int digitsStart = start + ACCOUNT_PREFIX.length();
+        for (int i = digitsStart; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') return ACCOUNT_FORMAT;
+        }
+        if (requireCheckDigit && luhnCheckDigit(text, digitsStart, end - 1) != text.charAt(end - 1) - '0') {
+            return ACCOUNT_CHECK_DIGIT;
+        }
+        return ACCOUNT_OK;
+    }
+
+    // Luhn check digit of the digits in [from, to)
+    static int luhnCheckDigit(CharSequence digits, int from, int to) {
+        int sum = 0;
+        boolean doubleIt = true;
+        for (int i = to - 1; i >= from; i--) {
+            int d = digits.charAt(i) - '0';
+            if (doubleIt) {
+                d *= 2;
+                if (d > 9) d -= 9;
+            }
+            sum += d;
+            doubleIt = !doubleIt;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    public static String describeAccountError(int code) {
+        if (code == ACCOUNT_EMPTY) return "Target account number is required";
+        if (code == ACCOUNT_CHECK_DIGIT) return "Target account number is not valid (check digit mismatch)";
+        return "Target account number must be " + ACCOUNT_PREFIX + " followed by " + ACCOUNT_DIGITS + " digits";
+    }
+}
@@ -0,0 +1,404 @@
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+import java.util.function.Consumer;
+
+// Storage on an embedded H2 database, reached through JDBC. The SQL keeps to standard
+// forms (MERGE, SELECT ... FOR UPDATE, ALTER COLUMN ... SET DATA TYPE), which rules out
+// SQLite. Money is stored as BIGINT minor units (paise for INR) of the account's currency.
+// Nothing is cached here; put a CachingAccountRepository in front for that.
+// PINs are stored as salted PinHash values; findPin returns the hash.
+// History is appended with batched prepared statements in one transaction per call,
+// holding the account row lock so concurrent appends get distinct sequence numbers.
+class JdbcAccountRepository implements AccountRepository {
+    private static final int PAGE_SIZE = 1000;
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS accounts (account_number VARCHAR(32) PRIMARY KEY, "
+                    + "holder_name VARCHAR(100) NOT NULL, balance_paise BIGINT NOT NULL, "
+                    + "blocked BOOLEAN NOT NULL, failed_attempts INT NOT NULL, currency CHAR(3) DEFAULT 'INR' NOT NULL, "
+                    + "opening_balance_paise BIGINT NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS credentials (account_number VARCHAR(32) PRIMARY KEY, "
+                    + "pin VARCHAR(" + PinHash.MAX_LENGTH + ") NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS transactions (account_number VARCHAR(32) NOT NULL, seq BIGINT NOT NULL, "
+                    + "type VARCHAR(" + TransactionCodec.MAX_TYPE_LENGTH + ") NOT NULL, amount_paise BIGINT NOT NULL, "
+                    + "balance_after_paise BIGINT NOT NULL, created_at BIGINT NOT NULL, PRIMARY KEY (account_number, seq))"
+    };
+
+    private static final String SELECT_ACCOUNT =
+            "SELECT holder_name, balance_paise, blocked, failed_attempts, currency, opening_balance_paise "
+                    + "FROM accounts WHERE account_number = ?";
+    // The opening balance is written only by the insert
+    private static final String MERGE_ACCOUNT =
+            "MERGE INTO accounts a USING (VALUES (CAST(? AS VARCHAR(100)), CAST(? AS BIGINT), CAST(? AS BOOLEAN), "
+                    + "CAST(? AS INT), CAST(? AS CHAR(3)), CAST(? AS VARCHAR(32)), CAST(? AS BIGINT))) "
+                    + "AS s (holder_name, balance_paise, blocked, failed_attempts, currency, account_number, opening) "
+                    + "ON a.account_number = s.account_number "
+                    + "WHEN MATCHED THEN UPDATE SET holder_name = s.holder_name, balance_paise = s.balance_paise, "
+                    + "blocked = s.blocked, failed_attempts = s.failed_attempts, currency = s.currency "
+                    + "WHEN NOT MATCHED THEN INSERT (account_number, holder_name, balance_paise, blocked, failed_attempts, "
+                    + "currency, opening_balance_paise) VALUES (s.account_number, s.holder_name, s.balance_paise, "
+                    + "s.blocked, s.failed_attempts, s.currency, s.opening)";
+    private static final String SELECT_PIN = "SELECT pin FROM credentials WHERE account_number = ?";
+    private static final String UPDATE_PIN = "UPDATE credentials SET pin = ? WHERE account_number = ?";
+    private static final String MERGE_PIN =
+            "MERGE INTO credentials c USING (VALUES (CAST(? AS VARCHAR(" + PinHash.MAX_LENGTH + ")), "
+                    + "CAST(? AS VARCHAR(32)))) AS s (pin, account_number) ON c.account_number = s.account_number "
+                    + "WHEN MATCHED THEN UPDATE SET pin = s.pin "
+                    + "WHEN NOT MATCHED THEN INSERT (account_number, pin) VALUES (s.account_number, s.pin)";
+    private static final String LOCK_ACCOUNT = "SELECT balance_paise FROM accounts WHERE account_number = ? FOR UPDATE";
+    private static final String MAX_SEQ = "SELECT COALESCE(MAX(seq), 0) FROM transactions WHERE account_number = ?";
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (account_number, seq, type, amount_paise, balance_after_paise, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String SELECT_TRANSACTIONS =
+            "SELECT type, amount_paise, balance_after_paise, created_at FROM transactions WHERE account_number = ? ORDER BY seq";
+    private static final String SELECT_ACCOUNT_PAGE =
+            "SELECT account_number, holder_name, balance_paise, blocked, failed_attempts, currency, "
+                    + "opening_balance_paise FROM accounts WHERE account_number > ? ORDER BY account_number FETCH FIRST " + PAGE_SIZE + " ROWS ONLY";
+    private static final String COUNT_ACCOUNTS = "SELECT COUNT(*) FROM accounts";
+    private static final String SELECT_ALL_PINS = "SELECT account_number, pin FROM credentials";
+    private static final String SELECT_MISSING_OPENING =
+            "SELECT a.account_number, a.balance_paise, t.type, t.amount_paise, t.balance_after_paise FROM accounts a "
+                    + "LEFT JOIN transactions t ON t.account_number = a.account_number AND t.seq = "
+                    + "(SELECT MIN(seq) FROM transactions m WHERE m.account_number = a.account_number) "
+                    + "WHERE a.opening_balance_paise IS NULL";
+    private static final String UPDATE_OPENING =
+            "UPDATE accounts SET opening_balance_paise = ? WHERE account_number = ?";
+
+    private static final int FETCH_SIZE = 1000;
+    // Two MERGEs inserting the same new key can both miss it; the loser retries as an update
+    private static final int MAX_MERGE_ATTEMPTS = 3;
+
+    private final ConnectionPool pool;
+
+    public JdbcAccountRepository(ConnectionPool pool) {
+        this.pool = pool;
+        createSchema();
+    }
+
+    private void createSchema() {
+        Connection connection = borrow();
+        try (Statement statement = connection.createStatement()) {
+            for (String ddl : SCHEMA) {
+                statement.execute(ddl);
+            }
+            migrateSchema(connection, statement);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not create schema", e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    // Brings databases created by earlier versions up to the current schema
+    private void migrateSchema(Connection connection, Statement statement) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        if (columnSize(meta, "accounts", "currency") < 0) {
+            // Accounts created before currencies existed were all rupee accounts
+            statement.execute("ALTER TABLE accounts ADD COLUMN currency CHAR(3) DEFAULT 'INR' NOT NULL");
+        }
+        if (columnSize(meta, "accounts", "opening_balance_paise") < 0) {
+            statement.execute("ALTER TABLE accounts ADD COLUMN opening_balance_paise BIGINT");
+            fillOpeningBalances(connection);
+            statement.execute("ALTER TABLE accounts ALTER COLUMN opening_balance_paise SET NOT NULL");
+        }
+        if (columnSize(meta, "transactions", "type") < TransactionCodec.MAX_TYPE_LENGTH) {
+            statement.execute("ALTER TABLE transactions ALTER COLUMN type SET DATA TYPE VARCHAR("
+                    + TransactionCodec.MAX_TYPE_LENGTH + ")");
+        }
+        if (columnSize(meta, "credentials", "pin") < PinHash.MAX_LENGTH) {
+            statement.execute("ALTER TABLE credentials ALTER COLUMN pin SET DATA TYPE VARCHAR(" + PinHash.MAX_LENGTH + ")");
+        }
+        hashPlainPins(connection);
+    }
+
+    // Earlier versions did not store opening balances. The best figure left is the balance
+    // the first logged entry started from, or the current balance when there is no history.
+    private void fillOpeningBalances(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery(SELECT_MISSING_OPENING);
+             PreparedStatement update = connection.prepareStatement(UPDATE_OPENING)) {
+            while (rs.next()) {
+                long opening = rs.getLong(2);
+                String type = rs.getString(3);
+                if (type != null) {
+                    Transaction first = new Transaction(type, Money.fromPaise(rs.getLong(4)),
+                            Money.fromPaise(rs.getLong(5)));
+                    opening = rs.getLong(5) - Money.toPaise(first.getSignedAmount());
+                }
+                update.setLong(1, opening);
+                update.setString(2, rs.getString(1));
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    // Replaces PINs stored in plain text by earlier versions with their hashes
+    private void hashPlainPins(Connection connection) throws SQLException {
+        Map<String, String> plain = new HashMap<>();
+        try (Statement select = connection.createStatement();
+             ResultSet rs = select.executeQuery(SELECT_ALL_PINS)) {
+            while (rs.next()) {
+                if (!PinHash.isHashed(rs.getString(2))) {
+                    plain.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        if (plain.isEmpty()) return;
+        connection.setAutoCommit(false);
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_PIN)) {
+            for (Map.Entry<String, String> entry : plain.entrySet()) {
+                update.setString(1, PinHash.hash(entry.getValue()));
+                update.setString(2, entry.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+        connection.commit();
+    }
+
+    // Declared size of the column, or -1 when it does not exist. Drivers differ in the
+    // case they report unquoted names in, so both are tried.
+    static int columnSize(DatabaseMetaData meta, String table, String column) throws SQLException {
+        for (String[] name : new String[][]{{table, column}, {table.toUpperCase(), column.toUpperCase()}}) {
+            try (ResultSet rs = meta.getColumns(null, null, name[0], name[1])) {
+                if (rs.next()) return rs.getInt("COLUMN_SIZE");
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public AccountRecord findAccount(String accountNumber) {
+        Connection connection = borrow();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_ACCOUNT)) {
+            select.setString(1, accountNumber);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) return null;
+                return new AccountRecord(accountNumber, rs.getString(1),
+                        Money.fromPaise(rs.getLong(2)), rs.getBoolean(3), rs.getInt(4),
+                        BankCurrency.valueOf(rs.getString(5).trim()), Money.fromPaise(rs.getLong(6)));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load account " + accountNumber, e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public void saveAccount(AccountRecord account) {
+        saveAccounts(Collections.singletonList(account));
+    }
+
+    @Override
+    public void saveAccounts(Collection<AccountRecord> accounts) {
+        if (accounts.isEmpty()) return;
+        Connection connection = borrow();
+        try {
+            connection.setAutoCommit(false);
+            for (int attempt = 1; ; attempt++) {
+                try (PreparedStatement merge = connection.prepareStatement(MERGE_ACCOUNT)) {
+                    for (AccountRecord account : accounts) {
+                        bindAccount(merge, account);
+                        merge.addBatch();
+                    }
+                    merge.executeBatch();
+                    connection.commit();
+                    return;
+                } catch (SQLException e) {
+                    connection.rollback();
+                    if (!isDuplicateKey(e) || attempt == MAX_MERGE_ATTEMPTS) throw e;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not save " + accounts.size() + " accounts", e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    // SQLState class 23 is an integrity constraint violation; batches wrap the cause
+    private static boolean isDuplicateKey(SQLException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && state.startsWith("23")) return true;
+            }
+        }
+        return false;
+    }
+
+    private void bindAccount(PreparedStatement statement, AccountRecord account) throws SQLException {
+        statement.setString(1, account.getHolderName());
+        statement.setLong(2, Money.toPaise(account.getBalance()));
+        statement.setBoolean(3, account.isBlocked());
+        statement.setInt(4, account.getFailedAttempts());
+        statement.setString(5, account.getCurrency().name());
+        statement.setString(6, account.getAccountNumber());
+        statement.setLong(7, Money.toPaise(account.getOpeningBalance()));
+    }
+
+    @Override
+    public String findPin(String accountNumber) {
+        Connection connection = borrow();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_PIN)) {
+            select.setString(1, accountNumber);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) return null;
+                return rs.getString(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load credentials for " + accountNumber, e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public void savePin(String accountNumber, String pin) {
+        String stored = PinHash.isHashed(pin) ? pin : PinHash.hash(pin);
+        Connection connection = borrow();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try (PreparedStatement merge = connection.prepareStatement(MERGE_PIN)) {
+                    merge.setString(1, stored);
+                    merge.setString(2, accountNumber);
+                    merge.executeUpdate();
+                    return;
+                } catch (SQLException e) {
+                    if (!isDuplicateKey(e) || attempt == MAX_MERGE_ATTEMPTS) throw e;
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not save credentials for " + accountNumber, e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public void appendTransactions(String accountNumber, List<Transaction> transactions) {
+        if (transactions.isEmpty()) return;
+        Connection connection = borrow();
+        try {
+            connection.setAutoCommit(false);
+            // Serializes appends to the same account until commit. History written before
+            // its account row exists has no row to lock; the primary key still rejects a clash.
+            try (PreparedStatement lock = connection.prepareStatement(LOCK_ACCOUNT)) {
+                lock.setString(1, accountNumber);
+                lock.executeQuery().close();
+            }
+            long seq;
+            try (PreparedStatement max = connection.prepareStatement(MAX_SEQ)) {
+                max.setString(1, accountNumber);
+                try (ResultSet rs = max.executeQuery()) {
+                    rs.next();
+                    seq = rs.getLong(1);
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_TRANSACTION)) {
+                for (Transaction t : transactions) {
+                    insert.setString(1, accountNumber);
+                    insert.setLong(2, ++seq);
+                    insert.setString(3, t.getType());
+                    insert.setLong(4, Money.toPaise(t.getAmount()));
+                    insert.setLong(5, Money.toPaise(t.getBalanceAfter()));
+                    insert.setLong(6, t.getTimestamp().getTime());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not append history for " + accountNumber, e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public void forEachTransaction(String accountNumber, Consumer<Transaction> consumer) {
+        Connection connection = borrow();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_TRANSACTIONS)) {
+            select.setString(1, accountNumber);
+            select.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(new Transaction(rs.getString(1), Money.fromPaise(rs.getLong(2)),
+                            Money.fromPaise(rs.getLong(3)), new Date(rs.getLong(4))));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read history for " + accountNumber, e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    // Reads a page of accounts at a time, in account number order, and hands the page to
+    // the consumer only after the connection is back in the pool, so the consumer can use
+    // this repository even when the pool has a single connection
+    @Override
+    public void forEachAccount(Consumer<AccountRecord> consumer) {
+        String after = "";
+        while (true) {
+            List<AccountRecord> page = accountPage(after);
+            page.forEach(consumer);
+            if (page.size() < PAGE_SIZE) return;
+            after = page.get(page.size() - 1).getAccountNumber();
+        }
+    }
+
+    private List<AccountRecord> accountPage(String after) {
+        List<AccountRecord> page = new ArrayList<>(PAGE_SIZE);
+        Connection connection = borrow();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_ACCOUNT_PAGE)) {
+            select.setString(1, after);
+            select.setFetchSize(PAGE_SIZE);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    page.add(new AccountRecord(rs.getString(1), rs.getString(2),
+                            Money.fromPaise(rs.getLong(3)), rs.getBoolean(4), rs.getInt(5),
+                            BankCurrency.valueOf(rs.getString(6).trim()), Money.fromPaise(rs.getLong(7))));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not list accounts", e);
+        } finally {
+            pool.release(connection);
+        }
+        return page;
+    }
+
+    @Override
+    public int countAccounts() {
+        Connection connection = borrow();
+        try (Statement count = connection.createStatement();
+             ResultSet rs = count.executeQuery(COUNT_ACCOUNTS)) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not count accounts", e);
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private Connection borrow() {
+        try {
+            return pool.borrow();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Database unavailable", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,14 @@
+// Conversions between amounts held as double and whole paise (or cents: the minor
+// unit of every BankCurrency is a hundredth). Rounding to the nearest paisa keeps
+// every two-decimal amount exact across a round trip.
+final class Money {
+    private Money() { }
+
+    static long toPaise(double amount) {
+        return Math.round(amount * 100.0);
+    }
+
+    static double fromPaise(long paise) {
+        return paise / 100.0;
+    }
+}
@@ -0,0 +1,66 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+// Salted PIN hashes for stored credentials, as "pbkdf2$<iterations>$<salt>$<hash>"
+// with Base64 salt and hash. A four-digit PIN has only 10^4 values, so the hash keeps
+// PINs out of plain sight in the database but cannot stop an offline search by
+// someone holding both salt and hash; account lockout is what limits guessing.
+final class PinHash {
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int ITERATIONS = 10_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    // Longest encoded value, for sizing storage columns
+    static final int MAX_LENGTH = 128;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PinHash() { }
+
+    static String hash(String pin) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + ITERATIONS + '$' + base64.encodeToString(salt) + '$'
+                + base64.encodeToString(derive(pin, salt, ITERATIONS));
+    }
+
+    static boolean isHashed(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    // Accepts a hash from hash() or, for accounts created in memory, the plain PIN
+    static boolean matches(String stored, String enteredPin) {
+        if (stored == null || enteredPin == null) return false;
+        if (!isHashed(stored)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8),
+                    enteredPin.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] expected = base64.decode(parts[3]);
+            return MessageDigest.isEqual(expected, derive(enteredPin, base64.decode(parts[2]), Integer.parseInt(parts[1])));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] derive(String pin, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(pin.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Recomputes every account's balance from its history and compares it with the stored balance.
+//
+// Each history entry must satisfy previous balanceAfter + signed amount == balanceAfter,
+// where the first entry builds on the account's stored opening balance. The last
+// balanceAfter, or the opening balance when there is no history, must then equal the
+// stored balance; a difference means the balance was changed outside the log, for
+// example through setBalance. All sums are in whole paise.
+//
+// Accounts are read from the repository in chunks and checked on a ForkJoinPool. History
+// is streamed entry by entry. A semaphore caps the chunks in flight, so memory use depends
+// on chunkSize * maxChunksInFlight and not on the size of the ledger. Discrepancies are
+// written to the report as CSV lines as soon as they are found:
+//   account,kind,entry,expected,actual
+class ReconciliationEngine {
+    static final String CHAIN_BREAK = "CHAIN_BREAK";
+    static final String BALANCE_MISMATCH = "BALANCE_MISMATCH";
+
+    private final int parallelism;
+    private final int chunkSize;
+    private final int maxChunksInFlight;
+
+    public ReconciliationEngine(int parallelism, int chunkSize, int maxChunksInFlight) {
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    public ReconciliationEngine() {
+        this(Runtime.getRuntime().availableProcessors(), 256, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    public ReconciliationSummary reconcile(AccountRepository repository, Writer report) {
+        long start = System.currentTimeMillis();
+        AtomicLong accounts = new AtomicLong();
+        AtomicLong entries = new AtomicLong();
+        AtomicLong discrepancies = new AtomicLong();
+        Semaphore inFlight = new Semaphore(maxChunksInFlight);
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+        writeLine(report, "account,kind,entry,expected,actual");
+        try {
+            List<AccountRecord> chunk = new ArrayList<>(chunkSize);
+            repository.forEachAccount(record -> {
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    submit(pool, inFlight, failure, new ArrayList<>(chunk), repository, report, accounts, entries, discrepancies);
+                    chunk.clear();
+                }
+            });
+            if (!chunk.isEmpty()) {
+                submit(pool, inFlight, failure, chunk, repository, report, accounts, entries, discrepancies);
+            }
+            inFlight.acquireUninterruptibly(maxChunksInFlight);
+        } finally {
+            pool.shutdown();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        try {
+            report.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new ReconciliationSummary(accounts.get(), entries.get(), discrepancies.get(),
+                System.currentTimeMillis() - start);
+    }
+
+    private void submit(ForkJoinPool pool, Semaphore inFlight, AtomicReference<RuntimeException> failure,
+                        List<AccountRecord> chunk,
+                        AccountRepository repository, Writer report,
+                        AtomicLong accounts, AtomicLong entries, AtomicLong discrepancies) {
+        inFlight.acquireUninterruptibly();
+        pool.execute(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                try {
+                    for (AccountRecord record : chunk) {
+                        AccountCheck check = new AccountCheck(record.getAccountNumber(), record.getOpeningBalance(),
+                                report);
+                        repository.forEachTransaction(record.getAccountNumber(), check);
+                        check.finish(record.getBalance());
+                        accounts.incrementAndGet();
+                        entries.addAndGet(check.entries);
+                        discrepancies.addAndGet(check.discrepancies);
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            }
+        });
+    }
+
+    // Checks one live account, e.g. before an operator adjusts it. Balance and history are
+    // read under one read lock, so a concurrent deposit cannot show up as a mismatch.
+    public static boolean verify(BankOperations account, Writer report) {
+        List<Transaction> history = new ArrayList<>();
+        double balance = account.copyHistoryAndBalance(history);
+        AccountCheck check = new AccountCheck(account.getAccountNumber(), account.getOpeningBalance(), report);
+        history.forEach(check);
+        check.finish(balance);
+        return check.discrepancies == 0;
+    }
+
+    // Streaming check of one account's history; keeps only the running state
+    private static final class AccountCheck implements Consumer<Transaction> {
+        private final String accountNumber;
+        private final Writer report;
+        private long lastBalanceAfter;
+        long entries;
+        long discrepancies;
+
+        AccountCheck(String accountNumber, double openingBalance, Writer report) {
+            this.accountNumber = accountNumber;
+            this.report = report;
+            this.lastBalanceAfter = Money.toPaise(openingBalance);
+        }
+
+        @Override
+        public void accept(Transaction t) {
+            long after = Money.toPaise(t.getBalanceAfter());
+            long expected = lastBalanceAfter + Money.toPaise(t.getSignedAmount());
+            if (after != expected) {
+                report(CHAIN_BREAK, entries, expected, after);
+            }
+            lastBalanceAfter = after;
+            entries++;
+        }
+
+        // A mismatch on an account without history is reported against entry -1
+        void finish(double storedBalance) {
+            long stored = Money.toPaise(storedBalance);
+            if (stored != lastBalanceAfter) {
+                report(BALANCE_MISMATCH, entries - 1, lastBalanceAfter, stored);
+            }
+        }
+
+        private void report(String kind, long entry, long expectedPaise, long actualPaise) {
+            discrepancies++;
+            StringBuilder line = new StringBuilder(64);
+            line.append(accountNumber).append(',').append(kind).append(',').append(entry).append(',');
+            BankFormat.appendAmount(line, Money.fromPaise(expectedPaise)).append(',');
+            BankFormat.appendAmount(line, Money.fromPaise(actualPaise));
+            writeLine(report, line.toString());
+        }
+    }
+
+    private static void writeLine(Writer report, String line) {
+        synchronized (report) {
+            try {
+                report.write(line);
+                report.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+// Outcome of a reconciliation run
+class ReconciliationSummary {
+    private final long accounts;
+    private final long entries;
+    private final long discrepancies;
+    private final long elapsedMillis;
+
+    public ReconciliationSummary(long accounts, long entries, long discrepancies, long elapsedMillis) {
+        this.accounts = accounts;
+        this.entries = entries;
+        this.discrepancies = discrepancies;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getAccounts() { return accounts; }
+    public long getEntries() { return entries; }
+    public long getDiscrepancies() { return discrepancies; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public boolean isClean() { return discrepancies == 0; }
+
+    @Override
+    public String toString() {
+        return String.format("%d accounts, %d history entries, %d discrepancies in %d ms",
+                accounts, entries, discrepancies, elapsedMillis);
+    }
+}
@@ -0,0 +1,16 @@
+// Why TransactionGateway turned a request away
+enum RejectReason {
+    QUEUE_FULL("The system is busy. Please try again shortly."),
+    OVERLOADED("The system is under heavy load. Please try again shortly."),
+    ACCOUNT_BUSY("Another request for this account is still in progress."),
+    EXPIRED("The request timed out before it could be processed. Please try again."),
+    SHUT_DOWN("The service is not accepting requests.");
+
+    private final String message;
+
+    RejectReason(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() { return message; }
+}
@@ -0,0 +1,21 @@
+// Wire format shared by ReplicationSender and StandbyLedger.
+// Primary to standby, one frame per batch:
+//   int magic, long firstSeq, int count, int payloadLength, payload
+// In a FRAME_MAGIC frame the payload is a TransactionEncoder stream, with a varint index
+// into the frame's account table written before each record. A new account number is
+// sent inline as index 0 followed by its UTF string.
+// A SNAPSHOT_MAGIC frame seeds accounts before their first record: for each entry the
+// account number and currency code as UTF strings, then the balance in paise as a long.
+// Snapshots take sequence numbers like records.
+// Standby to primary: a long, the sequence number of the last applied entry.
+final class ReplicationProtocol {
+    static final int FRAME_MAGIC = 0x52504C31; // "RPL1"
+    static final int SNAPSHOT_MAGIC = 0x52504C53; // "RPLS"
+    // Largest payload the standby accepts; a longer frame marks the stream broken
+    static final int MAX_PAYLOAD = 16 << 20;
+    // Largest batch the sender takes; with types capped at MAX_TYPE_LENGTH and short
+    // account numbers, a full batch stays well under MAX_PAYLOAD
+    static final int MAX_BATCH = 16_384;
+
+    private ReplicationProtocol() { }
+}
@@ -0,0 +1,249 @@
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ships every committed transaction to a standby ledger over a socket.
+// Register it with BankOperations.addTransactionListener on each replicated account;
+// registering queues a snapshot of the account (number, currency, balance) ahead of its
+// records, so the standby holds every account, including ones that never see traffic.
+// Commits go into a bounded queue. When the standby falls behind and the queue fills,
+// onCommit blocks, which throttles writers on the primary (backpressure). If the queue
+// stays full for enqueueTimeoutMillis, replication is marked broken instead. A sender
+// thread drains the queue in batches of up to batchSize. An ack thread tracks how far
+// the standby has applied. Sequence numbers are assigned in queue order by the sender thread.
+// If the connection drops, replication stops and the standby must be re-seeded.
+class ReplicationSender implements TransactionListener, Closeable {
+    private static final class Pending {
+        final String accountNumber;
+        // Null for a snapshot entry
+        final Transaction transaction;
+        final BankCurrency currency;
+        final long balancePaise;
+        final long enqueuedAtNanos;
+
+        Pending(String accountNumber, Transaction transaction) {
+            this(accountNumber, transaction, null, 0);
+        }
+
+        Pending(String accountNumber, BankCurrency currency, long balancePaise) {
+            this(accountNumber, null, currency, balancePaise);
+        }
+
+        private Pending(String accountNumber, Transaction transaction, BankCurrency currency, long balancePaise) {
+            this.accountNumber = accountNumber;
+            this.transaction = transaction;
+            this.currency = currency;
+            this.balancePaise = balancePaise;
+            this.enqueuedAtNanos = System.nanoTime();
+        }
+
+        boolean isSnapshot() { return transaction == null; }
+    }
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final DataInputStream in;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long enqueueTimeoutMillis;
+    private final Thread senderThread;
+    private final Thread ackThread;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sentFrames = new AtomicLong();
+    private volatile long lastSentSeq;
+    private volatile long ackedSeq;
+    private volatile long lastLagNanos;
+    // Enqueue time of the oldest record of each in-flight frame, indexed by frame
+    private final ArrayBlockingQueue<long[]> inFlight = new ArrayBlockingQueue<>(1024);
+
+    public ReplicationSender(String host, int port, int queueCapacity, int batchSize) throws IOException {
+        this(host, port, queueCapacity, batchSize, 5000);
+    }
+
+    public ReplicationSender(String host, int port, int queueCapacity, int batchSize, long enqueueTimeoutMillis)
+            throws IOException {
+        if (batchSize < 1 || batchSize > ReplicationProtocol.MAX_BATCH) {
+            throw new IllegalArgumentException("batchSize must be between 1 and " + ReplicationProtocol.MAX_BATCH);
+        }
+        this.socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.enqueueTimeoutMillis = enqueueTimeoutMillis;
+        this.senderThread = new Thread(this::sendLoop, "replication-sender");
+        this.ackThread = new Thread(this::ackLoop, "replication-acks");
+        senderThread.setDaemon(true);
+        ackThread.setDaemon(true);
+        senderThread.start();
+        ackThread.start();
+    }
+
+    @Override
+    public void onAttach(String accountNumber, BankCurrency currency, double balance) {
+        enqueue(new Pending(accountNumber, currency, Money.toPaise(balance)));
+    }
+
+    @Override
+    public void onCommit(String accountNumber, Transaction transaction) {
+        enqueue(new Pending(accountNumber, transaction));
+    }
+
+    private void enqueue(Pending pending) {
+        if (!running) return;
+        try {
+            if (queue.offer(pending, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                enqueued.incrementAndGet();
+            } else {
+                fail(new IOException("Standby fell behind: replication queue full for " + enqueueTimeoutMillis + " ms"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(batchSize * 16);
+        long seq = 0;
+        try {
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                // Snapshots and records go in separate frames, in queue order
+                int from = 0;
+                while (from < batch.size()) {
+                    boolean snapshot = batch.get(from).isSnapshot();
+                    int to = from + 1;
+                    while (to < batch.size() && batch.get(to).isSnapshot() == snapshot) to++;
+                    List<Pending> run = batch.subList(from, to);
+
+                    payload.reset();
+                    if (snapshot) {
+                        encodeSnapshots(run, payload);
+                    } else {
+                        encode(run, payload);
+                    }
+                    if (payload.size() > ReplicationProtocol.MAX_PAYLOAD) {
+                        throw new IOException("Replication frame of " + payload.size() + " bytes is too large");
+                    }
+                    inFlight.put(new long[]{seq + run.size(), run.get(0).enqueuedAtNanos});
+                    out.writeInt(snapshot ? ReplicationProtocol.SNAPSHOT_MAGIC : ReplicationProtocol.FRAME_MAGIC);
+                    out.writeLong(seq + 1);
+                    out.writeInt(run.size());
+                    out.writeInt(payload.size());
+                    payload.writeTo(out);
+
+                    seq += run.size();
+                    sentFrames.incrementAndGet();
+                    from = to;
+                }
+                out.flush();
+                lastSentSeq = seq;
+                batch.clear();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void encodeSnapshots(List<Pending> run, ByteArrayOutputStream payload) throws IOException {
+        DataOutputStream data = new DataOutputStream(payload);
+        for (Pending p : run) {
+            data.writeUTF(p.accountNumber);
+            data.writeUTF(p.currency.name());
+            data.writeLong(p.balancePaise);
+        }
+    }
+
+    private static void encode(List<Pending> batch, ByteArrayOutputStream payload) throws IOException {
+        DataOutputStream data = new DataOutputStream(payload);
+        TransactionEncoder encoder = new TransactionEncoder(payload);
+        Map<String, Integer> accounts = new HashMap<>();
+        byte[] varint = new byte[10];
+        for (Pending p : batch) {
+            Integer index = accounts.get(p.accountNumber);
+            if (index == null) {
+                payload.write(varint, 0, TransactionCodec.putVarLong(varint, 0, 0));
+                data.writeUTF(p.accountNumber);
+                accounts.put(p.accountNumber, accounts.size() + 1);
+            } else {
+                payload.write(varint, 0, TransactionCodec.putVarLong(varint, 0, index));
+            }
+            encoder.write(p.transaction);
+        }
+    }
+
+    private void ackLoop() {
+        try {
+            while (true) {
+                long acked = in.readLong();
+                long[] frame;
+                while ((frame = inFlight.peek()) != null && frame[0] <= acked) {
+                    inFlight.poll();
+                    lastLagNanos = System.nanoTime() - frame[1];
+                }
+                ackedSeq = acked;
+            }
+        } catch (IOException e) {
+            if (running) fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        running = false;
+        queue.clear();
+    }
+
+    // Records committed on the primary but not yet applied on the standby
+    public long getReplicaLagRecords() { return enqueued.get() - ackedSeq; }
+
+    // Time from commit to standby ack for the most recently acknowledged frame
+    public long getReplicaLagMillis() { return TimeUnit.NANOSECONDS.toMillis(lastLagNanos); }
+
+    public long getEnqueuedCount() { return enqueued.get(); }
+    public long getSentCount() { return lastSentSeq; }
+    public long getAckedCount() { return ackedSeq; }
+    public long getSentFrames() { return sentFrames.get(); }
+    public int getQueueDepth() { return queue.size(); }
+    public boolean isHealthy() { return failure == null; }
+    public IOException getFailure() { return failure; }
+
+    // Waits until the standby has applied everything enqueued so far
+    public boolean awaitCaughtUp(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (ackedSeq < enqueued.get()) {
+            if (failure != null || System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            senderThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        socket.close();
+    }
+}
@@ -0,0 +1,22 @@
+// One account found by AccountSearchIndex
+class SearchHit {
+    private final String accountNumber;
+    private final String holderName;
+    private final double score;
+
+    public SearchHit(String accountNumber, String holderName, double score) {
+        this.accountNumber = accountNumber;
+        this.holderName = holderName;
+        this.score = score;
+    }
+
+    public String getAccountNumber() { return accountNumber; }
+    public String getHolderName() { return holderName; }
+    // 1.0 for prefix and account number matches; trigram similarity for fuzzy matches
+    public double getScore() { return score; }
+
+    @Override
+    public String toString() {
+        return accountNumber + " " + holderName + (score < 1.0 ? String.format(" (%.2f)", score) : "");
+    }
+}
@@ -0,0 +1,5 @@
+// Notified of failed logins, lockouts and PIN changes. Called after the account's
+// write lock is released, in order, like TransactionListener.
+interface SecurityEventListener {
+    void onSecurityEvent(String accountNumber, AuditEventType type, String detail);
+}
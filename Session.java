@@ -0,0 +1,27 @@
+// Login session issued once the PIN has been validated
+class Session {
+    private final String token;
+    private final BankOperations account;
+    private final long createdAt;
+    private volatile long lastAccess;
+    private volatile boolean closed;
+    private TimingWheel.Timeout<Session> timeout; // guarded by the owning stripe
+
+    Session(String token, BankOperations account, long now) {
+        this.token = token;
+        this.account = account;
+        this.createdAt = now;
+        this.lastAccess = now;
+    }
+
+    public String getToken() { return token; }
+    public BankOperations getAccount() { return account; }
+    public long getCreatedAt() { return createdAt; }
+    public long getLastAccess() { return lastAccess; }
+    public boolean isClosed() { return closed; }
+
+    void touch(long now) { lastAccess = now; }
+    void close() { closed = true; }
+    TimingWheel.Timeout<Session> getTimeout() { return timeout; }
+    void setTimeout(TimingWheel.Timeout<Session> timeout) { this.timeout = timeout; }
+}
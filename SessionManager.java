@@ -0,0 +1,161 @@
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Issues session tokens and enforces idle and absolute timeouts.
+// Sessions are spread over independent stripes, each a map plus a TimingWheel
+// behind its own lock. Validation is a single map lookup plus two deadline checks
+// and never touches the wheel. When a wheel entry fires for a session that was
+// used in the meantime, it is re-armed for the new idle deadline instead of being
+// expired, so no stripe is ever scanned.
+class SessionManager {
+    private static final int TOKEN_BYTES = 18;
+
+    private static final class Stripe {
+        final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+        final TimingWheel<Session> wheel;
+
+        Stripe(long tickMillis, long startMillis) {
+            wheel = new TimingWheel<>(tickMillis, startMillis);
+        }
+    }
+
+    private final long idleTimeoutMillis;
+    private final long absoluteTimeoutMillis;
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private ScheduledExecutorService reaper;
+
+    public SessionManager(long idleTimeoutMillis, long absoluteTimeoutMillis, int stripeCount) {
+        if (idleTimeoutMillis <= 0 || absoluteTimeoutMillis < idleTimeoutMillis) {
+            throw new IllegalArgumentException("Idle timeout must be positive and not exceed the absolute timeout");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.absoluteTimeoutMillis = absoluteTimeoutMillis;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        long tick = Math.max(1, idleTimeoutMillis / 64);
+        long now = System.currentTimeMillis();
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(size);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe(tick, now);
+        }
+    }
+
+    // Opens a session for an account whose PIN has just been validated
+    public Session open(BankOperations account) {
+        long now = System.currentTimeMillis();
+        Session session = new Session(newToken(), account, now);
+        Stripe stripe = stripeFor(session.getToken());
+        stripe.sessions.put(session.getToken(), session);
+        synchronized (stripe) {
+            session.setTimeout(stripe.wheel.schedule(session, now + idleTimeoutMillis));
+        }
+        return session;
+    }
+
+    // Returns the live session for the token and records the access, or null if it is unknown or expired
+    public Session validate(String token) {
+        if (token == null) return null;
+        Session session = stripeFor(token).sessions.get(token);
+        if (session == null || session.isClosed()) return null;
+        long now = System.currentTimeMillis();
+        if (isExpired(session, now)) {
+            close(token);
+            expiredCount.incrementAndGet();
+            return null;
+        }
+        session.touch(now);
+        return session;
+    }
+
+    public void close(String token) {
+        if (token == null) return;
+        Stripe stripe = stripeFor(token);
+        Session session = stripe.sessions.remove(token);
+        if (session == null) return;
+        session.close();
+        synchronized (stripe) {
+            if (session.getTimeout() != null) {
+                stripe.wheel.cancel(session.getTimeout());
+            }
+        }
+    }
+
+    // Advances every stripe's wheel and drops sessions whose deadlines have passed
+    public int expire(long nowMillis) {
+        int expired = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                final int[] count = {0};
+                stripe.wheel.advanceTo(nowMillis, session -> {
+                    if (session.isClosed()) return;
+                    if (isExpired(session, nowMillis)) {
+                        session.close();
+                        stripe.sessions.remove(session.getToken(), session);
+                        count[0]++;
+                    } else {
+                        stripe.wheel.reschedule(session.getTimeout(), deadline(session));
+                    }
+                });
+                expired += count[0];
+            }
+        }
+        expiredCount.addAndGet(expired);
+        return expired;
+    }
+
+    // Starts a background thread that expires sessions once per wheel tick
+    public synchronized void start() {
+        if (reaper != null) return;
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = stripes[0].wheel.getTickMillis();
+        reaper.scheduleAtFixedRate(() -> expire(System.currentTimeMillis()), tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (reaper != null) {
+            reaper.shutdown();
+            reaper = null;
+        }
+    }
+
+    public int getActiveCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.sessions.size();
+        }
+        return count;
+    }
+
+    public long getExpiredCount() { return expiredCount.get(); }
+
+    private boolean isExpired(Session session, long now) {
+        return now >= deadline(session);
+    }
+
+    private long deadline(Session session) {
+        return Math.min(session.getLastAccess() + idleTimeoutMillis, session.getCreatedAt() + absoluteTimeoutMillis);
+    }
+
+    // Uses the top bits of a multiplicative hash; the low bits pick the bucket inside each map
+    private Stripe stripeFor(String token) {
+        return stripes[(token.hashCode() * 0x9E3779B9) >>> stripeShift];
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
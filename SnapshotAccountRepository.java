@@ -0,0 +1,315 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// AccountRepository served from a memory-mapped snapshot image, for fast startup.
+// Opening maps the file and reads the header and type dictionary; nothing else is
+// loaded. An account is decoded the first time it is asked for and then cached.
+// All writes go to an overlay repository that takes precedence over the image, and
+// appended history follows the image's recent history. Give it a durable overlay,
+// such as a JdbcAccountRepository, or changes since the image are lost on restart; the
+// default in-memory overlay suits read-mostly use. Write a new snapshot from this
+// repository to fold the overlay in, then start the next one with an empty overlay.
+class SnapshotAccountRepository implements AccountRepository {
+    // One decoded account
+    private static final class Entry {
+        final AccountRecord record;
+        final String pin;
+        final List<Transaction> history;
+
+        Entry(AccountRecord record, String pin, List<Transaction> history) {
+            this.record = record;
+            this.pin = pin;
+            this.history = history;
+        }
+    }
+
+    private static final Entry MISSING = new Entry(null, null, Collections.emptyList());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long accountCount;
+    private final long dataEnd;
+    private final long indexOffset;
+    private final long indexSlots;
+    private final int indexBits;
+    private final long createdAt;
+    private final String[] dictionary;
+    private final BankCurrency[] currencies = BankCurrency.values();
+
+    private final ConcurrentHashMap<String, Entry> decoded = new ConcurrentHashMap<>();
+    private final AccountRepository overlay;
+    private final Set<String> addedAccounts = ConcurrentHashMap.newKeySet();
+
+    public SnapshotAccountRepository(Path file) throws IOException {
+        this(file, new InMemoryAccountRepository());
+    }
+
+    public SnapshotAccountRepository(Path file, AccountRepository overlay) throws IOException {
+        this.overlay = overlay;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != SnapshotFormat.MAGIC) {
+            throw new IOException("Not a snapshot image: " + file);
+        }
+        if (header.getInt(4) != SnapshotFormat.VERSION) {
+            throw new IOException("Unsupported snapshot version " + header.getInt(4));
+        }
+        this.accountCount = header.getLong(SnapshotFormat.ACCOUNT_COUNT);
+        this.dataEnd = header.getLong(SnapshotFormat.DATA_END);
+        this.indexOffset = header.getLong(SnapshotFormat.INDEX_OFFSET);
+        this.indexSlots = header.getLong(SnapshotFormat.INDEX_SLOTS);
+        this.indexBits = Long.numberOfTrailingZeros(indexSlots);
+        this.createdAt = header.getLong(SnapshotFormat.CREATED_AT);
+        this.chunks = mapRange(channel, FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        Cursor cursor = new Cursor(header.getLong(SnapshotFormat.DICTIONARY_OFFSET));
+        this.dictionary = new String[(int) cursor.varLong()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = cursor.string();
+        }
+
+        // A durable overlay may already hold accounts created after the image was written
+        overlay.forEachAccount(account -> {
+            if (lookup(account.getAccountNumber()) == 0) addedAccounts.add(account.getAccountNumber());
+        });
+    }
+
+    public long getSnapshotAccountCount() { return accountCount; }
+    public long getCreatedAtMillis() { return createdAt; }
+    public int getDecodedCount() { return decoded.size(); }
+
+    @Override
+    public AccountRecord findAccount(String accountNumber) {
+        AccountRecord changed = overlay.findAccount(accountNumber);
+        return changed != null ? changed : entry(accountNumber).record;
+    }
+
+    @Override
+    public void saveAccount(AccountRecord account) {
+        if (overlay.findAccount(account.getAccountNumber()) == null) {
+            Entry entry = entry(account.getAccountNumber());
+            if (entry == MISSING) {
+                addedAccounts.add(account.getAccountNumber());
+            } else {
+                // The image's history is still in front of the overlay's
+                account = account.withOpeningBalance(entry.record.getOpeningBalance());
+            }
+        }
+        overlay.saveAccount(account);
+    }
+
+    @Override
+    public void saveAccounts(Collection<AccountRecord> accounts) {
+        for (AccountRecord account : accounts) {
+            saveAccount(account);
+        }
+    }
+
+    @Override
+    public String findPin(String accountNumber) {
+        String changed = overlay.findPin(accountNumber);
+        return changed != null ? changed : entry(accountNumber).pin;
+    }
+
+    @Override
+    public void savePin(String accountNumber, String pin) {
+        overlay.savePin(accountNumber, pin);
+    }
+
+    @Override
+    public void appendTransactions(String accountNumber, List<Transaction> transactions) {
+        overlay.appendTransactions(accountNumber, transactions);
+    }
+
+    @Override
+    public void forEachTransaction(String accountNumber, Consumer<Transaction> consumer) {
+        entry(accountNumber).history.forEach(consumer);
+        overlay.forEachTransaction(accountNumber, consumer);
+    }
+
+    // Snapshot accounts in file order, then accounts added since; overlay versions win
+    @Override
+    public void forEachAccount(Consumer<AccountRecord> consumer) {
+        long offset = SnapshotFormat.HEADER_SIZE;
+        while (offset < dataEnd) {
+            MappedByteBuffer chunk = chunks[(int) (offset / SnapshotFormat.CHUNK)];
+            if (chunk.get((int) (offset % SnapshotFormat.CHUNK)) == 0) {
+                // Padding up to the next chunk
+                offset = (offset / SnapshotFormat.CHUNK + 1) * SnapshotFormat.CHUNK;
+                continue;
+            }
+            Cursor cursor = new Cursor(offset);
+            AccountRecord record = readAccount(cursor);
+            AccountRecord changed = overlay.findAccount(record.getAccountNumber());
+            consumer.accept(changed != null ? changed : record);
+            cursor.skipHistory();
+            offset = cursor.position();
+        }
+        for (String added : addedAccounts) {
+            consumer.accept(overlay.findAccount(added));
+        }
+    }
+
+    @Override
+    public int countAccounts() {
+        return (int) (accountCount + addedAccounts.size());
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Mappings stay valid until collected; nothing else to release
+        }
+        overlay.close();
+    }
+
+    private Entry entry(String accountNumber) {
+        Entry entry = decoded.get(accountNumber);
+        if (entry != null) return entry;
+        long offset = lookup(accountNumber);
+        if (offset == 0) return MISSING;
+        entry = decode(offset);
+        Entry raced = decoded.putIfAbsent(accountNumber, entry);
+        return raced != null ? raced : entry;
+    }
+
+    // Record offset of the account, or 0 when it is not in the image
+    private long lookup(String accountNumber) {
+        byte[] key = accountNumber.getBytes(StandardCharsets.UTF_8);
+        long slot = SnapshotFormat.hash(accountNumber.hashCode()) >>> (64 - indexBits);
+        while (true) {
+            long offset = getLong(chunks, indexOffset + slot * 8);
+            if (offset == 0) return 0;
+            if (new Cursor(offset).matches(key)) return offset;
+            slot = (slot + 1) & (indexSlots - 1);
+        }
+    }
+
+    private Entry decode(long offset) {
+        Cursor cursor = new Cursor(offset);
+        AccountRecord record = readAccount(cursor);
+        String pin = cursor.pin;
+        int historyCount = (int) cursor.varLong();
+        List<Transaction> history = new ArrayList<>(historyCount);
+        long timestamp = 0;
+        long balance = 0;
+        for (int i = 0; i < historyCount; i++) {
+            long typeRef = cursor.varLong();
+            String type = typeRef == 0 ? cursor.string() : dictionary[(int) typeRef - 1];
+            timestamp += TransactionCodec.unzigzag(cursor.varLong());
+            long amount = TransactionCodec.unzigzag(cursor.varLong());
+            balance += TransactionCodec.unzigzag(cursor.varLong());
+            history.add(new Transaction(type, Money.fromPaise(amount), Money.fromPaise(balance),
+                    new Date(timestamp), record.getCurrency()));
+        }
+        return new Entry(record, pin, history);
+    }
+
+    // Reads the fixed part of a record, leaving the cursor at historyCount
+    private AccountRecord readAccount(Cursor cursor) {
+        String accountNumber = cursor.string();
+        String holderName = cursor.string();
+        cursor.pin = cursor.string();
+        long balance = TransactionCodec.unzigzag(cursor.varLong());
+        long opening = TransactionCodec.unzigzag(cursor.varLong());
+        boolean blocked = cursor.next() != 0;
+        int failedAttempts = (int) cursor.varLong();
+        BankCurrency currency = currencies[cursor.next()];
+        return new AccountRecord(accountNumber, holderName, Money.fromPaise(balance), blocked,
+                failedAttempts, currency, Money.fromPaise(opening));
+    }
+
+    // Sequential reader over one record; records never cross a chunk
+    private final class Cursor {
+        private final MappedByteBuffer chunk;
+        private final long base;
+        private int pos;
+        String pin;
+
+        Cursor(long offset) {
+            this.chunk = chunks[(int) (offset / SnapshotFormat.CHUNK)];
+            this.base = offset - offset % SnapshotFormat.CHUNK;
+            this.pos = (int) (offset % SnapshotFormat.CHUNK);
+        }
+
+        long position() { return base + pos; }
+
+        int next() {
+            return chunk.get(pos++) & 0xFF;
+        }
+
+        long varLong() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                int b = next();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+                shift += 7;
+            }
+        }
+
+        String string() {
+            int length = (int) varLong();
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = chunk.get(pos + i);
+            }
+            pos += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Compares the record's account number with the key without decoding it
+        boolean matches(byte[] key) {
+            int length = (int) varLong();
+            if (length != key.length) return false;
+            for (int i = 0; i < length; i++) {
+                if (chunk.get(pos + i) != key[i]) return false;
+            }
+            return true;
+        }
+
+        void skipHistory() {
+            long historyCount = varLong();
+            for (long i = 0; i < historyCount; i++) {
+                if (varLong() == 0) pos += (int) varLong();
+                varLong();
+                varLong();
+                varLong();
+            }
+        }
+    }
+
+    // Maps [offset, offset + length) as CHUNK-sized buffers, aligned to CHUNK from the file start
+    static MappedByteBuffer[] mapRange(FileChannel channel, FileChannel.MapMode mode, long offset, long length)
+            throws IOException {
+        long end = offset + length;
+        int first = (int) (offset / SnapshotFormat.CHUNK);
+        int last = (int) ((end - 1) / SnapshotFormat.CHUNK);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[last + 1];
+        for (int i = first; i <= last; i++) {
+            long start = i * SnapshotFormat.CHUNK;
+            mapped[i] = channel.map(mode, start, Math.min(SnapshotFormat.CHUNK, end - start));
+        }
+        return mapped;
+    }
+
+    static long getLong(MappedByteBuffer[] chunks, long offset) {
+        return chunks[(int) (offset / SnapshotFormat.CHUNK)].getLong((int) (offset % SnapshotFormat.CHUNK));
+    }
+
+    static void putLong(MappedByteBuffer[] chunks, long offset, long value) {
+        chunks[(int) (offset / SnapshotFormat.CHUNK)].putLong((int) (offset % SnapshotFormat.CHUNK), value);
+    }
+}
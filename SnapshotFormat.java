@@ -0,0 +1,44 @@
+// Binary image of every account, its PIN and its most recent history, written by
+// SnapshotWriter and opened by SnapshotAccountRepository.
+//
+//   header      64 bytes, see below
+//   records     one per account, never crossing a CHUNK boundary (zero padding)
+//   dictionary  varint count, then varint length + UTF-8 for each transaction type
+//   index       open-addressing hash table of longs: record offset, or 0 for empty
+//
+// A record is
+//   account, holder, pin   varint length + UTF-8 each
+//   balance                zigzag varint paise
+//   openingBalance         zigzag varint paise, the balance before the first kept entry
+//   blocked                byte
+//   failedAttempts         varint
+//   currency               byte, BankCurrency ordinal
+//   historyCount           varint
+//   history                per entry: typeRef (1 + dictionary index, or 0 followed
+//                          by the type inline), then zigzag varint deltas of time and
+//                          balanceAfter and the amount, as in TransactionCodec
+// PINs are stored as PinHash values, as in the JDBC backend.
+final class SnapshotFormat {
+    static final int MAGIC = 0x534E5031; // "SNP1"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 64;
+    // Mapping unit; a record or dictionary never spans two chunks
+    static final long CHUNK = 1L << 30;
+    // Types beyond this many distinct values are written inline
+    static final int MAX_DICTIONARY = 4096;
+
+    // Header field offsets
+    static final int ACCOUNT_COUNT = 8;
+    static final int DATA_END = 16;
+    static final int DICTIONARY_OFFSET = 24;
+    static final int INDEX_OFFSET = 32;
+    static final int INDEX_SLOTS = 40;
+    static final int CREATED_AT = 48;
+
+    private SnapshotFormat() { }
+
+    // Spreads String.hashCode over 64 bits; the index uses the top bits
+    static long hash(int accountHashCode) {
+        return (accountHashCode + 0x632BE59BD9B4E019L) * 0x9E3779B97F4A7C15L;
+    }
+}
@@ -0,0 +1,216 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Streams accounts into a new snapshot image. Only the offsets of the records written
+// so far are kept on the heap; the index is filled in place through a mapping of the file.
+// The image is built in a sibling temporary file, forced to disk and then moved over the
+// target in one atomic rename, so a crash never leaves a half-written image in its place.
+class SnapshotWriter implements Closeable {
+    private final Path file;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final int recentHistory;
+    private final ByteBuffer out = ByteBuffer.allocate(1 << 20);
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> dictionaryOrder = new ArrayList<>();
+    private byte[] record = new byte[256];
+    private long[] offsets = new long[1024];
+    private int[] hashes = new int[1024];
+    private long count;
+    private long position = SnapshotFormat.HEADER_SIZE;
+    private boolean finished;
+
+    public SnapshotWriter(Path file, int recentHistory) throws IOException {
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.recentHistory = recentHistory;
+        channel.position(SnapshotFormat.HEADER_SIZE);
+    }
+
+    // Writes every account of the repository, keeping the last recentHistory transactions of each
+    public static long write(AccountRepository repository, Path file, int recentHistory) throws IOException {
+        try (SnapshotWriter writer = new SnapshotWriter(file, recentHistory)) {
+            UncheckedIOException[] failure = new UncheckedIOException[1];
+            repository.forEachAccount(account -> {
+                if (failure[0] != null) return;
+                try {
+                    writer.add(account, repository.findPin(account.getAccountNumber()),
+                            repository.findTransactions(account.getAccountNumber()));
+                } catch (IOException e) {
+                    failure[0] = new UncheckedIOException(e);
+                }
+            });
+            if (failure[0] != null) throw failure[0].getCause();
+            writer.finish();
+            return writer.count;
+        }
+    }
+
+    // history is oldest first; only its tail is kept. A plain PIN is hashed before it is
+    // written, which is slow; repositories that already hold PinHash values avoid that.
+    public void add(AccountRecord account, String pin, List<Transaction> history) throws IOException {
+        int from = Math.max(0, history.size() - recentHistory);
+        int pos = 0;
+        pos = putString(pos, account.getAccountNumber());
+        pos = putString(pos, account.getHolderName());
+        pos = putString(pos, pin == null ? "" : PinHash.isHashed(pin) ? pin : PinHash.hash(pin));
+        pos = putVarLong(pos, TransactionCodec.zigzag(Money.toPaise(account.getBalance())));
+        double opening = from > 0 ? history.get(from - 1).getBalanceAfter() : account.getOpeningBalance();
+        pos = putVarLong(pos, TransactionCodec.zigzag(Money.toPaise(opening)));
+        ensureRecord(pos + 32);
+        record[pos++] = (byte) (account.isBlocked() ? 1 : 0);
+        pos = putVarLong(pos, account.getFailedAttempts());
+        record[pos++] = (byte) account.getCurrency().ordinal();
+        pos = putVarLong(pos, history.size() - from);
+        long lastTimestamp = 0;
+        long lastBalance = 0;
+        for (int i = from; i < history.size(); i++) {
+            Transaction t = history.get(i);
+            Integer index = dictionary.get(t.getType());
+            if (index == null && dictionary.size() < SnapshotFormat.MAX_DICTIONARY) {
+                index = dictionary.size();
+                dictionary.put(t.getType(), index);
+                dictionaryOrder.add(t.getType());
+            }
+            if (index != null) {
+                pos = putVarLong(pos, index + 1L);
+            } else {
+                pos = putVarLong(pos, 0);
+                pos = putString(pos, t.getType());
+            }
+            long timestamp = t.getTimestamp().getTime();
+            long balance = Money.toPaise(t.getBalanceAfter());
+            pos = putVarLong(pos, TransactionCodec.zigzag(timestamp - lastTimestamp));
+            pos = putVarLong(pos, TransactionCodec.zigzag(Money.toPaise(t.getAmount())));
+            pos = putVarLong(pos, TransactionCodec.zigzag(balance - lastBalance));
+            lastTimestamp = timestamp;
+            lastBalance = balance;
+        }
+
+        long offset = place(pos);
+        append(record, pos);
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+        }
+        offsets[(int) count] = offset;
+        hashes[(int) count] = account.getAccountNumber().hashCode();
+        count++;
+    }
+
+    public void finish() throws IOException {
+        long dataEnd = position;
+
+        int pos = putVarLong(0, dictionaryOrder.size());
+        for (String type : dictionaryOrder) {
+            pos = putString(pos, type);
+        }
+        long dictionaryOffset = place(pos);
+        append(record, pos);
+
+        // Index starts on a fresh 8-byte boundary; slots then never straddle a chunk
+        long indexOffset = (position + 7) & ~7L;
+        append(new byte[(int) (indexOffset - position)], (int) (indexOffset - position));
+        flushBuffer();
+        long slots = Long.highestOneBit(Math.max(16, count * 2 - 1)) << 1;
+        channel.write(ByteBuffer.allocate(1), indexOffset + slots * 8 - 1);
+
+        int bits = Long.numberOfTrailingZeros(slots);
+        MappedByteBuffer[] index = SnapshotAccountRepository.mapRange(channel, FileChannel.MapMode.READ_WRITE,
+                indexOffset, slots * 8);
+        for (int i = 0; i < count; i++) {
+            long slot = SnapshotFormat.hash(hashes[i]) >>> (64 - bits);
+            while (SnapshotAccountRepository.getLong(index, indexOffset + slot * 8) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            SnapshotAccountRepository.putLong(index, indexOffset + slot * 8, offsets[i]);
+        }
+        for (MappedByteBuffer chunk : index) {
+            chunk.force();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.HEADER_SIZE);
+        header.putInt(0, SnapshotFormat.MAGIC);
+        header.putInt(4, SnapshotFormat.VERSION);
+        header.putLong(SnapshotFormat.ACCOUNT_COUNT, count);
+        header.putLong(SnapshotFormat.DATA_END, dataEnd);
+        header.putLong(SnapshotFormat.DICTIONARY_OFFSET, dictionaryOffset);
+        header.putLong(SnapshotFormat.INDEX_OFFSET, indexOffset);
+        header.putLong(SnapshotFormat.INDEX_SLOTS, slots);
+        header.putLong(SnapshotFormat.CREATED_AT, System.currentTimeMillis());
+        channel.write(header, 0);
+        channel.force(true);
+        channel.close();
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+    }
+
+    public long getAccountCount() { return count; }
+
+    // Pads to the next chunk when the record would cross a boundary; returns its offset
+    private long place(int length) throws IOException {
+        if (length > SnapshotFormat.CHUNK) throw new IOException("Record larger than a snapshot chunk");
+        long room = SnapshotFormat.CHUNK - position % SnapshotFormat.CHUNK;
+        if (length > room) {
+            append(new byte[(int) room], (int) room);
+        }
+        return position;
+    }
+
+    private void append(byte[] bytes, int length) throws IOException {
+        int done = 0;
+        while (done < length) {
+            if (!out.hasRemaining()) flushBuffer();
+            int n = Math.min(out.remaining(), length - done);
+            out.put(bytes, done, n);
+            done += n;
+        }
+        position += length;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private int putString(int pos, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        pos = putVarLong(pos, bytes.length);
+        ensureRecord(pos + bytes.length);
+        System.arraycopy(bytes, 0, record, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private int putVarLong(int pos, long value) {
+        ensureRecord(pos + 10);
+        return TransactionCodec.putVarLong(record, pos, value);
+    }
+
+    private void ensureRecord(int size) {
+        if (record.length < size) {
+            record = Arrays.copyOf(record, Math.max(size, record.length * 2));
+        }
+    }
+
+    // Without finish() the image is abandoned and the target is left as it was
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Standby copy of the ledger, fed by a ReplicationSender on the primary.
+// Each connection starts with a snapshot of every account (number, currency, balance).
+// From then on the standby keeps the latest balance and checks the balanceAfter chain
+// as records arrive: each record's balanceAfter must equal the previous balance plus the
+// record's signed amount. A record for an account that was never seeded, a gap or a
+// frame that does not decode marks the standby broken. promote() hands out balances only
+// when every chain verified, so a broken standby is never promoted silently.
+// The stream is not authenticated, so the standby listens on the loopback interface
+// unless given another address; reach it from other hosts through a tunnel.
+//
+// Run standalone with: java StandbyLedger <port>
+// Type "status" to print lag, counts and stream errors, or "promote" to verify and print balances.
+class StandbyLedger implements Closeable {
+    private static final class AccountState {
+        final BankCurrency currency;
+        long balancePaise;
+        long records;
+        boolean chainBroken;
+
+        AccountState(BankCurrency currency, long balancePaise) {
+            this.currency = currency;
+            this.balancePaise = balancePaise;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    // Guards account state; held for a whole frame, and by promote() so no frame lands after it
+    private final Object applyLock = new Object();
+    private final ConcurrentHashMap<String, AccountState> accounts = new ConcurrentHashMap<>();
+    private final AtomicLong appliedRecords = new AtomicLong();
+    private final AtomicLong brokenChains = new AtomicLong();
+    private volatile long appliedSeq;
+    private volatile long lastCommitLagMillis;
+    private volatile boolean promoted;
+    // Why the stream as a whole can no longer be trusted, or null
+    private volatile String streamBroken;
+    private volatile Socket connection;
+    private final AtomicLong streamErrors = new AtomicLong();
+    private volatile String lastStreamError;
+    private final Thread acceptThread;
+
+    public StandbyLedger(int port) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public StandbyLedger(InetAddress bindAddress, int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, bindAddress);
+        this.acceptThread = new Thread(this::acceptLoop, "standby-ledger");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() { return serverSocket.getLocalPort(); }
+
+    // Serves one connection at a time on this thread; each new primary connection re-seeds
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try (Socket socket = serverSocket.accept()) {
+                connection = socket;
+                if (promoted) return;
+                socket.setTcpNoDelay(true);
+                appliedSeq = 0;
+                receive(new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024)),
+                        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+            } catch (EOFException e) {
+                // Primary closed the stream; wait for the next connection
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    streamErrors.incrementAndGet();
+                    lastStreamError = e.getMessage();
+                }
+            } catch (RuntimeException e) {
+                // Not expected past apply(), but the thread must not die while still looking healthy
+                markStreamBroken("replication reader failed: " + e);
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    private void receive(DataInputStream in, DataOutputStream ackOut) throws IOException {
+        byte[] payload = new byte[64 * 1024];
+        while (true) {
+            int magic = in.readInt();
+            if (magic != ReplicationProtocol.FRAME_MAGIC && magic != ReplicationProtocol.SNAPSHOT_MAGIC) {
+                throw markStreamBroken("corrupt replication frame");
+            }
+            long firstSeq = in.readLong();
+            int count = in.readInt();
+            int length = in.readInt();
+            if (firstSeq != appliedSeq + 1) {
+                throw markStreamBroken("replication gap: expected " + (appliedSeq + 1) + " but got " + firstSeq);
+            }
+            if (count < 0 || length < 0) {
+                throw markStreamBroken("corrupt replication frame header");
+            }
+            if (length > ReplicationProtocol.MAX_PAYLOAD) {
+                throw markStreamBroken("replication frame of " + length + " bytes exceeds "
+                        + ReplicationProtocol.MAX_PAYLOAD);
+            }
+            if (payload.length < length) {
+                payload = new byte[length];
+            }
+            in.readFully(payload, 0, length);
+            ByteArrayInputStream frame = new ByteArrayInputStream(payload, 0, length);
+            try {
+                synchronized (applyLock) {
+                    if (promoted) throw new IOException("Standby has been promoted");
+                    if (magic == ReplicationProtocol.SNAPSHOT_MAGIC) {
+                        applySnapshot(frame, count);
+                    } else {
+                        apply(frame, count);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (promoted) throw new IOException("Standby has been promoted");
+                // The payload was read in full, so any decode failure means a bad frame
+                throw markStreamBroken("undecodable replication frame at seq " + firstSeq + ": " + e);
+            }
+
+            appliedSeq = firstSeq + count - 1;
+            ackOut.writeLong(appliedSeq);
+            ackOut.flush();
+        }
+    }
+
+    private IOException markStreamBroken(String reason) {
+        if (streamBroken == null) {
+            streamBroken = reason;
+        }
+        return new IOException(reason);
+    }
+
+    // Caller holds applyLock
+    private void applySnapshot(ByteArrayInputStream frame, int count) throws IOException {
+        DataInputStream data = new DataInputStream(frame);
+        for (int i = 0; i < count; i++) {
+            String accountNumber = data.readUTF();
+            String code = data.readUTF();
+            BankCurrency currency = BankCurrency.fromCode(code);
+            if (currency == null) throw new IOException("Unknown currency " + code);
+            accounts.put(accountNumber, new AccountState(currency, data.readLong()));
+        }
+    }
+
+    // Caller holds applyLock
+    private void apply(ByteArrayInputStream frame, int count) throws IOException {
+        DataInputStream data = new DataInputStream(frame);
+        TransactionDecoder decoder = new TransactionDecoder(frame);
+        List<String> frameAccounts = new ArrayList<>();
+        long newestCommit = 0;
+        for (int i = 0; i < count; i++) {
+            long index = TransactionCodec.readVarLong(frame, false);
+            String accountNumber;
+            if (index == 0) {
+                accountNumber = data.readUTF();
+                frameAccounts.add(accountNumber);
+            } else {
+                accountNumber = frameAccounts.get((int) index - 1);
+            }
+            Transaction t = decoder.read();
+            if (t == null) throw new EOFException("Frame ended after " + i + " of " + count + " records");
+            applyRecord(accountNumber, t);
+            newestCommit = Math.max(newestCommit, t.getTimestamp().getTime());
+        }
+        appliedRecords.addAndGet(count);
+        lastCommitLagMillis = System.currentTimeMillis() - newestCommit;
+    }
+
+    // Caller holds applyLock
+    private void applyRecord(String accountNumber, Transaction t) {
+        AccountState state = accounts.get(accountNumber);
+        if (state == null) {
+            // No snapshot to check the first record against; keep it, but never promote it
+            state = new AccountState(t.getCurrency(), 0);
+            state.chainBroken = true;
+            brokenChains.incrementAndGet();
+            accounts.put(accountNumber, state);
+        }
+        long after = Money.toPaise(t.getBalanceAfter());
+        long expected = state.balancePaise + Money.toPaise(t.getSignedAmount());
+        if (after != expected && !state.chainBroken) {
+            state.chainBroken = true;
+            brokenChains.incrementAndGet();
+        }
+        state.balancePaise = after;
+        state.records++;
+    }
+
+    public long getAppliedSeq() { return appliedSeq; }
+    public long getAppliedRecords() { return appliedRecords.get(); }
+    public int getAccountCount() { return accounts.size(); }
+
+    // Wall-clock time from the newest commit in the last frame to when it was applied
+    public long getCommitLagMillis() { return lastCommitLagMillis; }
+
+    public Double getBalance(String accountNumber) {
+        synchronized (applyLock) {
+            AccountState state = accounts.get(accountNumber);
+            return state == null ? null : Money.fromPaise(state.balancePaise);
+        }
+    }
+
+    public BankCurrency getCurrency(String accountNumber) {
+        AccountState state = accounts.get(accountNumber);
+        return state == null ? null : state.currency;
+    }
+
+    // Null while the stream is healthy
+    public String getStreamFailure() { return streamBroken; }
+
+    // Connections that ended with an I/O error, and the message of the latest one
+    public long getStreamErrorCount() { return streamErrors.get(); }
+    public String getLastStreamError() { return lastStreamError; }
+
+    // Stops replication and returns the verified balance of every account.
+    // The check and the copy happen under applyLock, and no frame is applied after it.
+    public Map<String, Double> promote() throws IOException {
+        Map<String, Double> balances = new TreeMap<>();
+        synchronized (applyLock) {
+            if (streamBroken != null) {
+                throw new IllegalStateException("Cannot promote: " + streamBroken);
+            }
+            if (brokenChains.get() > 0) {
+                List<String> broken = new ArrayList<>();
+                for (Map.Entry<String, AccountState> e : accounts.entrySet()) {
+                    if (e.getValue().chainBroken) broken.add(e.getKey());
+                }
+                throw new IllegalStateException("Cannot promote: balance chain broken for " + broken);
+            }
+            promoted = true;
+            for (Map.Entry<String, AccountState> e : accounts.entrySet()) {
+                balances.put(e.getKey(), Money.fromPaise(e.getValue().balancePaise));
+            }
+        }
+        close();
+        return balances;
+    }
+
+    public boolean isPromoted() { return promoted; }
+
+    // Closes the listening socket and the live connection, then waits for the reader to exit
+    @Override
+    public void close() throws IOException {
+        try {
+            serverSocket.close();
+            Socket active = connection;
+            if (active != null) {
+                active.close();
+            }
+        } finally {
+            try {
+                acceptThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9099;
+        StandbyLedger ledger = new StandbyLedger(port);
+        System.out.println("Standby ledger listening on port " + ledger.getPort());
+
+        BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = console.readLine()) != null) {
+            line = line.trim();
+            if (line.equals("status")) {
+                System.out.printf("applied seq %d, %d records, %d accounts, commit lag %d ms, %d stream errors%n",
+                        ledger.getAppliedSeq(), ledger.getAppliedRecords(), ledger.getAccountCount(),
+                        ledger.getCommitLagMillis(), ledger.getStreamErrorCount());
+                if (ledger.getLastStreamError() != null) {
+                    System.out.println("last stream error: " + ledger.getLastStreamError());
+                }
+            } else if (line.equals("promote")) {
+                try {
+                    for (Map.Entry<String, Double> e : ledger.promote().entrySet()) {
+                        System.out.println(e.getKey() + " "
+                                + BankFormat.formatMoney(e.getValue(), ledger.getCurrency(e.getKey())));
+                    }
+                    System.out.println("Standby promoted");
+                    return;
+                } catch (IllegalStateException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+// A future-dated or recurring transfer. Recurring orders reuse their wheel node,
+// so each standing order costs one StandingOrder plus one TimingWheel.Timeout.
+class StandingOrder {
+    private final ATM source;
+    private final String targetAccount;
+    private final double amount;
+    private final long intervalMillis;
+    private int remaining;
+    private long nextDueMillis;
+    private TimingWheel.Timeout<StandingOrder> timeout;
+    private volatile TransactionResult lastResult;
+    private volatile RuntimeException lastError;
+    private volatile boolean cancelled;
+    private volatile boolean finished;
+
+    StandingOrder(ATM source, String targetAccount, double amount, long firstDueMillis,
+                  long intervalMillis, int occurrences) {
+        this.source = source;
+        this.targetAccount = targetAccount;
+        this.amount = amount;
+        this.nextDueMillis = firstDueMillis;
+        this.intervalMillis = intervalMillis;
+        this.remaining = occurrences;
+    }
+
+    public ATM getSource() { return source; }
+    public String getTargetAccount() { return targetAccount; }
+    public double getAmount() { return amount; }
+    public long getIntervalMillis() { return intervalMillis; }
+    public long getNextDueMillis() { return nextDueMillis; }
+    public boolean isRecurring() { return intervalMillis > 0; }
+    public TransactionResult getLastResult() { return lastResult; }
+
+    // Exception thrown by the most recent run, or null if it returned a result
+    public RuntimeException getLastError() { return lastError; }
+
+    // Remaining runs; 0 means the order repeats until cancelled
+    public int getRemaining() { return remaining; }
+
+    public boolean isPending() { return timeout != null && timeout.isPending(); }
+    public boolean isCancelled() { return cancelled; }
+
+    // True once the last occurrence has been taken off the wheel to run
+    public boolean isFinished() { return finished; }
+
+    TimingWheel.Timeout<StandingOrder> getTimeout() { return timeout; }
+    void setTimeout(TimingWheel.Timeout<StandingOrder> timeout) { this.timeout = timeout; }
+    void setLastResult(TransactionResult result) {
+        this.lastResult = result;
+        this.lastError = null;
+    }
+
+    void setLastError(RuntimeException error) {
+        this.lastResult = null;
+        this.lastError = error;
+    }
+
+    void markCancelled() { this.cancelled = true; }
+    void markFinished() { this.finished = true; }
+
+    // Whether another occurrence follows the one that is about to run
+    boolean hasNext() {
+        return isRecurring() && remaining != 1;
+    }
+
+    // Advances to the next occurrence; returns false when the order is finished
+    boolean advance() {
+        if (!isRecurring()) return false;
+        if (remaining > 0 && --remaining == 0) return false;
+        nextDueMillis += intervalMillis;
+        return true;
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.function.Consumer;
+
+// Hierarchical timing wheel with four levels of 256 slots each.
+// Level 0 holds timeouts due within 256 ticks, level 1 within 256^2 ticks, and so on.
+// When level 0 wraps around, the matching slot of the next level is cascaded down.
+// schedule, reschedule and cancel are O(1): every timeout is a node in a doubly
+// linked slot list. This class is not thread-safe; owners serialize access.
+final class TimingWheel<T> {
+    private static final int LEVEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << LEVEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELTA = (1L << (LEVEL_BITS * LEVELS)) - 1;
+
+    // One scheduled entry; reusable for recurring work so no node is allocated per occurrence
+    static final class Timeout<T> {
+        private final T task;
+        private long deadlineTick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+        private Bucket<T> bucket;
+
+        Timeout(T task) { this.task = task; }
+
+        public T getTask() { return task; }
+        public boolean isPending() { return bucket != null; }
+    }
+
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        void add(Timeout<T> t) {
+            t.bucket = this;
+            t.prev = tail;
+            t.next = null;
+            if (tail == null) head = t; else tail.next = t;
+            tail = t;
+        }
+
+        void remove(Timeout<T> t) {
+            if (t.prev == null) head = t.next; else t.prev.next = t.next;
+            if (t.next == null) tail = t.prev; else t.next.prev = t.prev;
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+        }
+
+        // Detaches the whole list and returns its first node
+        Timeout<T> clear() {
+            Timeout<T> first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final Bucket<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.wheels = new Bucket[LEVELS][WHEEL_SIZE];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                wheels[level][slot] = new Bucket<>();
+            }
+        }
+    }
+
+    public Timeout<T> schedule(T task, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(task);
+        reschedule(timeout, deadlineMillis);
+        return timeout;
+    }
+
+    // Moves a timeout (pending or not) to a new deadline
+    public void reschedule(Timeout<T> timeout, long deadlineMillis) {
+        cancel(timeout);
+        long tick = (deadlineMillis - startMillis + tickMillis - 1) / tickMillis;
+        timeout.deadlineTick = Math.max(tick, currentTick + 1);
+        place(timeout);
+        size++;
+    }
+
+    public boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket == null) return false;
+        timeout.bucket.remove(timeout);
+        size--;
+        return true;
+    }
+
+    // Advances the wheel to the given time and hands every expired task to the consumer
+    public int advanceTo(long nowMillis, Consumer<T> expired) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        int fired = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            Timeout<T> t = wheels[0][(int) (currentTick & WHEEL_MASK)].clear();
+            while (t != null) {
+                Timeout<T> next = t.next;
+                t.prev = null;
+                t.next = null;
+                t.bucket = null;
+                size--;
+                fired++;
+                expired.accept(t.task);
+                t = next;
+            }
+        }
+        return fired;
+    }
+
+    public int size() { return size; }
+
+    public long getTickMillis() { return tickMillis; }
+
+    // Time of the wheel's current tick, in the caller's clock
+    public long currentTimeMillis() { return startMillis + currentTick * tickMillis; }
+
+    private void place(Timeout<T> timeout) {
+        long delta = Math.min(timeout.deadlineTick - currentTick, MAX_DELTA);
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (LEVEL_BITS * (level + 1)))) {
+            level++;
+        }
+        long slotTick = level == LEVELS - 1 ? currentTick + delta : timeout.deadlineTick;
+        int slot = (int) ((slotTick >>> (LEVEL_BITS * level)) & WHEEL_MASK);
+        wheels[level][slot].add(timeout);
+    }
+
+    // When a lower level wraps, pull the next slot of the level above down into it
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if (((currentTick >>> (LEVEL_BITS * (level - 1))) & WHEEL_MASK) != 0) {
+                return;
+            }
+            int slot = (int) ((currentTick >>> (LEVEL_BITS * level)) & WHEEL_MASK);
+            cascadeFrom(level, slot);
+        }
+    }
+
+    private void cascadeFrom(int level, int slot) {
+        Timeout<T> t = wheels[level][slot].clear();
+        while (t != null) {
+            Timeout<T> next = t.next;
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+            place(t);
+            t = next;
+        }
+    }
+}
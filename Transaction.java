@@ -0,0 +1,66 @@
+import java.util.*;
+
+// Transaction class to store transaction history
+class Transaction {
+    private final String type;
+    private final double amount;
+    private final Date timestamp;
+    private final double balanceAfter;
+    private final BankCurrency currency;
+
+    public Transaction(String type, double amount, double balanceAfter) {
+        this(type, amount, balanceAfter, new Date());
+    }
+
+    // Used when rebuilding history from an export or archive
+    public Transaction(String type, double amount, double balanceAfter, Date timestamp) {
+        this(type, amount, balanceAfter, timestamp, BankCurrency.INR);
+    }
+
+    // Amounts are in the account's currency
+    public Transaction(String type, double amount, double balanceAfter, Date timestamp, BankCurrency currency) {
+        this.type = type;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.timestamp = timestamp;
+        this.currency = currency;
+    }
+
+    // Getters
+    public String getType() { return type; }
+    public double getAmount() { return amount; }
+    public Date getTimestamp() { return timestamp; }
+    public double getBalanceAfter() { return balanceAfter; }
+    public BankCurrency getCurrency() { return currency; }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(64)).toString();
+    }
+
+    // Appends the same text as toString() into a caller supplied buffer
+    public StringBuilder appendTo(StringBuilder sb) {
+        BankFormat.appendLogTimestamp(sb, timestamp).append(" | ").append(type).append(" | ");
+        BankFormat.appendMoney(sb, amount, currency).append(" | Balance: ");
+        return BankFormat.appendMoney(sb, balanceAfter, currency);
+    }
+
+    public String getFormattedAmount() {
+        return BankFormat.formatMoney(amount, currency);
+    }
+
+    public String getFormattedBalance() {
+        return BankFormat.formatMoney(balanceAfter, currency);
+    }
+
+    public String getFormattedTimestamp() {
+        return BankFormat.formatDisplayTimestamp(timestamp);
+    }
+
+    // Effect of this transaction on the balance: positive for money in, negative for money out
+    public double getSignedAmount() {
+        if (type.equals("DEPOSIT") || type.startsWith("TRANSFER FROM ")) return amount;
+        if (type.equals("WITHDRAWAL") || type.startsWith("TRANSFER TO ")) return -amount;
+        return 0;
+    }
+}
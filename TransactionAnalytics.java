@@ -0,0 +1,329 @@
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Aggregate queries over HistoryColumns, e.g. withdrawals per hour, average transfer
+// size or the accounts with the largest outflow.
+//
+// Each query scans the columns once in plain primitive loops. The accounts are split
+// into about 4 * parallelism segments of similar row counts, scanned on a ForkJoinPool.
+// Per-account groups are written straight into the result, since a segment owns its
+// accounts; other groupings keep one small set of arrays per segment, merged at the end.
+//
+// Percentiles are exact (nearest rank). Per account they are computed inside the scan
+// from the account's rows. For the other groupings a second pass copies the matching
+// amounts into one array laid out group by group, and each percentile is found in its
+// group's range by quickselect, which is linear where a sort is not.
+class TransactionAnalytics implements Closeable {
+    // Upper bound on groups for non-account groupings, to catch tiny buckets over long ranges
+    private static final int MAX_GROUPS = 1 << 22;
+
+    private final HistoryColumns columns;
+    private final ForkJoinPool pool;
+    private final int[] segmentStart;
+
+    public TransactionAnalytics(HistoryColumns columns, int parallelism) {
+        this.columns = columns;
+        this.pool = new ForkJoinPool(parallelism);
+        this.segmentStart = split(columns, parallelism == 1 ? 1 : parallelism * 4);
+    }
+
+    public TransactionAnalytics(HistoryColumns columns) {
+        this(columns, Runtime.getRuntime().availableProcessors());
+    }
+
+    public GroupTotals aggregate(AnalyticsFilter filter, AnalyticsGrouping grouping, double... percentiles) {
+        long start = System.nanoTime();
+        long origin = 0;
+        int groups;
+        switch (grouping.mode) {
+            case AnalyticsGrouping.ACCOUNT:
+                groups = columns.accounts.length;
+                break;
+            case AnalyticsGrouping.KIND:
+                groups = TransactionKind.VALUES.length;
+                break;
+            case AnalyticsGrouping.TIME_BUCKET: {
+                long first = Math.max(filter.fromMillis, columns.minTimestamp);
+                long last = Math.min(filter.toMillis - 1, columns.maxTimestamp);
+                origin = Math.floorDiv(first, grouping.bucketMillis) * grouping.bucketMillis;
+                long buckets = last < first ? 0 : (last - origin) / grouping.bucketMillis + 1;
+                if (buckets > MAX_GROUPS) {
+                    throw new IllegalArgumentException("Query spans " + buckets + " buckets; use a wider bucket or a narrower range");
+                }
+                groups = (int) buckets;
+                break;
+            }
+            default:
+                groups = 1;
+        }
+
+        int segments = segmentStart.length - 1;
+        long bucketOrigin = origin;
+        Scan shared = grouping.mode == AnalyticsGrouping.ACCOUNT
+                ? new Scan(filter, grouping, origin, groups, percentiles) : null;
+        Scan[] scans = new Scan[segments];
+        forEachIndex(segments, s -> {
+            Scan scan = shared != null ? shared : new Scan(filter, grouping, bucketOrigin, groups, percentiles);
+            scan.run(segmentStart[s], segmentStart[s + 1]);
+            scans[s] = scan;
+        });
+
+        Scan total = shared;
+        if (total == null) {
+            total = new Scan(filter, grouping, origin, groups, new double[0]);
+            for (Scan scan : scans) {
+                total.merge(scan);
+            }
+            if (percentiles.length > 0) {
+                total.percentileValues = groupPercentiles(scans, total, percentiles);
+            }
+        }
+        return new GroupTotals(columns, grouping, origin, total.count, total.sum, total.min, total.max,
+                percentiles, total.percentileValues, System.nanoTime() - start);
+    }
+
+    // Second pass for non-account groupings: copy matching amounts group by group, then
+    // quickselect each percentile in ascending order
+    private long[] groupPercentiles(Scan[] scans, Scan total, double[] percentiles) {
+        int groups = total.count.length;
+        long[] groupStart = new long[groups + 1];
+        for (int g = 0; g < groups; g++) {
+            groupStart[g + 1] = groupStart[g] + total.count[g];
+        }
+        if (groupStart[groups] > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many matching rows for exact percentiles");
+        }
+        long[] values = new long[(int) groupStart[groups]];
+
+        // Segment s writes group g from the end of what earlier segments wrote
+        long[][] cursors = new long[scans.length][];
+        long[] next = Arrays.copyOf(groupStart, groups);
+        for (int s = 0; s < scans.length; s++) {
+            cursors[s] = next.clone();
+            for (int g = 0; g < groups; g++) {
+                next[g] += scans[s].count[g];
+            }
+        }
+        forEachIndex(scans.length, s -> scans[s].collect(segmentStart[s], segmentStart[s + 1], values, cursors[s]));
+
+        // Ascending order of the requested percentiles, so each selection narrows the next
+        Integer[] order = new Integer[percentiles.length];
+        for (int p = 0; p < order.length; p++) {
+            order[p] = p;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(percentiles[x], percentiles[y]));
+
+        long[] result = new long[groups * percentiles.length];
+        forEachIndex(groups, g -> {
+            int base = (int) groupStart[g];
+            int to = (int) groupStart[g + 1];
+            int from = base;
+            for (int p : order) {
+                if (base == to) break;
+                int k = base + rank(percentiles[p], to - base);
+                select(values, from, to, k);
+                result[g * percentiles.length + p] = values[k];
+                from = k;
+            }
+        });
+        return result;
+    }
+
+    // Zero-based nearest-rank index of the percentile among n values
+    private static int rank(double percentile, int n) {
+        return Math.min(n - 1, Math.max(0, (int) Math.ceil(percentile / 100.0 * n) - 1));
+    }
+
+    // Nearest-rank percentiles of the sorted range [from, to)
+    private static void pick(long[] sorted, int from, int to, double[] percentiles, long[] out, int at) {
+        if (from == to) return;
+        for (int p = 0; p < percentiles.length; p++) {
+            out[at + p] = sorted[from + rank(percentiles[p], to - from)];
+        }
+    }
+
+    // Quickselect: afterwards a[k] holds the value a sort of [from, to) would put there,
+    // with nothing larger before it and nothing smaller after it
+    private static void select(long[] a, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        while (hi - lo > 32) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < a[lo]) swap(a, mid, lo);
+            if (a[hi] < a[lo]) swap(a, hi, lo);
+            if (a[hi] < a[mid]) swap(a, hi, mid);
+            long pivot = a[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) i++;
+                while (a[j] > pivot) j--;
+                if (i <= j) swap(a, i++, j--);
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+        Arrays.sort(a, lo, hi + 1);
+    }
+
+    private static void swap(long[] a, int i, int j) {
+        long t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+
+    // Runs body for 0..n-1 on the pool
+    private void forEachIndex(int n, IntConsumer body) {
+        if (n == 0) return;
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                range(0, n);
+            }
+
+            private void range(int lo, int hi) {
+                if (hi - lo == 1) {
+                    body.accept(lo);
+                    return;
+                }
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        range(lo, mid);
+                    }
+                }, new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        range(mid, hi);
+                    }
+                });
+            }
+        });
+    }
+
+    // Account boundaries of segments with roughly equal row counts
+    private static int[] split(HistoryColumns columns, int segments) {
+        int accounts = columns.accounts.length;
+        segments = Math.max(1, Math.min(segments, accounts));
+        int[] bounds = new int[segments + 1];
+        for (int s = 1; s < segments; s++) {
+            long targetRow = (long) columns.rows * s / segments;
+            int a = Arrays.binarySearch(columns.accountStart, 0, accounts, (int) targetRow);
+            if (a < 0) a = -a - 1;
+            bounds[s] = Math.max(bounds[s - 1], Math.min(a, accounts));
+        }
+        bounds[segments] = accounts;
+        return bounds;
+    }
+
+    // Aggregates of one segment, or of the whole result for per-account grouping
+    private final class Scan {
+        final long from;
+        final long to;
+        final long tagMask;
+        final int mode;
+        final long origin;
+        final long bucketMillis;
+        final double[] percentiles;
+        final long[] count;
+        final long[] sum;
+        final long[] min;
+        final long[] max;
+        long[] percentileValues;
+
+        Scan(AnalyticsFilter filter, AnalyticsGrouping grouping, long origin, int groups, double[] percentiles) {
+            this.from = filter.fromMillis;
+            this.to = filter.toMillis;
+            this.tagMask = filter.tagMask;
+            this.mode = grouping.mode;
+            this.origin = origin;
+            this.bucketMillis = grouping.bucketMillis;
+            this.percentiles = percentiles;
+            this.count = new long[groups];
+            this.sum = new long[groups];
+            this.min = new long[groups];
+            this.max = new long[groups];
+            Arrays.fill(min, Long.MAX_VALUE);
+            Arrays.fill(max, Long.MIN_VALUE);
+            this.percentileValues = new long[mode == AnalyticsGrouping.ACCOUNT ? groups * percentiles.length : 0];
+        }
+
+        void run(int firstAccount, int endAccount) {
+            int[] accountStart = columns.accountStart;
+            long[] timestamp = columns.timestamp;
+            long[] amount = columns.amount;
+            byte[] tag = columns.tag;
+            boolean perAccountPercentiles = mode == AnalyticsGrouping.ACCOUNT && percentiles.length > 0;
+            long[] scratch = perAccountPercentiles ? new long[64] : null;
+
+            for (int a = firstAccount; a < endAccount; a++) {
+                int matched = 0;
+                for (int i = accountStart[a], end = accountStart[a + 1]; i < end; i++) {
+                    long ts = timestamp[i];
+                    int t = tag[i];
+                    if (((tagMask >>> t) & 1L) == 0 || ts < from || ts >= to) continue;
+                    int g;
+                    switch (mode) {
+                        case AnalyticsGrouping.ACCOUNT: g = a; break;
+                        case AnalyticsGrouping.KIND: g = t & 7; break;
+                        case AnalyticsGrouping.TIME_BUCKET: g = (int) ((ts - origin) / bucketMillis); break;
+                        default: g = 0;
+                    }
+                    long v = amount[i];
+                    count[g]++;
+                    sum[g] += v;
+                    if (v < min[g]) min[g] = v;
+                    if (v > max[g]) max[g] = v;
+                    if (perAccountPercentiles) {
+                        if (matched == scratch.length) scratch = Arrays.copyOf(scratch, matched * 2);
+                        scratch[matched++] = v;
+                    }
+                }
+                if (perAccountPercentiles) {
+                    Arrays.sort(scratch, 0, matched);
+                    pick(scratch, 0, matched, percentiles, percentileValues, a * percentiles.length);
+                }
+            }
+        }
+
+        // Same filter as run; appends each matching amount at its group's cursor
+        void collect(int firstAccount, int endAccount, long[] values, long[] cursor) {
+            long[] timestamp = columns.timestamp;
+            long[] amount = columns.amount;
+            byte[] tag = columns.tag;
+            int firstRow = columns.accountStart[firstAccount];
+            int endRow = columns.accountStart[endAccount];
+            for (int i = firstRow; i < endRow; i++) {
+                long ts = timestamp[i];
+                int t = tag[i];
+                if (((tagMask >>> t) & 1L) == 0 || ts < from || ts >= to) continue;
+                int g = mode == AnalyticsGrouping.KIND ? t & 7
+                        : mode == AnalyticsGrouping.TIME_BUCKET ? (int) ((ts - origin) / bucketMillis) : 0;
+                values[(int) cursor[g]++] = amount[i];
+            }
+        }
+
+        void merge(Scan other) {
+            for (int g = 0; g < count.length; g++) {
+                count[g] += other.count[g];
+                sum[g] += other.sum[g];
+                if (other.min[g] < min[g]) min[g] = other.min[g];
+                if (other.max[g] > max[g]) max[g] = other.max[g];
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
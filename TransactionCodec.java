@@ -0,0 +1,81 @@
+import java.io.*;
+import java.util.*;
+
+// Compact binary record format for Transaction history.
+//
+// Stream layout: a 4 byte magic header followed by records. Each record is
+//   typeRef   varint  - (1 + dictionary index, or 0 when a new type string follows) << 1,
+//                       with the low bit set when the currency differs from the previous record
+//   [currency] byte   - BankCurrency ordinal (only when the low bit is set; a stream starts at INR)
+//   [type]    varint length + UTF-8 bytes (only when typeRef >> 1 == 0)
+//   time      zigzag varint - milliseconds since the previous record
+//   amount    zigzag varint - amount in paise
+//   balance   zigzag varint - change of balanceAfter since the previous record, in paise
+// Amounts are stored as fixed-point paise, so values with more than two decimals are rounded.
+// Only the first MAX_DICTIONARY distinct types enter the dictionary; later new types are
+// written inline every time, so "TRANSFER TO <account>" rows cannot grow it without bound.
+// Version 1 streams ("TXN1") have no currency bit or byte; every record decodes as INR.
+final class TransactionCodec {
+    static final int MAGIC = 0x54584E32; // "TXN2"
+    static final int MAGIC_V1 = 0x54584E31; // "TXN1", still readable
+    // Longest type string accepted, in UTF-8 bytes
+    static final int MAX_TYPE_LENGTH = 255;
+    static final int MAX_DICTIONARY = 1024;
+
+    private TransactionCodec() { }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Writes an unsigned varint into buf at pos and returns the new position
+    static int putVarLong(byte[] buf, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    // Reads an unsigned varint; returns -1 only when the stream ends before the first byte
+    static long readVarLong(InputStream in, boolean eofAllowed) throws IOException {
+        long result = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                if (eofAllowed && shift == 0) return -1;
+                throw new EOFException("Truncated transaction record");
+            }
+            if (shift > 63) {
+                throw new IOException("Malformed varint in transaction record");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+            shift += 7;
+        }
+    }
+
+    // Writes the whole history of an account to the stream
+    static void exportHistory(BankOperations account, OutputStream out) throws IOException {
+        TransactionEncoder encoder = new TransactionEncoder(out);
+        encoder.writeAll(account.getTransactionHistory());
+        encoder.flush();
+    }
+
+    // Reads every record from an exported history stream
+    static List<Transaction> importHistory(InputStream in) throws IOException {
+        TransactionDecoder decoder = new TransactionDecoder(in);
+        List<Transaction> history = new ArrayList<>();
+        Transaction t;
+        while ((t = decoder.read()) != null) {
+            history.add(t);
+        }
+        return history;
+    }
+}
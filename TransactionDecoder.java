@@ -0,0 +1,81 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Streaming decoder; mirrors the state kept by TransactionEncoder
+class TransactionDecoder implements Closeable {
+    private static final BankCurrency[] CURRENCIES = BankCurrency.values();
+
+    private final InputStream in;
+    private final boolean hasCurrency;
+    private final List<String> dictionary = new ArrayList<>();
+    private long lastTimestamp;
+    private long lastBalance;
+    private BankCurrency lastCurrency = BankCurrency.INR;
+
+    public TransactionDecoder(InputStream in) throws IOException {
+        this.in = (in instanceof BufferedInputStream || in instanceof ByteArrayInputStream)
+                ? in : new BufferedInputStream(in);
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = this.in.read();
+            if (b < 0) throw new EOFException("Missing transaction stream header");
+            magic = (magic << 8) | b;
+        }
+        if (magic != TransactionCodec.MAGIC && magic != TransactionCodec.MAGIC_V1) {
+            throw new IOException("Not a transaction stream");
+        }
+        this.hasCurrency = magic == TransactionCodec.MAGIC;
+    }
+
+    // Returns the next record, or null at the end of the stream
+    public Transaction read() throws IOException {
+        long typeRef = TransactionCodec.readVarLong(in, true);
+        if (typeRef < 0) return null;
+        if (hasCurrency) {
+            if ((typeRef & 1) != 0) {
+                int ordinal = in.read();
+                if (ordinal < 0) throw new EOFException("Truncated transaction currency");
+                if (ordinal >= CURRENCIES.length) throw new IOException("Unknown transaction currency " + ordinal);
+                lastCurrency = CURRENCIES[ordinal];
+            }
+            typeRef >>>= 1;
+        }
+
+        String type;
+        if (typeRef == 0) {
+            long length = TransactionCodec.readVarLong(in, false);
+            if (length < 0 || length > TransactionCodec.MAX_TYPE_LENGTH) {
+                throw new IOException("Bad transaction type length " + length);
+            }
+            byte[] typeBytes = new byte[(int) length];
+            int read = 0;
+            while (read < length) {
+                int n = in.read(typeBytes, read, typeBytes.length - read);
+                if (n < 0) throw new EOFException("Truncated transaction type");
+                read += n;
+            }
+            type = new String(typeBytes, StandardCharsets.UTF_8);
+            if (dictionary.size() < TransactionCodec.MAX_DICTIONARY) {
+                dictionary.add(type);
+            }
+        } else {
+            if (typeRef > dictionary.size()) {
+                throw new IOException("Unknown transaction type reference " + typeRef);
+            }
+            type = dictionary.get((int) typeRef - 1);
+        }
+
+        lastTimestamp += TransactionCodec.unzigzag(TransactionCodec.readVarLong(in, false));
+        long amount = TransactionCodec.unzigzag(TransactionCodec.readVarLong(in, false));
+        lastBalance += TransactionCodec.unzigzag(TransactionCodec.readVarLong(in, false));
+
+        return new Transaction(type, Money.fromPaise(amount),
+                Money.fromPaise(lastBalance), new Date(lastTimestamp), lastCurrency);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,88 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Streaming encoder; keeps the type dictionary and delta state of the stream.
+// Output is buffered, so call flush() or close() when done. In-memory and already
+// buffered streams are written directly; ReplicationSender relies on that when it
+// interleaves its own bytes with the encoder's in one ByteArrayOutputStream.
+class TransactionEncoder implements Flushable, Closeable {
+    // Five varints of at most 10 bytes each, plus the currency byte
+    private static final int MAX_FIXED_RECORD = 5 * 10 + 1;
+
+    private final OutputStream out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private byte[] buffer = new byte[64];
+    private long lastTimestamp;
+    private long lastBalance;
+    private BankCurrency lastCurrency = BankCurrency.INR;
+    private long recordCount;
+
+    public TransactionEncoder(OutputStream out) throws IOException {
+        this.out = (out instanceof BufferedOutputStream || out instanceof ByteArrayOutputStream)
+                ? out : new BufferedOutputStream(out);
+        int magic = TransactionCodec.MAGIC;
+        this.out.write(new byte[]{(byte) (magic >>> 24), (byte) (magic >>> 16), (byte) (magic >>> 8), (byte) magic});
+    }
+
+    public void write(Transaction t) throws IOException {
+        int pos = 0;
+        BankCurrency currency = t.getCurrency();
+        long currencyChanged = currency == lastCurrency ? 0 : 1;
+        Integer index = dictionary.get(t.getType());
+        if (index != null) {
+            pos = TransactionCodec.putVarLong(buffer, pos, (index + 1L) << 1 | currencyChanged);
+            if (currencyChanged != 0) buffer[pos++] = (byte) currency.ordinal();
+        } else {
+            byte[] typeBytes = t.getType().getBytes(StandardCharsets.UTF_8);
+            if (typeBytes.length > TransactionCodec.MAX_TYPE_LENGTH) {
+                throw new IOException("Transaction type longer than " + TransactionCodec.MAX_TYPE_LENGTH + " bytes");
+            }
+            ensureCapacity(typeBytes.length + MAX_FIXED_RECORD);
+            pos = TransactionCodec.putVarLong(buffer, pos, currencyChanged);
+            if (currencyChanged != 0) buffer[pos++] = (byte) currency.ordinal();
+            pos = TransactionCodec.putVarLong(buffer, pos, typeBytes.length);
+            System.arraycopy(typeBytes, 0, buffer, pos, typeBytes.length);
+            pos += typeBytes.length;
+            if (dictionary.size() < TransactionCodec.MAX_DICTIONARY) {
+                dictionary.put(t.getType(), dictionary.size());
+            }
+        }
+
+        long timestamp = t.getTimestamp().getTime();
+        long balance = Money.toPaise(t.getBalanceAfter());
+        pos = TransactionCodec.putVarLong(buffer, pos, TransactionCodec.zigzag(timestamp - lastTimestamp));
+        pos = TransactionCodec.putVarLong(buffer, pos, TransactionCodec.zigzag(Money.toPaise(t.getAmount())));
+        pos = TransactionCodec.putVarLong(buffer, pos, TransactionCodec.zigzag(balance - lastBalance));
+        lastTimestamp = timestamp;
+        lastBalance = balance;
+        lastCurrency = currency;
+
+        out.write(buffer, 0, pos);
+        recordCount++;
+    }
+
+    public void writeAll(Iterable<Transaction> transactions) throws IOException {
+        for (Transaction t : transactions) {
+            write(t);
+        }
+    }
+
+    public long getRecordCount() { return recordCount; }
+
+    private void ensureCapacity(int size) {
+        if (buffer.length < size) {
+            buffer = new byte[size];
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
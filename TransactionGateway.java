@@ -0,0 +1,236 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+// Admission control in front of ATM operations run off the caller's thread.
+//
+// A request is admitted only if all of these hold, checked in this order:
+//   - the number in flight (queued or running) is below the adaptive limit
+//   - the account has fewer than perAccountLimit requests in flight
+//   - the bounded work queue has room
+// Otherwise it completes at once with a rejected TransactionResult, without touching
+// the account. A worker also drops a request that waited longer than maxQueueWait,
+// since the caller has most likely given up on it.
+//
+// The global limit adapts to measured latency (queue wait plus run time). After every
+// window of completions, if more than 1% took longer than the target, so the p99 is
+// above it, the limit is cut by 10%. Otherwise, if the limit was reached during the
+// window, it grows by one. Under overload the queue stays short and latency stays near
+// the target, and the excess is shed up front.
+class TransactionGateway implements Closeable {
+    private static final int WINDOW = 100;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final ThreadPoolExecutor workers;
+    private final int perAccountLimit;
+    private final long maxQueueWaitNanos;
+    private final long targetLatencyNanos;
+    private final int minLimit;
+    private final int maxLimit;
+    private final ConcurrentHashMap<String, Integer> accountInFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private volatile boolean closed;
+
+    // Current window, guarded by 'this'
+    private int windowSamples;
+    private int windowSlow;
+    private volatile boolean windowSaturated;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLongArray rejected = new AtomicLongArray(RejectReason.values().length);
+
+    public TransactionGateway(int workerThreads, int queueCapacity, int perAccountLimit,
+                              long targetLatencyMillis, long maxQueueWaitMillis) {
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "transaction-worker-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.perAccountLimit = perAccountLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+        this.minLimit = workerThreads;
+        this.maxLimit = workerThreads + queueCapacity;
+        this.limit = maxLimit;
+    }
+
+    public CompletableFuture<TransactionResult> withdraw(ATM atm, double amount) {
+        return submit(atm, a -> a.withdraw(amount));
+    }
+
+    public CompletableFuture<TransactionResult> deposit(ATM atm, double amount) {
+        return submit(atm, a -> a.deposit(amount));
+    }
+
+    public CompletableFuture<TransactionResult> transfer(ATM atm, double amount, String targetAccount) {
+        return submit(atm, a -> a.transfer(amount, targetAccount));
+    }
+
+    public CompletableFuture<TransactionResult> submit(ATM atm, Function<ATM, TransactionResult> operation) {
+        if (closed) return reject(RejectReason.SHUT_DOWN);
+        int current = limit;
+        if (inFlight.incrementAndGet() > current) {
+            inFlight.decrementAndGet();
+            windowSaturated = true;
+            return reject(RejectReason.OVERLOADED);
+        }
+        String account = atm.getAccountNumber();
+        if (!acquireAccount(account)) {
+            inFlight.decrementAndGet();
+            return reject(RejectReason.ACCOUNT_BUSY);
+        }
+
+        Task task = new Task(atm, operation);
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            release(account);
+            return reject(closed ? RejectReason.SHUT_DOWN : RejectReason.QUEUE_FULL);
+        }
+        admitted.incrementAndGet();
+        return task.result;
+    }
+
+    private final class Task implements Runnable {
+        final ATM atm;
+        final Function<ATM, TransactionResult> operation;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<TransactionResult> result = new CompletableFuture<>();
+
+        Task(ATM atm, Function<ATM, TransactionResult> operation) {
+            this.atm = atm;
+            this.operation = operation;
+        }
+
+        @Override
+        public void run() {
+            TransactionResult outcome = null;
+            RuntimeException failure = null;
+            try {
+                if (System.nanoTime() - enqueuedAt > maxQueueWaitNanos) {
+                    rejected.incrementAndGet(RejectReason.EXPIRED.ordinal());
+                    outcome = new TransactionResult(RejectReason.EXPIRED);
+                } else {
+                    outcome = operation.apply(atm);
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                release(atm.getAccountNumber());
+                completed.incrementAndGet();
+                onLatency(System.nanoTime() - enqueuedAt);
+            }
+            // Completed only after the slots are free, so a caller that submits again
+            // from a completion callback is not turned away as ACCOUNT_BUSY
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(outcome);
+            }
+        }
+    }
+
+    private synchronized void onLatency(long nanos) {
+        windowSamples++;
+        if (nanos > targetLatencyNanos) windowSlow++;
+        if (windowSamples < WINDOW) return;
+
+        if (windowSlow * 100 > windowSamples) {
+            limit = Math.max(minLimit, limit * 9 / 10);
+        } else if (windowSaturated) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        windowSamples = 0;
+        windowSlow = 0;
+        windowSaturated = false;
+    }
+
+    private CompletableFuture<TransactionResult> reject(RejectReason reason) {
+        rejected.incrementAndGet(reason.ordinal());
+        return CompletableFuture.completedFuture(new TransactionResult(reason));
+    }
+
+    private boolean acquireAccount(String account) {
+        while (true) {
+            Integer count = accountInFlight.get(account);
+            if (count == null) {
+                if (accountInFlight.putIfAbsent(account, 1) == null) return true;
+            } else if (count >= perAccountLimit) {
+                return false;
+            } else if (accountInFlight.replace(account, count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Releases both the account's slot and the global one
+    private void release(String account) {
+        while (true) {
+            Integer count = accountInFlight.get(account);
+            if (count == null) break;
+            if (count == 1 ? accountInFlight.remove(account, count) : accountInFlight.replace(account, count, count - 1)) {
+                break;
+            }
+        }
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() { return limit; }
+    public int getInFlight() { return inFlight.get(); }
+    public int getQueueDepth() { return workers.getQueue().size(); }
+    public long getAdmittedCount() { return admitted.get(); }
+    public long getCompletedCount() { return completed.get(); }
+    public long getRejectedCount(RejectReason reason) { return rejected.get(reason.ordinal()); }
+
+    public long getRejectedCount() {
+        long total = 0;
+        for (int i = 0; i < rejected.length(); i++) {
+            total += rejected.get(i);
+        }
+        return total;
+    }
+
+    // Stops admitting; requests still queued complete as SHUT_DOWN. Running operations
+    // are left to finish rather than interrupted, since an interrupt inside a commit
+    // listener (replication, audit) would drop that record. Only an operation still
+    // running after CLOSE_TIMEOUT_SECONDS is interrupted.
+    @Override
+    public void close() {
+        closed = true;
+        workers.shutdown();
+        List<Runnable> pending = new ArrayList<>();
+        workers.getQueue().drainTo(pending);
+        for (Runnable r : pending) {
+            rejectQueued((Task) r);
+        }
+        try {
+            if (!workers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                for (Runnable r : workers.shutdownNow()) {
+                    rejectQueued((Task) r);
+                }
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void rejectQueued(Task task) {
+        release(task.atm.getAccountNumber());
+        rejected.incrementAndGet(RejectReason.SHUT_DOWN.ordinal());
+        task.result.complete(new TransactionResult(RejectReason.SHUT_DOWN));
+    }
+}
@@ -0,0 +1,14 @@
+// What a history entry did, for analytics; mirrors Transaction.getSignedAmount()
+enum TransactionKind {
+    DEPOSIT, WITHDRAWAL, TRANSFER_OUT, TRANSFER_IN, OTHER;
+
+    static final TransactionKind[] VALUES = values();
+
+    static TransactionKind of(String type) {
+        if (type.equals("DEPOSIT")) return DEPOSIT;
+        if (type.equals("WITHDRAWAL")) return WITHDRAWAL;
+        if (type.startsWith("TRANSFER TO ")) return TRANSFER_OUT;
+        if (type.startsWith("TRANSFER FROM ")) return TRANSFER_IN;
+        return OTHER;
+    }
+}
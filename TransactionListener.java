@@ -0,0 +1,9 @@
+// Notified of every committed transaction, in commit order per account.
+// Called after the account's write lock is released, so readers never wait on a
+// listener; blocking here still holds up the committing thread, throttling writers.
+interface TransactionListener {
+    void onCommit(String accountNumber, Transaction transaction);
+
+    // Called once on registration with the balance the first onCommit will build on
+    default void onAttach(String accountNumber, BankCurrency currency, double balance) { }
+}
@@ -0,0 +1,23 @@
+// Transaction result class for better error handling
+class TransactionResult {
+    private boolean success;
+    private String message;
+    private RejectReason rejectReason;
+
+    public TransactionResult(boolean success, String message) {
+        this.success = success;
+        this.message = message;
+    }
+
+    // The request was turned away before it reached the account
+    public TransactionResult(RejectReason rejectReason) {
+        this(false, rejectReason.getMessage());
+        this.rejectReason = rejectReason;
+    }
+
+    public boolean isSuccess() { return success; }
+    public String getMessage() { return message; }
+    // Null when the operation ran, even if it failed
+    public RejectReason getRejectReason() { return rejectReason; }
+    public boolean isRejected() { return rejectReason != null; }
+}
@@ -0,0 +1,138 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs future-dated and standing-order transfers through ATM.transfer.
+// Orders live in a TimingWheel, so schedule and cancel are O(1) however many are pending.
+// Every tick, the due orders are taken off the wheel under the lock. They then run
+// outside it in batches of at most batchSize. Each run is recorded in the source
+// account's history by the normal transfer path.
+class TransferScheduler {
+    private final TimingWheel<StandingOrder> wheel;
+    private final int batchSize;
+    private final Object lock = new Object();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private ScheduledExecutorService ticker;
+
+    public TransferScheduler(long tickMillis, int batchSize) {
+        this.wheel = new TimingWheel<>(tickMillis, System.currentTimeMillis());
+        this.batchSize = batchSize;
+    }
+
+    public StandingOrder scheduleOnce(ATM source, String targetAccount, double amount, long dueAtMillis) {
+        return schedule(new StandingOrder(source, targetAccount, amount, dueAtMillis, 0, 1));
+    }
+
+    // occurrences == 0 repeats the transfer until the order is cancelled
+    public StandingOrder scheduleRecurring(ATM source, String targetAccount, double amount,
+                                           long firstDueMillis, long intervalMillis, int occurrences) {
+        if (intervalMillis < wheel.getTickMillis()) {
+            throw new IllegalArgumentException("Interval must be at least one scheduler tick");
+        }
+        return schedule(new StandingOrder(source, targetAccount, amount, firstDueMillis, intervalMillis, occurrences));
+    }
+
+    private StandingOrder schedule(StandingOrder order) {
+        synchronized (lock) {
+            order.setTimeout(wheel.schedule(order, order.getNextDueMillis()));
+        }
+        return order;
+    }
+
+    // An order that is running right now finishes its current transfer but is not rescheduled.
+    // Returns false once the order's last occurrence has fired.
+    public boolean cancel(StandingOrder order) {
+        synchronized (lock) {
+            if (order.isCancelled() || order.isFinished()) return false;
+            order.markCancelled();
+            TimingWheel.Timeout<StandingOrder> timeout = order.getTimeout();
+            if (timeout != null) {
+                wheel.cancel(timeout);
+            }
+            return true;
+        }
+    }
+
+    // Executes everything due up to nowMillis and returns the number of transfers attempted
+    public int runDue(long nowMillis) {
+        List<StandingOrder> due = new ArrayList<>();
+        synchronized (lock) {
+            wheel.advanceTo(nowMillis, order -> {
+                if (!order.hasNext()) order.markFinished();
+                due.add(order);
+            });
+        }
+
+        for (int from = 0; from < due.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, due.size());
+            for (int i = from; i < to; i++) {
+                execute(due.get(i));
+            }
+            synchronized (lock) {
+                for (int i = from; i < to; i++) {
+                    StandingOrder order = due.get(i);
+                    if (!order.isCancelled() && order.advance()) {
+                        wheel.reschedule(order.getTimeout(), order.getNextDueMillis());
+                    }
+                }
+            }
+        }
+        return due.size();
+    }
+
+    // A transfer that throws is recorded on its order and counted as failed, so one bad
+    // order neither stops the rest of the batch nor kills the ticker
+    private void execute(StandingOrder order) {
+        if (order.isCancelled()) return;
+        TransactionResult result;
+        try {
+            result = order.getSource().transfer(order.getAmount(), order.getTargetAccount());
+        } catch (RuntimeException e) {
+            order.setLastError(e);
+            failed.incrementAndGet();
+            return;
+        }
+        order.setLastResult(result);
+        if (result.isSuccess()) {
+            executed.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+    }
+
+    // Starts a background thread that calls runDue once per tick
+    public void start() {
+        synchronized (lock) {
+            if (ticker != null) return;
+            ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "transfer-scheduler");
+                t.setDaemon(true);
+                return t;
+            });
+            long tick = wheel.getTickMillis();
+            ticker.scheduleAtFixedRate(() -> runDue(System.currentTimeMillis()), tick, tick, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        synchronized (lock) {
+            if (ticker != null) {
+                ticker.shutdown();
+                ticker = null;
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return wheel.size();
+        }
+    }
+
+    public long getExecutedCount() { return executed.get(); }
+    public long getFailedCount() { return failed.get(); }
+}
@@ -0,0 +1,218 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Query latency of TransactionAnalytics over generated HistoryColumns, at parallelism 1
+// up to 8. Each query's best of seven runs is reported. Results are checked against a
+// brute-force pass over the raw rows: hourly sums and percentiles, per-account sums and
+// percentiles, and the top ten accounts by outflow. Also checks that HistoryColumns.load
+// finishes on a JDBC pool of one connection, where holding a connection across the
+// nested forEachTransaction calls would time out; this part needs a JDBC driver, e.g. the
+// H2 jar, and uses the in-memory store without one.
+//
+//   javac -encoding UTF-8 -d out *.java bench/AnalyticsBench.java
+//   java -Xmx3g -cp out:h2.jar AnalyticsBench [accounts] [rows per account]
+public class AnalyticsBench {
+    private static final String[] TYPES = {"DEPOSIT", "WITHDRAWAL", "TRANSFER TO ACC100000001", "PIN CHANGE",
+            "TRANSFER FROM ACC100000002"};
+    private static final long BASE_MILLIS = 1_760_000_000_000L;
+    private static final long HOUR = 3_600_000L;
+
+    // Raw rows for the brute-force checks
+    private static long[] timestamps;
+    private static long[] amounts;
+    private static int[] types;
+    private static int[] owners;
+    private static boolean[] usd;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int perAccount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        checkNestedLoad();
+
+        HistoryColumns columns = generate(accounts, perAccount);
+        System.out.printf("%,d rows over %,d accounts; cores: %d%n", columns.getRowCount(), accounts,
+                Runtime.getRuntime().availableProcessors());
+        AnalyticsFilter withdrawals = AnalyticsFilter.of(BankCurrency.INR, TransactionKind.WITHDRAWAL);
+        AnalyticsFilter outflow = AnalyticsFilter.of(BankCurrency.INR, TransactionKind.WITHDRAWAL, TransactionKind.TRANSFER_OUT);
+        String[] names = {"sum by hour", "average transfer", "top accounts", "by kind", "p50/p99 by hour",
+                "p50/p99 overall", "p99 by account"};
+        for (int parallelism = 1; parallelism <= 8; parallelism *= 2) {
+            try (TransactionAnalytics analytics = new TransactionAnalytics(columns, parallelism)) {
+                for (int q = 0; q < names.length; q++) {
+                    double best = Double.MAX_VALUE;
+                    for (int run = 0; run < 7; run++) {
+                        GroupTotals totals;
+                        switch (q) {
+                            case 0: totals = analytics.aggregate(withdrawals, AnalyticsGrouping.byTimeBucket(HOUR)); break;
+                            case 1: totals = analytics.aggregate(AnalyticsFilter.of(BankCurrency.INR, TransactionKind.TRANSFER_OUT),
+                                    AnalyticsGrouping.all()); break;
+                            case 2: totals = analytics.aggregate(outflow, AnalyticsGrouping.byAccount()); totals.top(10); break;
+                            case 3: totals = analytics.aggregate(AnalyticsFilter.of(null), AnalyticsGrouping.byKind()); break;
+                            case 4: totals = analytics.aggregate(withdrawals, AnalyticsGrouping.byTimeBucket(HOUR), 50, 99); break;
+                            case 5: totals = analytics.aggregate(withdrawals, AnalyticsGrouping.all(), 50, 99); break;
+                            default: totals = analytics.aggregate(outflow, AnalyticsGrouping.byAccount(), 99); break;
+                        }
+                        best = Math.min(best, totals.getElapsedNanos() / 1e6);
+                    }
+                    System.out.printf("parallelism %d  %-17s %8.1f ms  %7.0f M rows/s%n", parallelism, names[q], best,
+                            columns.getRowCount() / best / 1e3);
+                }
+                verify(analytics, accounts);
+            }
+        }
+    }
+
+    private static HistoryColumns generate(int accounts, int perAccount) {
+        int rows = accounts * perAccount;
+        timestamps = new long[rows];
+        amounts = new long[rows];
+        types = new int[rows];
+        owners = new int[rows];
+        usd = new boolean[accounts];
+        Random random = new Random(7);
+        HistoryColumns.Builder builder = new HistoryColumns.Builder();
+        int row = 0;
+        for (int i = 0; i < accounts; i++) {
+            usd[i] = i % 10 == 0;
+            builder.startAccount(String.format("ACC%09d", i), usd[i] ? BankCurrency.USD : BankCurrency.INR);
+            for (int k = 0; k < perAccount; k++) {
+                int type = random.nextInt(10) < 5 ? 1 : random.nextInt(TYPES.length);
+                long time = BASE_MILLIS + random.nextInt(30 * 24 * 3600) * 1000L;
+                long paise = 100 + random.nextInt(500_000);
+                builder.add(new Transaction(TYPES[type], Money.fromPaise(paise), 0, new Date(time),
+                        usd[i] ? BankCurrency.USD : BankCurrency.INR));
+                timestamps[row] = time;
+                amounts[row] = paise;
+                types[row] = type;
+                owners[row] = i;
+                row++;
+            }
+        }
+        return builder.build();
+    }
+
+    private static void verify(TransactionAnalytics analytics, int accounts) {
+        GroupTotals hourly = analytics.aggregate(AnalyticsFilter.of(BankCurrency.INR, TransactionKind.WITHDRAWAL),
+                AnalyticsGrouping.byTimeBucket(HOUR), 50, 99);
+        Map<Long, List<Long>> byHour = new TreeMap<>();
+        for (int i = 0; i < amounts.length; i++) {
+            if (types[i] == 1 && !usd[owners[i]]) {
+                byHour.computeIfAbsent(Math.floorDiv(timestamps[i], HOUR) * HOUR, h -> new ArrayList<>()).add(amounts[i]);
+            }
+        }
+        for (int g = 0; g < hourly.getGroupCount(); g++) {
+            List<Long> expected = byHour.getOrDefault(hourly.getBucketStart(g), Collections.emptyList());
+            Collections.sort(expected);
+            check(expected.size() == hourly.getCount(g) && sum(expected) == hourly.getSumPaise(g), "hour " + g + " totals");
+            if (expected.isEmpty()) continue;
+            check(rank(expected, 50) == hourly.getPercentilePaise(g, 0) && rank(expected, 99) == hourly.getPercentilePaise(g, 1)
+                    && expected.get(0) == hourly.getMinPaise(g) && expected.get(expected.size() - 1) == hourly.getMaxPaise(g),
+                    "hour " + g + " percentiles");
+        }
+
+        GroupTotals perAccount = analytics.aggregate(
+                AnalyticsFilter.of(BankCurrency.INR, TransactionKind.WITHDRAWAL, TransactionKind.TRANSFER_OUT),
+                AnalyticsGrouping.byAccount(), 99);
+        long[] sums = new long[accounts];
+        List<List<Long>> outflows = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            outflows.add(new ArrayList<>());
+        }
+        for (int i = 0; i < amounts.length; i++) {
+            if ((types[i] == 1 || types[i] == 2) && !usd[owners[i]]) {
+                sums[owners[i]] += amounts[i];
+                outflows.get(owners[i]).add(amounts[i]);
+            }
+        }
+        for (int i = 0; i < accounts; i++) {
+            List<Long> expected = outflows.get(i);
+            Collections.sort(expected);
+            check(sums[i] == perAccount.getSumPaise(i), "account " + i + " outflow");
+            check((expected.isEmpty() ? 0 : rank(expected, 99)) == perAccount.getPercentilePaise(i, 0), "account " + i + " p99");
+        }
+        long[] sorted = sums.clone();
+        Arrays.sort(sorted);
+        int[] top = perAccount.top(10);
+        for (int i = 0; i < top.length; i++) {
+            check(sums[top[i]] == sorted[sorted.length - 1 - i], "top account " + i);
+        }
+
+        GroupTotals byKind = analytics.aggregate(AnalyticsFilter.of(null), AnalyticsGrouping.byKind());
+        long transfersIn = 0;
+        for (int type : types) {
+            if (type == 4) transfersIn++;
+        }
+        check(byKind.getCount(TransactionKind.TRANSFER_IN.ordinal()) == transfersIn, "incoming transfers counted apart");
+        System.out.println("  results match a brute-force pass: OK");
+    }
+
+    // Loading nests forEachTransaction inside forEachAccount; with one pooled connection
+    // that only works while forEachAccount does not hold it across the callback
+    private static void checkNestedLoad() throws Exception {
+        boolean jdbc = hasH2();
+        Path dir = Files.createTempDirectory("analytics-bench");
+        AccountRepository repository = jdbc
+                ? new JdbcAccountRepository(new ConnectionPool("jdbc:h2:" + dir.resolve("bank"), "sa", "", 1, 2000))
+                : new InMemoryAccountRepository();
+        try {
+            int accounts = 2500;
+            for (int i = 0; i < accounts; i++) {
+                String number = String.format("ACC%09d", i);
+                repository.saveAccount(new AccountRecord(number, "Holder", 100, false, 0));
+                repository.appendTransactions(number, Arrays.asList(
+                        new Transaction("DEPOSIT", 10, 110, new Date(BASE_MILLIS + i)),
+                        new Transaction("WITHDRAWAL", 5, 105, new Date(BASE_MILLIS + i + 1))));
+            }
+            long start = System.nanoTime();
+            HistoryColumns loaded = HistoryColumns.load(repository);
+            check(loaded.getAccountCount() == accounts && loaded.getRowCount() == accounts * 2,
+                    "loaded " + loaded.getAccountCount() + " accounts and " + loaded.getRowCount() + " rows");
+            System.out.printf("nested load from %s: %,d rows in %d ms: OK%n",
+                    jdbc ? "a one-connection jdbc pool" : "the in-memory store", loaded.getRowCount(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            repository.close();
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static boolean hasH2() {
+        try {
+            Class.forName("org.h2.Driver");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    // Nearest rank
+    private static long rank(List<Long> sorted, double percentile) {
+        return sorted.get((int) Math.ceil(percentile / 100 * sorted.size()) - 1);
+    }
+
+    private static long sum(List<Long> values) {
+        long sum = 0;
+        for (long v : values) {
+            sum += v;
+        }
+        return sum;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
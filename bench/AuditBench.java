@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Cost of auditing on the login path, writer throughput, and parallel verification speed
+// of AuditLog. Also checks that the verifier catches an edited line, a removed line, a
+// torn last line, a log cut short at a line boundary, and a wrong key, and that reopening
+// continues the chain but refuses a log cut short.
+//
+//   javac -encoding UTF-8 -d out *.java bench/AuditBench.java
+//   java -cp out AuditBench [events]
+public class AuditBench {
+    private static final byte[] KEY = "audit-bench-key-0123456789abcdef".getBytes();
+
+    public static void main(String[] args) throws Exception {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Path dir = Files.createTempDirectory("audit-bench");
+        try {
+            loginOverhead(dir);
+            writeAndVerify(dir, events);
+            checkTampering(dir);
+            checkReopen(dir);
+        } finally {
+            for (Path file : list(dir)) {
+                Files.delete(file);
+            }
+            Files.delete(dir);
+        }
+    }
+
+    // A wrong then a right PIN per account, with and without an audit log attached
+    private static void loginOverhead(Path dir) throws Exception {
+        String pin = PinHash.hash("1234");
+        ATM[] plain = new ATM[200];
+        ATM[] audited = new ATM[200];
+        try (AuditLog log = new AuditLog(dir.resolve("login.log"), KEY, 65_536, 512)) {
+            for (int i = 0; i < plain.length; i++) {
+                plain[i] = new ATM(1, pin, "ACC" + i, "Holder");
+                audited[i] = new ATM(1, pin, "ACC" + i, "Holder");
+                audited[i].addSecurityEventListener(log);
+            }
+            for (int round = 0; round < 3; round++) {
+                long without = logins(plain);
+                long with = logins(audited);
+                check(log.awaitWritten(60_000), "audit writer fell behind");
+                System.out.printf("login pair: %.1f us without audit, %.1f us with%n",
+                        without / 1e3 / plain.length, with / 1e3 / audited.length);
+            }
+            check(log.getWrittenCount() == 3 * audited.length, "written " + log.getWrittenCount());
+        }
+    }
+
+    private static long logins(ATM[] atms) {
+        long start = System.nanoTime();
+        for (ATM atm : atms) {
+            check(!atm.validatePin("0000"), "wrong PIN accepted");
+            check(atm.validatePin("1234"), "right PIN rejected");
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void writeAndVerify(Path dir, int events) throws Exception {
+        Path file = dir.resolve("big.log");
+        long start = System.nanoTime();
+        try (AuditLog log = new AuditLog(file, KEY, 65_536, 4096)) {
+            for (int i = 0; i < events; i++) {
+                log.onSecurityEvent("ACC" + (i % 5000), AuditEventType.LOGIN_FAILED, "wrong PIN, attempt 1 of 3");
+            }
+            check(log.awaitWritten(600_000), "audit writer fell behind");
+            System.out.printf("%,d events written in %d ms, %d batches, %d MB%n", events,
+                    (System.nanoTime() - start) / 1_000_000, log.getBatchCount(), Files.size(file) >> 20);
+        }
+        System.out.printf("cores: %d%n", Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            AuditVerification result = AuditVerifier.verify(file, KEY, threads);
+            check(result.isIntact() && result.getRecords() == events, "big log: " + result);
+            System.out.printf("verify with %d threads: %s%n", threads, result);
+        }
+    }
+
+    private static void checkTampering(Path dir) throws Exception {
+        Path file = dir.resolve("small.log");
+        try (AuditLog log = new AuditLog(file, KEY, 1024, 16)) {
+            for (int i = 0; i < 10_000; i++) {
+                log.onSecurityEvent("ACC" + (i % 50), AuditEventType.LOGIN_FAILED, "attempt " + i);
+            }
+            check(log.awaitWritten(60_000), "audit writer fell behind");
+        }
+        check(AuditVerifier.verify(file, KEY, 4).isIntact(), "clean log flagged");
+        byte[] bytes = Files.readAllBytes(file);
+        List<String> lines = Files.readAllLines(file);
+        Path bad = dir.resolve("bad.log");
+        Path badHead = AuditFormat.headFile(bad);
+        Files.copy(AuditFormat.headFile(file), badHead);
+
+        byte[] edited = bytes.clone();
+        int at = bytes.length / 2;
+        while (edited[at] != '|') at++;
+        edited[at + 1] = (byte) (edited[at + 1] == '9' ? '8' : '9');
+        Files.write(bad, edited);
+        expectBroken(bad, "edited line");
+
+        List<String> removed = new ArrayList<>(lines);
+        removed.remove(5000);
+        Files.write(bad, removed);
+        expectBroken(bad, "removed line");
+
+        Files.write(bad, Arrays.copyOf(bytes, bytes.length - 20));
+        expectBroken(bad, "torn last line");
+
+        // Every remaining line is valid; only the head shows that lines are missing
+        Files.write(bad, lines.subList(0, 9000));
+        AuditVerification cut = AuditVerifier.verify(bad, KEY, 4);
+        check(!cut.isIntact() && cut.getFirstBadSeq() == 9001, "log cut short: " + cut);
+
+        Files.write(bad, bytes);
+        Files.delete(badHead);
+        expectBroken(bad, "missing head");
+
+        check(!AuditVerifier.verify(file, "some-other-key-0123456789abcdef".getBytes(), 4).isIntact(),
+                "log verified under the wrong key");
+        System.out.println("edited, removed, torn, cut short, missing head and wrong key detected: OK");
+    }
+
+    private static void expectBroken(Path file, String what) throws IOException {
+        AuditVerification result = AuditVerifier.verify(file, KEY, 4);
+        check(!result.isIntact(), what + " not detected");
+    }
+
+    private static void checkReopen(Path dir) throws Exception {
+        Path file = dir.resolve("reopen.log");
+        for (int run = 0; run < 3; run++) {
+            try (AuditLog log = new AuditLog(file, KEY)) {
+                ATM atm = new ATM(1, "1234", "ACC" + run, "Holder");
+                atm.addSecurityEventListener(log);
+                atm.validatePin("0000");
+                check(log.awaitWritten(5000), "event not written");
+            }
+        }
+        AuditVerification result = AuditVerifier.verify(file, KEY, 2);
+        check(result.isIntact() && result.getRecords() == 3, "reopened chain: " + result);
+
+        // A crash can tear the last line; reopening cuts it off and carries on
+        Files.write(file, "4|torn".getBytes(), java.nio.file.StandardOpenOption.APPEND);
+        new AuditLog(file, KEY).close();
+        check(AuditVerifier.verify(file, KEY, 2).isIntact(), "torn line not repaired");
+
+        List<String> lines = Files.readAllLines(file);
+        Files.write(file, lines.subList(0, 2));
+        check(refused(file, KEY), "reopened a log cut short");
+        Files.write(file, lines);
+        check(refused(file, "some-other-key-0123456789abcdef".getBytes()), "reopened under the wrong key");
+        check(!refused(file, KEY), "restored log refused");
+        System.out.println("reopen continues the chain and refuses a cut log: OK");
+    }
+
+    private static boolean refused(Path file, byte[] key) {
+        try {
+            new AuditLog(file, key).close();
+            return false;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+            List<Path> all = new ArrayList<>();
+            files.forEach(all::add);
+            return all;
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
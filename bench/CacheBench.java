@@ -0,0 +1,97 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+// Hit rate, hit latency and throughput of CachingAccountRepository under Zipf(0.99)
+// skewed terminal traffic, for several cache sizes. One write per 16 reads.
+// Also checks that a failing store keeps dirty records and that the next flush retries them.
+//
+//   javac -encoding UTF-8 -d out *.java bench/CacheBench.java
+//   java -cp out CacheBench [accounts] [operations]
+public class CacheBench {
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 4_000_000;
+
+        InMemoryAccountRepository store = new InMemoryAccountRepository();
+        String[] keys = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            keys[i] = String.format("ACC%09d", i);
+            store.saveAccount(new AccountRecord(keys[i], "Holder", 1000, false, 0));
+            store.savePin(keys[i], "1234");
+        }
+        int[] trace = zipfTrace(accounts, operations, 0.99, new Random(7));
+
+        for (int capacity : new int[]{10_000, 50_000, 100_000}) {
+            CachingAccountRepository cache = new CachingAccountRepository(store, capacity, 16, 50, 10_000);
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                String key = keys[trace[i]];
+                AccountRecord record = cache.findAccount(key);
+                if (cache.findPin(key) == null) throw new AssertionError("missing PIN for " + key);
+                if ((i & 15) == 0) {
+                    cache.saveAccount(new AccountRecord(key, record.getHolderName(), record.getBalance() - 1, false, 0));
+                }
+            }
+            long nanos = System.nanoTime() - start;
+
+            // Latency of a hit on the hottest account, which is always cached by now
+            String hottest = keys[0];
+            int hitLoops = 1_000_000;
+            long hitStart = System.nanoTime();
+            for (int i = 0; i < hitLoops; i++) {
+                cache.findAccount(hottest);
+            }
+            double hitNanos = (System.nanoTime() - hitStart) / (double) hitLoops;
+            cache.close();
+
+            System.out.printf("capacity %,7d: hit rate %.3f, %,d evictions, %d flushes of %,d records for %,d writes, "
+                            + "%.0f ns per lookup, %.1f M lookups/s, hit %.0f ns%n",
+                    capacity, cache.getHitRate(), cache.getEvictionCount(), cache.getFlushCount(),
+                    cache.getFlushedRecordCount(), operations / 16, nanos / (2.0 * operations),
+                    2.0 * operations / (nanos / 1e3), hitNanos);
+        }
+        checkFailedFlushIsRetried();
+    }
+
+    private static int[] zipfTrace(int n, int length, double s, Random random) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, s);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            int k = Arrays.binarySearch(cdf, random.nextDouble());
+            trace[i] = Math.min(n - 1, k < 0 ? -k - 1 : k);
+        }
+        return trace;
+    }
+
+    private static void checkFailedFlushIsRetried() throws InterruptedException {
+        boolean[] failing = {true};
+        InMemoryAccountRepository store = new InMemoryAccountRepository() {
+            @Override
+            public void saveAccounts(Collection<AccountRecord> batch) {
+                if (failing[0]) throw new IllegalStateException("store offline");
+                super.saveAccounts(batch);
+            }
+        };
+        CachingAccountRepository cache = new CachingAccountRepository(store, 100, 1, 20, 1000);
+        cache.saveAccount(new AccountRecord("ACC000000001", "Retry", 42, false, 0));
+        Thread.sleep(100);
+        long failures = cache.getFlushFailureCount();
+        String error = cache.getLastFlushError() == null ? null : cache.getLastFlushError().getMessage();
+        int dirtyWhileDown = cache.getDirtyCount();
+        failing[0] = false;
+        Thread.sleep(100);
+        System.out.println("failed flush: failures=" + failures + " lastError=" + error + " dirty while down="
+                + dirtyWhileDown + ", after recovery dirty=" + cache.getDirtyCount()
+                + " stored balance=" + store.findAccount("ACC000000001").getBalance());
+        cache.close();
+    }
+}
@@ -0,0 +1,162 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+// Size and speed of the binary history format against Transaction.toString() text, in
+// memory and to a file opened without a buffer. Also checks that a round trip keeps every
+// field, that mixed currencies and a full dictionary survive, that the encoder buffers an
+// unbuffered stream, and that malformed input is rejected.
+//
+//   javac -encoding UTF-8 -d out *.java bench/CodecBench.java
+//   java -cp out CodecBench [records]
+public class CodecBench {
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Transaction> history = generate(records);
+        checkRoundTrip(history);
+        checkBuffering(history);
+        checkMalformed();
+
+        Path file = Files.createTempFile("codec-bench", ".bin");
+        try {
+            for (int round = 0; round < 3; round++) {
+                long t0 = System.nanoTime();
+                long textBytes = 0;
+                for (Transaction t : history) {
+                    textBytes += t.toString().getBytes(StandardCharsets.UTF_8).length + 1;
+                }
+                long t1 = System.nanoTime();
+                ByteArrayOutputStream memory = new ByteArrayOutputStream(records * 12);
+                TransactionEncoder encoder = new TransactionEncoder(memory);
+                encoder.writeAll(history);
+                encoder.flush();
+                long t2 = System.nanoTime();
+                byte[] bytes = memory.toByteArray();
+                List<Transaction> decoded = TransactionCodec.importHistory(new ByteArrayInputStream(bytes));
+                long t3 = System.nanoTime();
+                try (OutputStream out = Files.newOutputStream(file);
+                     TransactionEncoder toFile = new TransactionEncoder(out)) {
+                    toFile.writeAll(history);
+                }
+                long t4 = System.nanoTime();
+                check(decoded.size() == records, "decoded " + decoded.size());
+                check(Files.size(file) == bytes.length, "file holds " + Files.size(file) + " bytes, memory " + bytes.length);
+                System.out.printf("text %.1f B/rec %.2f M/s | binary %.1f B/rec, encode %.2f M/s, decode %.2f M/s, "
+                                + "encode to file %.2f M/s%n",
+                        textBytes / (double) records, records / ((t1 - t0) / 1e3), bytes.length / (double) records,
+                        records / ((t2 - t1) / 1e3), records / ((t3 - t2) / 1e3), records / ((t4 - t3) / 1e3));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static List<Transaction> generate(int records) {
+        Random random = new Random(1);
+        String[] types = {"WITHDRAWAL", "DEPOSIT", "TRANSFER TO ACC987654321"};
+        List<Transaction> history = new ArrayList<>(records);
+        long timestamp = 1_700_000_000_000L;
+        double balance = 25_000;
+        for (int i = 0; i < records; i++) {
+            timestamp += random.nextInt(600_000);
+            double amount = random.nextInt(100_000) / 100.0;
+            int kind = random.nextInt(3);
+            balance = Money.fromPaise(Money.toPaise(balance) + (kind == 1 ? 1 : -1) * Money.toPaise(amount));
+            history.add(new Transaction(types[kind], amount, balance, new Date(timestamp)));
+        }
+        return history;
+    }
+
+    private static void checkRoundTrip(List<Transaction> history) throws IOException {
+        List<Transaction> mixed = new ArrayList<>(history.subList(0, Math.min(10_000, history.size())));
+        BankCurrency[] currencies = BankCurrency.values();
+        for (int i = 0; i < TransactionCodec.MAX_DICTIONARY + 500; i++) {
+            mixed.add(new Transaction("TRANSFER TO ACC" + (100_000_000 + i), i / 100.0, -i / 10.0,
+                    new Date(1_700_000_000_000L - i * 1000L), currencies[i % currencies.length]));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransactionEncoder encoder = new TransactionEncoder(out);
+        encoder.writeAll(mixed);
+        encoder.flush();
+        List<Transaction> decoded = TransactionCodec.importHistory(new ByteArrayInputStream(out.toByteArray()));
+        check(decoded.size() == mixed.size(), "decoded " + decoded.size() + " of " + mixed.size());
+        for (int i = 0; i < mixed.size(); i++) {
+            Transaction a = mixed.get(i);
+            Transaction b = decoded.get(i);
+            check(a.getType().equals(b.getType()) && a.getAmount() == b.getAmount()
+                    && a.getBalanceAfter() == b.getBalanceAfter() && a.getTimestamp().equals(b.getTimestamp())
+                    && a.getCurrency() == b.getCurrency(), "record " + i + " differs: " + a + " / " + b);
+        }
+        System.out.println("round trip of " + mixed.size() + " records with mixed currencies and a full dictionary: OK");
+    }
+
+    // Without its own buffer the encoder would make one write call per record
+    private static void checkBuffering(List<Transaction> history) throws IOException {
+        CountingStream counting = new CountingStream();
+        TransactionEncoder encoder = new TransactionEncoder(counting);
+        encoder.writeAll(history.subList(0, 10_000));
+        encoder.flush();
+        check(counting.calls < 100, counting.calls + " writes for 10,000 records");
+        check(TransactionCodec.importHistory(new ByteArrayInputStream(counting.bytes.toByteArray())).size() == 10_000,
+                "buffered output does not decode");
+        System.out.println("10,000 records reach an unbuffered stream in " + counting.calls + " writes: OK");
+    }
+
+    private static void checkMalformed() {
+        byte[][] inputs = {
+                {},
+                {0x12, 0x34, 0x56, 0x78},
+                // V1 header, then a varint that runs past 64 bits
+                {0x54, 0x58, 0x4E, 0x31, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+                        (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01},
+                // V2 header, a new type whose length runs past the end
+                {0x54, 0x58, 0x4E, 0x32, 0, 0x7F, 'A'},
+                // V2 header, a currency ordinal that does not exist
+                {0x54, 0x58, 0x4E, 0x32, 1, 0x7F}};
+        for (byte[] input : inputs) {
+            try {
+                TransactionCodec.importHistory(new ByteArrayInputStream(input));
+                throw new AssertionError("malformed stream of " + input.length + " bytes accepted");
+            } catch (IOException expected) {
+                // Rejected, as it should be
+            }
+        }
+        try {
+            new TransactionEncoder(new ByteArrayOutputStream()).write(new Transaction(
+                    new String(new char[TransactionCodec.MAX_TYPE_LENGTH + 1]).replace('\0', 'x'), 1, 1));
+            throw new AssertionError("oversized type accepted");
+        } catch (IOException expected) {
+            // Rejected, as it should be
+        }
+        System.out.println("malformed streams and oversized types rejected: OK");
+    }
+
+    private static final class CountingStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int calls;
+
+        @Override
+        public void write(int b) {
+            calls++;
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            calls++;
+            bytes.write(b, off, len);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
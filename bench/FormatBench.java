@@ -0,0 +1,62 @@
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+
+// Compares the old per-call SimpleDateFormat / String.format formatting with BankFormat.
+// Plain main harness, since the tree has no build to pull in JMH; warm-up rounds are
+// printed and the last round is the one to read. Allocation is measured per thread with
+// com.sun.management.ThreadMXBean.
+//
+//   javac -encoding UTF-8 -d out *.java bench/FormatBench.java
+//   java -cp out FormatBench
+public class FormatBench {
+    private static final int N = 2_000_000;
+    private static long sink;
+
+    public static void main(String[] args) {
+        Transaction t = new Transaction("WITHDRAWAL", 1234.56, 98765.43);
+        for (int round = 1; round <= 3; round++) {
+            System.out.println("round " + round);
+            measure("history row, old", () -> {
+                for (int i = 0; i < N; i++) {
+                    sink += String.format("%s | %s | Rs %.2f | Balance: Rs %.2f",
+                            new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(t.getTimestamp()),
+                            t.getType(), t.getAmount() + i, t.getBalanceAfter()).length();
+                }
+            });
+            measure("history row, BankFormat", () -> {
+                StringBuilder sb = new StringBuilder(128);
+                for (int i = 0; i < N; i++) {
+                    sb.setLength(0);
+                    BankFormat.appendLogTimestamp(sb, t.getTimestamp()).append(" | ").append(t.getType()).append(" | ");
+                    BankFormat.appendMoney(sb, t.getAmount() + i, BankCurrency.INR).append(" | Balance: ");
+                    BankFormat.appendMoney(sb, t.getBalanceAfter(), BankCurrency.INR);
+                    sink += sb.length();
+                }
+            });
+            measure("money, String.format", () -> {
+                for (int i = 0; i < N; i++) {
+                    sink += String.format("Rs %.2f", 1234.56 + i).length();
+                }
+            });
+            measure("money, BankFormat", () -> {
+                StringBuilder sb = new StringBuilder(32);
+                for (int i = 0; i < N; i++) {
+                    sb.setLength(0);
+                    sink += BankFormat.appendMoney(sb, 1234.56 + i, BankCurrency.INR).length();
+                }
+            });
+        }
+        System.out.println(sink);
+    }
+
+    private static void measure(String name, Runnable body) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        body.run();
+        long nanos = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(id) - bytes;
+        System.out.printf("  %-26s %7.0f ns/op %8.1f B/op%n", name, nanos / (double) N, bytes / (double) N);
+    }
+}
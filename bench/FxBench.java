@@ -0,0 +1,226 @@
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Conversion throughput of the copy-on-write FxRateService snapshot against a map read
+// under a lock, while an FxRateFeed applies a new USD rate every millisecond, and the rate
+// of cross-currency transfers from several threads. Also checks feed parsing, that an
+// oversized feed line is skipped without growing the buffer, that appends and rotation
+// are told apart, and that a cross-currency transfer credits the receiver the converted
+// amount with the rate in its history.
+//
+//   javac -encoding UTF-8 -d out *.java bench/FxBench.java
+//   java -cp out FxBench [conversions per thread]
+public class FxBench {
+    private static final BankCurrency[] CURRENCIES = BankCurrency.values();
+
+    public static void main(String[] args) throws Exception {
+        int perThread = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        Path feedFile = Files.createTempFile("fx-bench", ".txt");
+        try {
+            FxRateService rates = new FxRateService();
+            FxRateFeed feed = new FxRateFeed(feedFile, rates);
+            checkFeed(feedFile, feed, rates);
+            checkOversizedLine(feedFile, feed, rates);
+            checkRotation(feedFile, feed, rates);
+            checkTransfer(rates);
+
+            feed.start(5);
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread writer = new Thread(() -> {
+                for (int i = 0; !stop.get(); i++) {
+                    try {
+                        append(feedFile, "USD " + (82 + (i % 200) / 100.0) + "\n");
+                        Thread.sleep(1);
+                    } catch (Exception e) {
+                        return;
+                    }
+                }
+            });
+            writer.start();
+            System.out.printf("cores: %d%n", Runtime.getRuntime().availableProcessors());
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                conversions(rates, threads, perThread);
+            }
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                transfers(rates, threads, perThread / 10);
+            }
+            stop.set(true);
+            writer.join();
+            feed.close();
+            check(feed.getPollFailureCount() == 0, "feed poll failed: " + feed.getLastPollError());
+            System.out.printf("feed applied %,d rates, table version %d%n", feed.getAppliedCount(), rates.current().getVersion());
+        } finally {
+            Files.deleteIfExists(feedFile);
+        }
+    }
+
+    private static void checkFeed(Path file, FxRateFeed feed, FxRateService rates) throws Exception {
+        append(file, "# rates\nUSD 83.10\nEUR 90.25\nGBP 105.5\nAED 22.6\nSGD 61.7\nXYZ 1\nUSD abc\nINR 1\n\nSGD 61.9");
+        int applied = feed.poll();
+        check(feed.getRejectedCount() == 3, "rejected " + feed.getRejectedCount() + ", expected 3");
+        check(applied == 5, "applied " + applied + ", expected 5; the unfinished last line must wait");
+        check(rates.convert(100, BankCurrency.USD, BankCurrency.INR) == 8310, "100 USD converts to "
+                + rates.convert(100, BankCurrency.USD, BankCurrency.INR));
+        System.out.println("feed parsing: OK");
+    }
+
+    // A line longer than the buffer is dropped up to its end, even when that end arrives in a later poll
+    private static void checkOversizedLine(Path file, FxRateFeed feed, FxRateService rates) throws Exception {
+        long rejected = feed.getRejectedCount();
+        char[] junk = new char[FxRateFeed.MAX_LINE_BYTES * 8];
+        Arrays.fill(junk, '9');
+        append(file, "\nUSD " + new String(junk));
+        feed.poll();
+        append(file, new String(junk) + "\nUSD 84.00\n");
+        feed.poll();
+        check(feed.getRejectedCount() == rejected + 1, "oversized line counted "
+                + (feed.getRejectedCount() - rejected) + " times");
+        check(rates.current().rate(BankCurrency.USD, BankCurrency.INR) == 84.0, "rate after the oversized line not applied");
+        System.out.println("oversized feed line skipped: OK");
+    }
+
+    // An append is read from where the last poll stopped; a replaced file is read from the start
+    private static void checkRotation(Path file, FxRateFeed feed, FxRateService rates) throws Exception {
+        long applied = feed.getAppliedCount();
+        Thread.sleep(20);
+        append(file, "EUR 91.00\n");
+        check(feed.poll() == 1 && feed.getAppliedCount() == applied + 1, "an append re-read the whole file");
+
+        Path replacement = file.resolveSibling(file.getFileName() + ".new");
+        Files.write(replacement, "USD 85.00\n".getBytes(StandardCharsets.US_ASCII));
+        Files.move(replacement, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        check(feed.poll() == 1, "replaced file not read from the start");
+        check(rates.current().rate(BankCurrency.USD, BankCurrency.INR) == 85.0, "rate from the replaced file not applied");
+        System.out.println("appends and rotation: OK");
+    }
+
+    private static void checkTransfer(FxRateService rates) {
+        ATM sender = new ATM(100_000, "1234", "ACC000000001", "Sender");
+        ATM receiver = new ATM(10, "1234", "ACC000000002", "Receiver", BankCurrency.USD);
+        check(sender.transfer(4200, receiver, rates).isSuccess(), "cross-currency transfer failed");
+
+        double rate = rates.current().rate(BankCurrency.INR, BankCurrency.USD);
+        double credit = Money.fromPaise(Math.round(420_000 * rate));
+        Transaction received = receiver.getLastTransaction();
+        check(received.getType().equals("TRANSFER FROM ACC000000001 @ " + rate), "credit recorded as " + received.getType());
+        check(received.getAmount() == credit && received.getCurrency() == BankCurrency.USD,
+                "credited " + received.getAmount() + ", expected " + credit);
+        check(receiver.getBalance() == Money.fromPaise(1000 + Money.toPaise(credit)), "receiver balance " + receiver.getBalance());
+        check(received.getSignedAmount() == credit, "credit does not count as money in");
+        check(TransactionKind.of(received.getType()) == TransactionKind.TRANSFER_IN, "credit not a TRANSFER_IN");
+        check(sender.getLastTransaction().getType().equals("TRANSFER TO ACC000000002"), "debit not recorded");
+        check(ReconciliationEngine.verify(sender, new StringWriter()), "sender does not reconcile");
+        check(ReconciliationEngine.verify(receiver, new StringWriter()), "receiver does not reconcile");
+
+        check(!sender.transfer(1_000_000, receiver, rates).isSuccess(), "overdraft transfer succeeded");
+        check(receiver.getTransactionHistory().size() == 1, "failed transfer credited the receiver");
+        check(!sender.transfer(10, receiver, new FxRateService()).isSuccess(), "transfer without a rate succeeded");
+        System.out.println("cross-currency transfer credits the receiver with the rate: OK");
+    }
+
+    private static void conversions(FxRateService rates, int threads, int perThread) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        long sink = run(pool, threads, seed -> {
+            long sum = 0;
+            for (int i = 0; i < perThread; i++) {
+                FxRateTable table = rates.current();
+                sum += table.convertPaise(10_000 + i, CURRENCIES[(i + seed) % CURRENCIES.length],
+                        CURRENCIES[(i * 7 + 1) % CURRENCIES.length]);
+            }
+            return sum;
+        });
+        long snapshot = System.nanoTime() - start;
+
+        Map<BankCurrency, Double> locked = new HashMap<>();
+        for (BankCurrency c : CURRENCIES) {
+            locked.put(c, rates.current().rate(c, BankCurrency.INR));
+        }
+        start = System.nanoTime();
+        sink += run(pool, threads, seed -> {
+            long sum = 0;
+            for (int i = 0; i < perThread; i++) {
+                double rate;
+                synchronized (locked) {
+                    rate = locked.get(CURRENCIES[(i + seed) % CURRENCIES.length])
+                            / locked.get(CURRENCIES[(i * 7 + 1) % CURRENCIES.length]);
+                }
+                sum += Math.round((10_000 + i) * rate);
+            }
+            return sum;
+        });
+        long synchronizedMap = System.nanoTime() - start;
+        pool.shutdown();
+        System.out.printf("%d threads: snapshot %6.1f M conversions/s, synchronized map %6.1f M/s%s%n", threads,
+                threads * (double) perThread / snapshot * 1e3, threads * (double) perThread / synchronizedMap * 1e3,
+                sink == 42 ? " " : "");
+    }
+
+    // Each thread sends from its own accounts to USD and EUR receivers; totals must add up
+    private static void transfers(FxRateService rates, int threads, int perThread) throws Exception {
+        ATM usd = new ATM(0, "1234", "ACC100000001", "Usd", BankCurrency.USD);
+        ATM eur = new ATM(0, "1234", "ACC100000002", "Eur", BankCurrency.EUR);
+        ATM[] senders = new ATM[threads * 4];
+        for (int i = 0; i < senders.length; i++) {
+            senders[i] = new ATM(1e9, "1234", String.format("ACC%09d", i), "Sender");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        run(pool, threads, seed -> {
+            for (int i = 0; i < perThread; i++) {
+                check(senders[seed * 4 + i % 4].transfer(10, i % 2 == 0 ? usd : eur, rates).isSuccess(), "transfer failed");
+            }
+            return 0L;
+        });
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+
+        long sent = 0;
+        for (ATM sender : senders) {
+            sent += Money.toPaise(1e9) - Money.toPaise(sender.getBalance());
+        }
+        check(sent == (long) threads * perThread * 1000, "debited " + sent + " paise");
+        check(usd.getTransactionHistory().size() + eur.getTransactionHistory().size() == threads * perThread,
+                "receivers hold " + (usd.getTransactionHistory().size() + eur.getTransactionHistory().size()) + " credits");
+        check(ReconciliationEngine.verify(usd, new StringWriter()) && ReconciliationEngine.verify(eur, new StringWriter()),
+                "receivers do not reconcile under concurrent credits");
+        System.out.printf("%d threads: %,.0f cross-currency transfers/s%n", threads, threads * (double) perThread / nanos * 1e9);
+    }
+
+    private interface Work {
+        long apply(int seed) throws Exception;
+    }
+
+    private static long run(ExecutorService pool, int threads, Work work) throws Exception {
+        List<Future<Long>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(pool.submit(() -> work.apply(seed)));
+        }
+        long sum = 0;
+        for (Future<Long> future : futures) {
+            sum += future.get();
+        }
+        return sum;
+    }
+
+    private static void append(Path file, String text) throws Exception {
+        Files.write(file, text.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+// Open-loop load test of TransactionGateway against a plain fixed thread pool. Each
+// request simulates a 2 ms store write. Requests arrive at a fixed rate, by default twice
+// what the workers can serve, and the latency of the requests served after a warm-up is
+// reported. The gateway's p99 must stay within a few multiples of its latency target,
+// while the plain pool's queue, and with it the latency, keeps growing.
+// Also checks that a caller resubmitting from a completion callback is not turned away
+// as ACCOUNT_BUSY with a per-account limit of one, for served and expired requests alike.
+//
+//   javac -encoding UTF-8 -d out *.java bench/GatewayLoadTest.java
+//   java -cp out GatewayLoadTest [overload factor] [seconds]
+public class GatewayLoadTest {
+    private static final int WORKERS = 8;
+    private static final long SERVICE_NANOS = 2_000_000;
+    private static final long TARGET_LATENCY_MILLIS = 25;
+    private static final long WARM_UP_NANOS = 2_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        double overload = args.length > 0 ? Double.parseDouble(args[0]) : 2.0;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        checkResubmitFromCallback(false);
+        checkResubmitFromCallback(true);
+        System.out.println("resubmit from completion callback: OK");
+
+        double gatewayP99 = run(true, overload, seconds);
+        run(false, overload, seconds);
+        check(gatewayP99 <= TARGET_LATENCY_MILLIS * 4, "gateway p99 " + gatewayP99 + " ms at " + overload + "x");
+    }
+
+    // Returns the p99 of the requests served after the warm-up, in milliseconds
+    private static double run(boolean gateway, double overload, int seconds) throws Exception {
+        double capacity = WORKERS * 1e9 / SERVICE_NANOS;
+        int rate = (int) (capacity * overload);
+        ATM[] atms = new ATM[10_000];
+        for (int i = 0; i < atms.length; i++) {
+            atms[i] = new ATM(1e12, "1234", String.format("ACC%09d", i), "Holder");
+        }
+        TransactionGateway gw = gateway ? new TransactionGateway(WORKERS, 10_000, 2, TARGET_LATENCY_MILLIS, 200) : null;
+        ExecutorService plain = gateway ? null : Executors.newFixedThreadPool(WORKERS);
+
+        ConcurrentLinkedQueue<long[]> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong served = new AtomicLong();
+        Map<RejectReason, AtomicLong> reasons = new ConcurrentHashMap<>();
+        Function<ATM, TransactionResult> operation = atm -> {
+            parkUntil(System.nanoTime() + SERVICE_NANOS);
+            return atm.withdraw(1);
+        };
+
+        Random random = new Random(1);
+        long interval = 1_000_000_000L / rate;
+        long start = System.nanoTime();
+        long sent = 0;
+        while (true) {
+            long now = System.nanoTime();
+            if (now - start > seconds * 1_000_000_000L) break;
+            long due = start + sent * interval;
+            if (now < due) {
+                if (due - now > 200_000) LockSupport.parkNanos(100_000);
+                continue;
+            }
+            ATM atm = atms[random.nextInt(atms.length)];
+            long submittedAt = System.nanoTime();
+            CompletableFuture<TransactionResult> future = gw != null ? gw.submit(atm, operation)
+                    : CompletableFuture.supplyAsync(() -> operation.apply(atm), plain);
+            future.thenAccept(result -> {
+                long latency = System.nanoTime() - submittedAt;
+                if (result.isRejected()) {
+                    reasons.computeIfAbsent(result.getRejectReason(), k -> new AtomicLong()).incrementAndGet();
+                } else {
+                    served.incrementAndGet();
+                    latencies.add(new long[]{submittedAt - start, latency});
+                }
+            });
+            sent++;
+        }
+        double sendSeconds = (System.nanoTime() - start) / 1e9;
+        if (gw != null) {
+            gw.close();
+        } else {
+            plain.shutdownNow();
+            plain.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        List<Long> steady = new ArrayList<>();
+        for (long[] sample : latencies) {
+            if (sample[0] > WARM_UP_NANOS) steady.add(sample[1]);
+        }
+        Collections.sort(steady);
+        double p50 = percentile(steady, 0.50), p99 = percentile(steady, 0.99);
+        System.out.printf("%-7s at %.1fx (%,d req/s offered, capacity ~%,.0f/s): sent %,d, served %,d, rejected %s%n",
+                gateway ? "gateway" : "plain", overload, rate, capacity, sent, served.get(), reasons);
+        System.out.printf("        served after warm-up: p50 %.1f ms, p99 %.1f ms; goodput %,.0f/s%s%n",
+                p50, p99, served.get() / sendSeconds, gw != null ? ", final limit " + gw.getLimit() : "");
+        return p99;
+    }
+
+    // Each completion submits the next request for the same account
+    private static void checkResubmitFromCallback(boolean expire) throws InterruptedException {
+        TransactionGateway gw = new TransactionGateway(1, 16, 1, 1000, expire ? 0 : 10_000);
+        ATM atm = new ATM(1e6, "1234", "ACC000000001", "Holder");
+        int rounds = 200;
+        CountDownLatch done = new CountDownLatch(rounds);
+        AtomicInteger busy = new AtomicInteger();
+        chain(gw, atm, done, busy);
+        check(done.await(10, TimeUnit.SECONDS), "resubmission chain stalled");
+        check(busy.get() == 0, busy.get() + " resubmissions rejected as ACCOUNT_BUSY" + (expire ? " after EXPIRED" : ""));
+        gw.close();
+    }
+
+    private static void chain(TransactionGateway gw, ATM atm, CountDownLatch done, AtomicInteger busy) {
+        gw.submit(atm, a -> a.deposit(1)).thenAccept(result -> {
+            if (result.getRejectReason() == RejectReason.ACCOUNT_BUSY) busy.incrementAndGet();
+            done.countDown();
+            if (done.getCount() > 0) chain(gw, atm, done, busy);
+        });
+    }
+
+    private static double percentile(List<Long> sorted, double p) {
+        return sorted.isEmpty() ? 0 : sorted.get((int) (sorted.size() * p)) / 1e6;
+    }
+
+    private static void parkUntil(long deadline) {
+        while (true) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) return;
+            LockSupport.parkNanos(left);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
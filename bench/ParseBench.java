@@ -0,0 +1,99 @@
+import java.nio.charset.StandardCharsets;
+
+// Cost of InputParser.parseAmount against Double.parseDouble with a caught exception, for
+// valid and invalid input, and of each overload. Also checks expected results for a
+// table of inputs, that the CharSequence, char[] and byte[] overloads agree on all of
+// them, and that surrounding whitespace is dropped exactly where String.trim() drops it.
+//
+//   javac -encoding UTF-8 -d out *.java bench/ParseBench.java
+//   java -cp out ParseBench [iterations]
+public class ParseBench {
+    // Input, then expected result
+    private static final Object[][] CASES = {
+            {"1500", 150_000L}, {"1500.5", 150_050L}, {"0.75", 75L}, {" 12 ", 1200L},
+            {"\t12\r\n", 1200L}, {"\u000012\u001f", 1200L}, {"\u00a012", InputParser.INVALID_CHARACTER},
+            {"1.234", InputParser.TOO_MANY_DECIMALS}, {".5", 50L}, {"5.", 500L}, {".", InputParser.INVALID_CHARACTER},
+            {"", InputParser.EMPTY}, {" \t ", InputParser.EMPTY}, {"abc", InputParser.INVALID_CHARACTER},
+            {"1e5", InputParser.INVALID_CHARACTER}, {"-5", InputParser.INVALID_CHARACTER},
+            {"1000000000000.00", 100_000_000_000_000L}, {"1000000000000.01", InputParser.OUT_OF_RANGE},
+            {"99999999999999999999", InputParser.OUT_OF_RANGE}, {"é1", InputParser.INVALID_CHARACTER}};
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        checkCases();
+
+        String[] valid = {"1500", "250.50", "0.75", "99999.99", "12"};
+        String[] invalid = {"abc", "12a", "", "1.2.3", "--5"};
+        for (int round = 0; round < 3; round++) {
+            time("valid", valid, iterations);
+            time("invalid", invalid, iterations);
+        }
+    }
+
+    private static void checkCases() {
+        for (Object[] c : CASES) {
+            String text = (String) c[0];
+            long expected = (Long) c[1];
+            // Padded so the overloads must respect offset and length
+            String padded = "#" + text + "#";
+            long fromString = InputParser.parseAmount(text);
+            long fromChars = InputParser.parseAmount(padded.toCharArray(), 1, text.length());
+            long fromBytes = InputParser.parseAmount(padded.getBytes(StandardCharsets.ISO_8859_1), 1, text.length());
+            check(fromString == expected, "'" + text + "' parsed as " + fromString + ", expected " + expected);
+            check(fromChars == expected && fromBytes == expected,
+                    "overloads disagree on '" + text + "': " + fromString + " " + fromChars + " " + fromBytes);
+            boolean trimsToEmpty = text.trim().isEmpty();
+            check(trimsToEmpty == (expected == InputParser.EMPTY), "'" + text + "' trimmed unlike String.trim()");
+        }
+        check(InputParser.parseAmount((CharSequence) null) == InputParser.EMPTY, "null not EMPTY");
+        check(InputParser.validateAccountNumber("\tACC123456782\n", true) == InputParser.ACCOUNT_OK,
+                "account number with surrounding whitespace rejected");
+        check(InputParser.validateAccountNumber("ACC123456789", true) == InputParser.ACCOUNT_CHECK_DIGIT,
+                "bad check digit accepted");
+        System.out.println(CASES.length + " inputs, three overloads agree, trim() semantics: OK");
+    }
+
+    private static void time(String label, String[] inputs, int iterations) {
+        char[][] chars = new char[inputs.length][];
+        byte[][] bytes = new byte[inputs.length][];
+        for (int i = 0; i < inputs.length; i++) {
+            chars[i] = inputs[i].toCharArray();
+            bytes[i] = inputs[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        long sink = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += parseDouble(inputs[i % inputs.length]);
+        }
+        long t1 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += InputParser.parseAmount(inputs[i % inputs.length]);
+        }
+        long t2 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            char[] c = chars[i % inputs.length];
+            sink += InputParser.parseAmount(c, 0, c.length);
+        }
+        long t3 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte[] b = bytes[i % inputs.length];
+            sink += InputParser.parseAmount(b, 0, b.length);
+        }
+        long t4 = System.nanoTime();
+        System.out.printf("%-7s parseDouble+catch %6.1f ns, String %5.1f ns, char[] %5.1f ns, byte[] %5.1f ns%s%n",
+                label, (t1 - t0) / (double) iterations, (t2 - t1) / (double) iterations,
+                (t3 - t2) / (double) iterations, (t4 - t3) / (double) iterations, sink == 42 ? " " : "");
+    }
+
+    private static long parseDouble(String text) {
+        try {
+            return Math.round(Double.parseDouble(text) * 100);
+        } catch (NumberFormatException e) {
+            return InputParser.INVALID_CHARACTER;
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Balance read throughput on one hot account from 1 to 32 threads, at 95/5 and 99/1
+// read/write mixes. Writers alternate deposits and withdrawals of 1 and, one time in
+// fifty, enter a PIN, so PBKDF2 and the listener calls are part of the write load. A
+// listener checks that commits arrive in order and that the final balance adds up.
+//
+//   javac -encoding UTF-8 -d out *.java bench/ReadBench.java
+//   java -cp out ReadBench [millis per run]
+public class ReadBench {
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        System.out.printf("cores: %d%n", Runtime.getRuntime().availableProcessors());
+
+        for (int readPercent : new int[]{95, 99}) {
+            for (int threads = 1; threads <= 32; threads *= 2) {
+                run(readPercent, threads, millis);
+            }
+        }
+    }
+
+    private static void run(int readPercent, int threads, long millis) throws InterruptedException {
+        double opening = 1_000_000_000.0;
+        ATM atm = new ATM(opening, PinHash.hash("1234"), "ACC123456789", "Bench");
+        OrderCheck order = new OrderCheck(opening);
+        atm.addTransactionListener(order);
+
+        LongAdder reads = new LongAdder();
+        LongAdder writes = new LongAdder();
+        LongAdder pins = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long r = 0, w = 0, p = 0;
+                double sink = 0;
+                while (!stop.get()) {
+                    if (random.nextInt(100) < readPercent) {
+                        sink += atm.getBalance();
+                        r++;
+                    } else if (random.nextInt(50) == 0) {
+                        check(atm.validatePin("1234"), "correct PIN rejected");
+                        p++;
+                    } else {
+                        check((w & 1) == 0 ? atm.deposit(1).isSuccess() : atm.withdraw(1).isSuccess(),
+                                "write failed");
+                        w++;
+                    }
+                }
+                reads.add(r);
+                writes.add(w);
+                pins.add(p);
+                if (sink == 42) System.out.print("");
+            });
+            workers[t].start();
+        }
+        Thread.sleep(millis);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        check(order.commits == writes.sum(), "listener saw " + order.commits + " commits, expected " + writes.sum());
+        check(order.outOfOrder == 0, order.outOfOrder + " commits delivered out of order");
+        check(atm.getBalance() == order.lastBalance, "balance does not match the last commit");
+        check(atm.getTransactionHistory().size() == writes.sum(), "history size does not match the writes");
+
+        double seconds = millis / 1e3;
+        System.out.printf("%d/%d  %2d threads: reads %7.1f M/s  writes %6.2f M/s  PIN checks %,6.0f/s%n",
+                readPercent, 100 - readPercent, threads, reads.sum() / seconds / 1e6,
+                writes.sum() / seconds / 1e6, pins.sum() / seconds);
+    }
+
+    // Each commit must build on the balance of the one before it
+    private static final class OrderCheck implements TransactionListener {
+        double lastBalance;
+        long commits;
+        long outOfOrder;
+
+        OrderCheck(double opening) {
+            this.lastBalance = opening;
+        }
+
+        @Override
+        public void onCommit(String accountNumber, Transaction transaction) {
+            double expected = transaction.getType().equals("DEPOSIT")
+                    ? lastBalance + transaction.getAmount() : lastBalance - transaction.getAmount();
+            if (expected != transaction.getBalanceAfter()) outOfOrder++;
+            lastBalance = transaction.getBalanceAfter();
+            commits++;
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.function.Consumer;
+
+// Throughput of ReconciliationEngine over a generated ledger whose history is produced
+// on the fly, so the run measures the engine and not the storage. Some accounts carry
+// planted faults: a broken chain in the middle, a wrong stored balance, or a balance
+// changed before the first entry. The report must list exactly those. Live accounts,
+// accounts loaded from a repository, and a snapshot image that keeps only part of the
+// history are checked as well.
+//
+//   javac -encoding UTF-8 -d out *.java bench/ReconciliationBench.java
+//   java -cp out ReconciliationBench [accounts] [entries per account]
+public class ReconciliationBench {
+    private static final long OPENING_PAISE = 100_000;
+    private static final long STEP_PAISE = 200;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int perAccount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        GeneratedLedger ledger = new GeneratedLedger(accounts, perAccount);
+        StringWriter report = new StringWriter();
+        Runtime runtime = Runtime.getRuntime();
+        ReconciliationSummary summary = new ReconciliationEngine().reconcile(ledger, report);
+        System.out.printf("%s: %.1f M entries/s, heap %d MB%n", summary,
+                summary.getEntries() / (Math.max(1, summary.getElapsedMillis()) * 1e3),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+
+        long expected = 0;
+        for (int i = 0; i < accounts; i++) {
+            if (i % 777 == 0) expected++;
+            if (i % 1000 == 0) expected++;
+            if (i % 1009 == 0) expected++;
+        }
+        check(summary.getAccounts() == accounts, "accounts checked: " + summary.getAccounts());
+        check(summary.getEntries() == (long) accounts * perAccount, "entries checked: " + summary.getEntries());
+        check(summary.getDiscrepancies() == expected,
+                summary.getDiscrepancies() + " discrepancies, expected " + expected);
+        check(report.toString().contains("ACC100001009,CHAIN_BREAK,0,"), "changed opening balance not reported at entry 0");
+        System.out.println("planted faults found: OK");
+
+        checkLiveAccounts();
+        checkStoredAccounts();
+    }
+
+    private static void checkLiveAccounts() {
+        ATM clean = new ATM(1000, "1234", "ACC000000001", "Clean");
+        check(ReconciliationEngine.verify(clean, new StringWriter()), "new account flagged");
+        clean.deposit(50);
+        clean.withdraw(20);
+        check(ReconciliationEngine.verify(clean, new StringWriter()), "clean account flagged");
+
+        // Changed before any transaction: only the opening balance can tell
+        ATM early = new ATM(1000, "1234", "ACC000000002", "Early");
+        early.setBalance(5000);
+        check(!ReconciliationEngine.verify(early, new StringWriter()), "balance changed with no history not flagged");
+        early.deposit(50);
+        StringWriter report = new StringWriter();
+        check(!ReconciliationEngine.verify(early, report), "balance changed before the first entry not flagged");
+        check(report.toString().contains("ACC000000002,CHAIN_BREAK,0,"), "not reported at entry 0: " + report);
+        System.out.println("live accounts: OK");
+    }
+
+    // The opening balance survives a repository round trip and a snapshot that drops old history
+    private static void checkStoredAccounts() throws Exception {
+        InMemoryAccountRepository repository = new InMemoryAccountRepository();
+        repository.saveAccount(new AccountRecord("ACC000000003", "Stored", 700, false, 0));
+        repository.savePin("ACC000000003", "1234");
+        ATM atm = repository.loadAtm("ACC000000003");
+        for (int i = 0; i < 20; i++) {
+            atm.deposit(10);
+        }
+        check(reconcile(repository) == 0, "stored account flagged");
+        ATM reloaded = repository.loadAtm("ACC000000003");
+        check(reloaded.getOpeningBalance() == 700, "opening balance lost: " + reloaded.getOpeningBalance());
+        check(ReconciliationEngine.verify(reloaded, new StringWriter()), "reloaded account flagged");
+
+        Path image = Files.createTempFile("reconcile", ".snap");
+        try {
+            SnapshotWriter.write(repository, image, 5);
+            try (SnapshotAccountRepository snapshot = new SnapshotAccountRepository(image)) {
+                check(reconcile(snapshot) == 0, "snapshot with a shortened history flagged");
+                ATM fromImage = snapshot.loadAtm("ACC000000003");
+                fromImage.withdraw(30);
+                check(reconcile(snapshot) == 0, "snapshot account flagged after a new transaction");
+            }
+        } finally {
+            Files.deleteIfExists(image);
+        }
+        System.out.println("stored accounts and snapshots: OK");
+    }
+
+    private static long reconcile(AccountRepository repository) {
+        Writer report = new StringWriter();
+        ReconciliationSummary summary = new ReconciliationEngine(2, 16, 4).reconcile(repository, report);
+        return summary.getDiscrepancies();
+    }
+
+    // Deposits of 2.00 from an opening balance of 1000.00, with faults on some accounts
+    private static final class GeneratedLedger extends InMemoryAccountRepository {
+        private final int accounts;
+        private final int perAccount;
+
+        GeneratedLedger(int accounts, int perAccount) {
+            this.accounts = accounts;
+            this.perAccount = perAccount;
+        }
+
+        @Override
+        public void forEachAccount(Consumer<AccountRecord> consumer) {
+            for (int i = 0; i < accounts; i++) {
+                long balance = OPENING_PAISE + (long) perAccount * STEP_PAISE;
+                if (i % 777 == 0) balance += 5;       // carried by the broken chain
+                if (i % 1000 == 0) balance += 1;      // stored balance off by a paisa
+                if (i % 1009 == 0) balance += 10_000; // changed before the first entry
+                consumer.accept(new AccountRecord("ACC" + (100_000_000 + i), "Holder",
+                        Money.fromPaise(balance), false, 0, BankCurrency.INR,
+                        Money.fromPaise(OPENING_PAISE)));
+            }
+        }
+
+        @Override
+        public void forEachTransaction(String accountNumber, Consumer<Transaction> consumer) {
+            int i = Integer.parseInt(accountNumber.substring(3)) - 100_000_000;
+            long balance = OPENING_PAISE + (i % 1009 == 0 ? 10_000 : 0);
+            Date time = new Date(0);
+            for (int k = 0; k < perAccount; k++) {
+                balance += STEP_PAISE;
+                if (i % 777 == 0 && k == perAccount / 2) balance += 5;
+                consumer.accept(new Transaction("DEPOSIT", Money.fromPaise(STEP_PAISE),
+                        Money.fromPaise(balance), time));
+            }
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,109 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Random;
+
+// Replication throughput from a ReplicationSender to an in-process StandbyLedger on the
+// loopback interface, for a few batch sizes. After each run the standby is promoted and
+// its balances must match the primary's. Also checks that an oversized frame marks the
+// stream broken and that a standby which stops reading breaks replication within the
+// enqueue timeout instead of blocking writers for good.
+//
+//   javac -encoding UTF-8 -d out *.java bench/ReplicationBench.java
+//   java -cp out ReplicationBench [transactions]
+public class ReplicationBench {
+    public static void main(String[] args) throws Exception {
+        int transactions = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        for (int batchSize : new int[]{64, 1024, ReplicationProtocol.MAX_BATCH}) {
+            run(transactions, batchSize);
+        }
+        checkOversizedFrame();
+        checkStalledStandby();
+    }
+
+    private static void run(int transactions, int batchSize) throws Exception {
+        StandbyLedger standby = new StandbyLedger(0);
+        ReplicationSender sender = new ReplicationSender("127.0.0.1", standby.getPort(), 65_536, batchSize);
+        int accounts = 1000;
+        ATM[] atms = new ATM[accounts];
+        for (int i = 0; i < accounts; i++) {
+            atms[i] = new ATM(1e9, "1234", "ACC" + (100_000_000 + i), "Holder");
+            atms[i].addTransactionListener(sender);
+        }
+
+        Random random = new Random(1);
+        long maxLag = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < transactions; i++) {
+            ATM atm = atms[random.nextInt(accounts)];
+            if ((i & 1) == 0) {
+                atm.deposit(10 + random.nextInt(100));
+            } else {
+                atm.withdraw(5 + random.nextInt(50));
+            }
+            if ((i & 8191) == 0) maxLag = Math.max(maxLag, sender.getReplicaLagRecords());
+        }
+        check(sender.awaitCaughtUp(60_000), "standby did not catch up: " + sender.getFailure());
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("batch %5d: %,d records in %.2f s = %.2f M/s, %,d frames, max lag %,d records%n",
+                batchSize, sender.getAckedCount(), seconds, sender.getAckedCount() / seconds / 1e6,
+                sender.getSentFrames(), maxLag);
+        sender.close();
+
+        Map<String, Double> promoted = standby.promote();
+        check(promoted.size() == accounts, "standby holds " + promoted.size() + " accounts");
+        for (ATM atm : atms) {
+            check(promoted.get(atm.getAccountNumber()) == atm.getBalance(), "balance differs for " + atm.getAccountNumber());
+        }
+        check(standby.getStreamErrorCount() == 0, "stream errors: " + standby.getLastStreamError());
+    }
+
+    // A frame header announcing more than MAX_PAYLOAD bytes is rejected before anything is allocated
+    private static void checkOversizedFrame() throws Exception {
+        StandbyLedger standby = new StandbyLedger(0);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), standby.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(ReplicationProtocol.FRAME_MAGIC);
+            out.writeLong(1);
+            out.writeInt(1);
+            out.writeInt(Integer.MAX_VALUE);
+            out.flush();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (standby.getStreamErrorCount() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+        check(standby.getStreamFailure() != null && standby.getStreamFailure().contains("exceeds"),
+                "oversized frame accepted: " + standby.getStreamFailure());
+        check(standby.getStreamErrorCount() == 1, "stream error not counted");
+        standby.close();
+        System.out.println("oversized frame rejected: OK");
+    }
+
+    // The standby accepts the connection and never reads; writers must not hang
+    private static void checkStalledStandby() throws Exception {
+        try (ServerSocket stalled = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            ReplicationSender sender = new ReplicationSender("127.0.0.1", stalled.getLocalPort(), 16, 16, 200);
+            ATM atm = new ATM(1e9, "1234", "ACC100000001", "Holder");
+            atm.addTransactionListener(sender);
+            String filler = String.format("%0200d", 0);
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 1_000_000 && sender.isHealthy(); i++) {
+                atm.addTransaction("TRANSFER TO " + filler, 1);
+            }
+            check(!sender.isHealthy(), "replication still healthy with a stalled standby");
+            check(System.currentTimeMillis() - start < 30_000, "writers were held up too long");
+            System.out.println("stalled standby: replication marked broken after "
+                    + (System.currentTimeMillis() - start) + " ms (" + sender.getFailure().getMessage() + ")");
+            check(atm.deposit(1).isSuccess(), "writes fail after replication broke");
+            sender.close();
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Measures TransferScheduler schedule/cancel cost and memory per standing order, and the
+// per-transfer cost of running a due batch. Also checks TimingWheel deadlines against
+// random schedules with cancellations.
+//
+//   javac -encoding UTF-8 -d out *.java bench/SchedulerBench.java
+//   java -Xmx2g -cp out SchedulerBench [orders]
+public class SchedulerBench {
+    public static void main(String[] args) {
+        int orders = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        checkWheel();
+
+        ATM source = new ATM(1e15, "1234", "ACC100000001", "Bench Source");
+        Runtime rt = Runtime.getRuntime();
+        TransferScheduler scheduler = new TransferScheduler(1000, 10_000);
+        long now = System.currentTimeMillis();
+        StandingOrder[] scheduled = new StandingOrder[orders];
+
+        System.gc();
+        long before = rt.totalMemory() - rt.freeMemory();
+        long start = System.nanoTime();
+        for (int i = 0; i < orders; i++) {
+            scheduled[i] = scheduler.scheduleRecurring(source, "ACC987654321", 1,
+                    now + 86_400_000L + (i % 100_000) * 1000L, 30L * 86_400_000L, 0);
+        }
+        long scheduleNanos = System.nanoTime() - start;
+        System.gc();
+        long after = rt.totalMemory() - rt.freeMemory();
+
+        start = System.nanoTime();
+        for (int i = 0; i < orders; i += 2) {
+            scheduler.cancel(scheduled[i]);
+        }
+        long cancelNanos = System.nanoTime() - start;
+        System.out.printf("%d standing orders: schedule %.0f ns/op, cancel %.0f ns/op, %.0f bytes/order, %d pending%n",
+                orders, scheduleNanos / (double) orders, cancelNanos / (orders / 2.0),
+                (after - before) / (double) orders, scheduler.getPendingCount());
+
+        TransferScheduler batch = new TransferScheduler(10, 1000);
+        long base = System.currentTimeMillis();
+        for (int i = 0; i < 200_000; i++) {
+            batch.scheduleOnce(source, "ACC987654321", 1, base + 5);
+        }
+        start = System.nanoTime();
+        int ran = batch.runDue(base + 1000);
+        System.out.printf("ran %d due transfers at %.0f ns each%n", ran, (System.nanoTime() - start) / (double) ran);
+
+        checkFailureIsolation();
+    }
+
+    // Random deadlines must fire within one advance step of being due, and never early
+    private static void checkWheel() {
+        TimingWheel<long[]> wheel = new TimingWheel<>(1, 0);
+        Random random = new Random(3);
+        List<TimingWheel.Timeout<long[]>> all = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            long deadline = 1 + (long) (Math.pow(random.nextDouble(), 3) * 5_000_000);
+            all.add(wheel.schedule(new long[]{deadline}, deadline));
+        }
+        for (int i = 0; i < 50_000; i++) {
+            wheel.cancel(all.get(i));
+        }
+        long[] now = new long[1];
+        int[] fired = new int[1];
+        int[] wrong = new int[1];
+        for (long t = 0; t <= 5_000_100; t += random.nextInt(700)) {
+            now[0] = t;
+            wheel.advanceTo(t, d -> {
+                fired[0]++;
+                if (d[0] > now[0] || d[0] <= now[0] - 700) wrong[0]++;
+            });
+        }
+        System.out.println("wheel check: fired=" + fired[0] + " wrong=" + wrong[0] + " left=" + wheel.size());
+    }
+
+    // One order that throws must not stop the others in its batch
+    private static void checkFailureIsolation() {
+        ATM good = new ATM(1000, "1234", "ACC100000002", "Good");
+        ATM broken = new ATM(1000, "1234", "ACC100000003", "Broken") {
+            @Override
+            public TransactionResult transfer(double amount, String targetAccount) {
+                throw new IllegalStateException("account closed");
+            }
+        };
+        TransferScheduler scheduler = new TransferScheduler(10, 2);
+        long base = System.currentTimeMillis();
+        StandingOrder failing = scheduler.scheduleOnce(broken, "ACC987654321", 1, base + 5);
+        StandingOrder ok = scheduler.scheduleOnce(good, "ACC987654321", 1, base + 5);
+        scheduler.runDue(base + 1000);
+        System.out.println("failure isolation: failing error=" + failing.getLastError().getMessage()
+                + ", other ran=" + ok.getLastResult().isSuccess()
+                + ", cancel after firing=" + scheduler.cancel(ok));
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.List;
+import java.util.Random;
+
+// Build time, size and query latency of AccountSearchIndex over a synthetic ledger of
+// Indian and English holder names, plus the cost of incremental renames, inserts and
+// balance-only saves through IndexedAccountRepository.
+//
+//   javac -encoding UTF-8 -d out *.java bench/SearchBench.java
+//   java -Xmx4g -cp out SearchBench [accounts]
+public class SearchBench {
+    private static final String[] FIRST = {
+            "John", "Jane", "Rahul", "Priya", "Amit", "Sneha", "Vikram", "Anita", "Mohammed", "Fatima",
+            "Arjun", "Kavya", "Suresh", "Lakshmi", "Rohan", "Meera", "Daniel", "Sarah", "Ravi", "Pooja",
+            "Karan", "Divya", "Nikhil", "Asha", "Joseph", "Maria", "Imran", "Zara", "Sanjay", "Neha"};
+    private static final String[] LAST = {
+            "Sharma", "Patel", "Singh", "Kumar", "Reddy", "Iyer", "Nair", "Gupta", "Khan", "Das",
+            "Mehta", "Joshi", "Rao", "Verma", "Smith", "Fernandes", "Pillai", "Bose", "Chopra", "Kapoor",
+            "Menon", "Agarwal", "Banerjee", "Mishra", "Shetty", "Desai", "Malhotra", "Sinha", "Pandey", "Thomas"};
+
+    // Kind of query, then the query text
+    private static final String[][] QUERIES = {
+            {"prefix", "jo"}, {"prefix", "priya sh"}, {"prefix", "moh khan"}, {"prefix", "zara thomas"},
+            {"account", "ac"}, {"account", "0000791"}, {"account", "12345"}, {"account", "ACC000063352"},
+            {"fuzzy", "jon smtih"}, {"fuzzy", "priya sharmaa"}, {"fuzzy", "mohamed kan"}, {"fuzzy", "sara fernandez"}};
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        Random random = new Random(42);
+        InMemoryAccountRepository repository = new InMemoryAccountRepository();
+        for (int i = 0; i < accounts; i++) {
+            repository.saveAccount(new AccountRecord(account(i), holderName(random), 100, false, 0));
+        }
+
+        long before = usedMemory();
+        long start = System.nanoTime();
+        AccountSearchIndex index = AccountSearchIndex.build(repository);
+        long buildNanos = System.nanoTime() - start;
+        System.out.printf("%,d accounts: build %d ms, index ~%d MB%n",
+                index.size(), buildNanos / 1_000_000, (usedMemory() - before) >> 20);
+
+        for (String[] query : QUERIES) {
+            List<SearchHit> hits = null;
+            for (int i = 0; i < 50; i++) {
+                hits = search(index, query);
+            }
+            int reps = 200;
+            start = System.nanoTime();
+            for (int i = 0; i < reps; i++) {
+                hits = search(index, query);
+            }
+            double micros = (System.nanoTime() - start) / 1e3 / reps;
+            System.out.printf("%-7s %-16s %8.1f us  %2d hits  %s%n", query[0], "'" + query[1] + "'",
+                    micros, hits.size(), hits.isEmpty() ? "" : hits.get(0));
+        }
+
+        IndexedAccountRepository indexed = new IndexedAccountRepository(repository, index);
+        int updates = 100_000;
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            String name = i % 2 == 0 ? "Renamed Person" + (i % 100) : "Zara Thomas";
+            indexed.saveAccount(new AccountRecord(account(i), name, 1, false, 0));
+        }
+        System.out.printf("%,d renames: %.2f us each%n", updates, (System.nanoTime() - start) / 1e3 / updates);
+
+        int sizeBefore = index.size();
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            String name = i % 2 == 0 ? "Renamed Person" + (i % 100) : "Zara Thomas";
+            indexed.saveAccount(new AccountRecord(account(i), name, 2 + i, false, 0));
+        }
+        System.out.printf("%,d balance-only saves: %.2f us each%n", updates, (System.nanoTime() - start) / 1e3 / updates);
+        check(index.size() == sizeBefore, "balance-only saves changed the index size");
+        check(index.contains(account(2), "Renamed Person2"), "unchanged name dropped from the index");
+
+        start = System.nanoTime();
+        for (int i = 0; i < updates; i++) {
+            indexed.saveAccount(new AccountRecord(String.format("ACC9%08d", i), "New Customer " + i, 1, false, 0));
+        }
+        System.out.printf("%,d inserts: %.2f us each, index size %,d%n",
+                updates, (System.nanoTime() - start) / 1e3 / updates, index.size());
+
+        // The updates must be visible to queries straight away
+        check(!index.searchNamePrefix("renamed pers", 3).isEmpty(), "renamed holder not found by prefix");
+        check(!index.searchAccountNumber("ACC900000042", 5).isEmpty(), "inserted account not found");
+        check(!index.searchNameFuzzy("new custmer 42", 3, 0.4).isEmpty(), "inserted holder not found by fuzzy search");
+        index.remove("ACC900000042");
+        check(index.searchAccountNumber("ACC900000042", 5).isEmpty(), "removed account still found");
+        System.out.println("incremental updates visible to queries: OK");
+    }
+
+    private static List<SearchHit> search(AccountSearchIndex index, String[] query) {
+        switch (query[0]) {
+            case "prefix": return index.searchNamePrefix(query[1], 20);
+            case "account": return index.searchAccountNumber(query[1], 20);
+            default: return index.searchNameFuzzy(query[1], 10, 0.4);
+        }
+    }
+
+    // Spread over the whole number range, like real account numbers
+    private static String account(int i) {
+        return String.format("ACC%09d", (i * 7919L) % 1_000_000_000L);
+    }
+
+    // "First Last", sometimes with a middle initial or a double-barrelled surname
+    private static String holderName(Random random) {
+        StringBuilder name = new StringBuilder(FIRST[random.nextInt(FIRST.length)]).append(' ');
+        if (random.nextInt(4) == 0) {
+            name.append((char) ('A' + random.nextInt(26))).append(". ");
+        }
+        name.append(LAST[random.nextInt(LAST.length)]);
+        if (random.nextInt(10) == 0) {
+            name.append('-').append(LAST[random.nextInt(LAST.length)]);
+        }
+        return name.toString();
+    }
+
+    private static long usedMemory() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,159 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Throughput of SessionManager.validate and open from 1 to 8 threads, with one stripe
+// against sixteen, and the cost of expiring a large population. Also checks that an idle
+// session expires, that use keeps a session alive until its absolute timeout, that the
+// wheel reschedules used sessions instead of dropping them, that closed and unknown tokens
+// are refused, and that the background reaper expires sessions nobody validates.
+//
+//   javac -encoding UTF-8 -d out *.java bench/SessionBench.java
+//   java -cp out SessionBench [sessions] [validations per thread]
+public class SessionBench {
+    private static final ATM ACCOUNT = new ATM(1, "1234", "ACC000000001", "Holder");
+
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        checkIdleTimeout();
+        checkAbsoluteTimeout();
+        checkClose();
+        checkReaper();
+
+        System.out.printf("cores: %d%n", Runtime.getRuntime().availableProcessors());
+        for (int stripes : new int[] {1, 16}) {
+            SessionManager manager = new SessionManager(60_000, 600_000, stripes);
+            String[] tokens = new String[sessions];
+            long start = System.nanoTime();
+            for (int i = 0; i < sessions; i++) {
+                tokens[i] = manager.open(ACCOUNT).getToken();
+            }
+            System.out.printf("%d stripes: open %.0f ns%n", stripes, (System.nanoTime() - start) / (double) sessions);
+            AtomicInteger opened = new AtomicInteger(sessions);
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                validations(manager, tokens, opened, threads, perThread);
+            }
+            check(manager.getActiveCount() == opened.get(), "active " + manager.getActiveCount() + " of " + opened.get());
+            start = System.nanoTime();
+            int expired = manager.expire(System.currentTimeMillis() + 61_000);
+            check(expired == manager.getExpiredCount() && manager.getActiveCount() == 0, "expired " + expired
+                    + ", still active " + manager.getActiveCount());
+            System.out.printf("%d stripes: expired %,d sessions in %.1f ms%n", stripes, expired,
+                    (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    // Each thread validates random tokens and opens one session per thousand validations
+    private static void validations(SessionManager manager, String[] tokens, AtomicInteger opened, int threads, int perThread)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int valid = 0;
+                for (int i = 0; i < perThread; i++) {
+                    if (manager.validate(tokens[random.nextInt(tokens.length)]) != null) valid++;
+                    if (i % 1000 == 0) {
+                        manager.open(ACCOUNT);
+                        opened.incrementAndGet();
+                    }
+                }
+                return valid;
+            }));
+        }
+        long valid = 0;
+        for (Future<Integer> future : futures) {
+            valid += future.get();
+        }
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+        check(valid == (long) threads * perThread, (threads * (long) perThread - valid) + " live sessions refused");
+        System.out.printf("  %d threads: %,.0f validations/s%n", threads, threads * (double) perThread / nanos * 1e9);
+    }
+
+    private static void checkIdleTimeout() throws Exception {
+        SessionManager manager = new SessionManager(300, 3000, 4);
+        Session session = manager.open(ACCOUNT);
+        check(manager.validate(session.getToken()) == session, "fresh session refused");
+        Thread.sleep(450);
+        check(manager.validate(session.getToken()) == null, "idle session accepted");
+        check(session.isClosed() && manager.getActiveCount() == 0 && manager.getExpiredCount() == 1,
+                "idle session not dropped");
+
+        // Left to the wheel: an idle session goes, one in use is rescheduled and stays
+        Session idle = manager.open(ACCOUNT);
+        Session used = manager.open(ACCOUNT);
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(100);
+            check(manager.validate(used.getToken()) == used, "session in use refused");
+            manager.expire(System.currentTimeMillis());
+        }
+        check(idle.isClosed() && !used.isClosed() && manager.getActiveCount() == 1,
+                "wheel expired " + (used.isClosed() ? "the used session" : "nothing"));
+        System.out.println("idle timeout, by validate and by the wheel: OK");
+    }
+
+    private static void checkAbsoluteTimeout() throws Exception {
+        SessionManager manager = new SessionManager(300, 700, 4);
+        Session session = manager.open(ACCOUNT);
+        while (System.currentTimeMillis() < session.getCreatedAt() + 550) {
+            Thread.sleep(100);
+            check(manager.validate(session.getToken()) == session, "session in use refused before its absolute timeout");
+            manager.expire(System.currentTimeMillis());
+        }
+        Thread.sleep(250);
+        manager.expire(System.currentTimeMillis());
+        check(session.isClosed() && manager.validate(session.getToken()) == null, "session outlived its absolute timeout");
+        System.out.println("absolute timeout despite use: OK");
+    }
+
+    private static void checkClose() {
+        SessionManager manager = new SessionManager(60_000, 600_000, 4);
+        Session session = manager.open(ACCOUNT);
+        check(session.getAccount() == ACCOUNT && session.getToken().length() == 24, "token " + session.getToken());
+        check(!session.getToken().equals(manager.open(ACCOUNT).getToken()), "token reused");
+        manager.close(session.getToken());
+        check(manager.validate(session.getToken()) == null && session.isClosed(), "closed session accepted");
+        check(manager.validate(null) == null && manager.validate("unknown") == null, "unknown token accepted");
+        manager.close(session.getToken());
+        check(manager.getActiveCount() == 1 && manager.expire(System.currentTimeMillis() + 62_000) == 1,
+                "closed session left on the wheel");
+        try {
+            new SessionManager(1000, 500, 4);
+            throw new AssertionError("absolute timeout below the idle timeout accepted");
+        } catch (IllegalArgumentException expected) {
+            // Rejected, as it should be
+        }
+        System.out.println("close, unknown tokens and bad timeouts: OK");
+    }
+
+    private static void checkReaper() throws Exception {
+        SessionManager manager = new SessionManager(200, 2000, 4);
+        manager.start();
+        try {
+            for (int i = 0; i < 1000; i++) {
+                manager.open(ACCOUNT);
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (manager.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            check(manager.getActiveCount() == 0 && manager.getExpiredCount() == 1000,
+                    "reaper left " + manager.getActiveCount() + " sessions");
+        } finally {
+            manager.stop();
+        }
+        System.out.println("background reaper: OK");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
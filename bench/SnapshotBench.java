@@ -0,0 +1,276 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+// Startup time of SnapshotAccountRepository against replaying a log into the in-memory
+// store: both hold the same generated ledger, and each is timed from open until the first
+// withdrawal on the last account is served. Random accounts are then read back from the
+// image and checked against the generator. Also checks a small round trip with an overlay,
+// that an abandoned write leaves the old image in place, that PINs are stored hashed, and
+// that accounts kept in a durable overlay are found again when the image is reopened.
+//
+// The durable overlay check needs a JDBC driver, e.g. the H2 jar; without one it uses an
+// in-memory overlay that outlives the repository instead.
+//   javac -encoding UTF-8 -d out *.java bench/SnapshotBench.java
+//   java -Xmx8g -cp out:h2.jar SnapshotBench [accounts]
+public class SnapshotBench {
+    private static final long BASE_MILLIS = 1_700_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Path dir = Files.createTempDirectory("snapshot-bench");
+        try {
+            // PBKDF2 is slow, so every generated account shares one hash
+            String pin = PinHash.hash("1234");
+            Path image = dir.resolve("accounts.snap");
+            Path log = dir.resolve("accounts.log");
+            generate(accounts, pin, image, log);
+
+            long opened = startSnapshot(image, accounts);
+            long replayed = startReplay(log, accounts);
+            System.out.printf("startup: snapshot %.1f ms, replay %.1f ms (%.0fx)%n",
+                    opened / 1e6, replayed / 1e6, (double) replayed / opened);
+
+            checkRoundTrip(dir);
+            checkAbandonedWrite(dir);
+            checkDurableOverlay(dir);
+        } finally {
+            try (java.util.stream.Stream<Path> files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    // Two transactions per account, written both as an image and as a replay log
+    private static void generate(int accounts, String pin, Path image, Path log) throws IOException {
+        long start = System.nanoTime();
+        try (SnapshotWriter writer = new SnapshotWriter(image, 10);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(log), 1 << 20))) {
+            for (int i = 0; i < accounts; i++) {
+                AccountRecord record = record(i);
+                List<Transaction> history = history(i);
+                writer.add(record, pin, history);
+                out.writeUTF(record.getAccountNumber());
+                out.writeUTF(record.getHolderName());
+                out.writeUTF(pin);
+                out.writeLong(Money.toPaise(record.getBalance()));
+                out.writeByte(history.size());
+                for (Transaction transaction : history) {
+                    out.writeUTF(transaction.getType());
+                    out.writeLong(Money.toPaise(transaction.getAmount()));
+                    out.writeLong(Money.toPaise(transaction.getBalanceAfter()));
+                    out.writeLong(transaction.getTimestamp().getTime());
+                }
+            }
+            writer.finish();
+        }
+        System.out.printf("generated %,d accounts in %d ms: image %d MB, log %d MB%n", accounts,
+                (System.nanoTime() - start) / 1_000_000, Files.size(image) >> 20, Files.size(log) >> 20);
+    }
+
+    // Returns the nanoseconds until the first request was served
+    private static long startSnapshot(Path image, int accounts) throws IOException {
+        long start = System.nanoTime();
+        try (SnapshotAccountRepository repository = new SnapshotAccountRepository(image)) {
+            long served = serveFirst(repository, accounts) - start;
+            int decoded = repository.getDecodedCount();
+
+            // The last account was just changed by the first request
+            Random random = new Random(1);
+            for (int k = 0; k < 100_000; k++) {
+                int i = random.nextInt(accounts - 1);
+                AccountRecord record = repository.findAccount(account(i));
+                List<Transaction> history = repository.findTransactions(account(i));
+                check(record != null && record.getBalance() == record(i).getBalance()
+                        && record.getHolderName().equals(record(i).getHolderName()), "account " + i + " differs");
+                check(history.size() == 2 && history.get(1).getAmount() == history(i).get(1).getAmount()
+                        && history.get(1).getTimestamp().equals(history(i).get(1).getTimestamp()),
+                        "history of account " + i + " differs");
+            }
+            check(repository.findAccount("ACC-MISSING") == null, "missing account found");
+            check(repository.countAccounts() == accounts, "image counts " + repository.countAccounts());
+            System.out.printf("snapshot: first request served after %.1f ms, %,d accounts decoded%n",
+                    served / 1e6, decoded);
+            return served;
+        }
+    }
+
+    private static long startReplay(Path log, int accounts) throws IOException {
+        long start = System.nanoTime();
+        InMemoryAccountRepository repository = new InMemoryAccountRepository();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log), 1 << 20))) {
+            for (int i = 0; i < accounts; i++) {
+                String accountNumber = in.readUTF();
+                String holder = in.readUTF();
+                String pin = in.readUTF();
+                double balance = Money.fromPaise(in.readLong());
+                int count = in.readByte();
+                List<Transaction> history = new ArrayList<>(count);
+                for (int k = 0; k < count; k++) {
+                    String type = in.readUTF();
+                    double amount = Money.fromPaise(in.readLong());
+                    double after = Money.fromPaise(in.readLong());
+                    history.add(new Transaction(type, amount, after, new Date(in.readLong()), BankCurrency.INR));
+                }
+                repository.saveAccount(new AccountRecord(accountNumber, holder, balance, false, 0, BankCurrency.INR));
+                repository.savePin(accountNumber, pin);
+                repository.appendTransactions(accountNumber, history);
+            }
+        }
+        long served = serveFirst(repository, accounts) - start;
+        System.out.printf("replay: first request served after %.1f ms%n", served / 1e6);
+        return served;
+    }
+
+    private static long serveFirst(AccountRepository repository, int accounts) {
+        ATM atm = repository.loadAtm(account(accounts - 1));
+        check(atm.validatePin("1234"), "PIN rejected");
+        check(atm.withdraw(100).isSuccess(), "first withdrawal failed");
+        return System.nanoTime();
+    }
+
+    // Accounts, PINs and history survive the image, overlay changes win, and a second image folds them in
+    private static void checkRoundTrip(Path dir) throws IOException {
+        InMemoryAccountRepository source = new InMemoryAccountRepository();
+        source.saveAccount(new AccountRecord("ACC000000001", "Asha", 100, false, 0, BankCurrency.USD));
+        source.savePin("ACC000000001", "1111");
+        source.appendTransactions("ACC000000001", Arrays.asList(
+                new Transaction("TRANSFER TO ACC000000009", 5, 95, new Date(BASE_MILLIS), BankCurrency.USD)));
+        source.saveAccount(new AccountRecord("ACC000000002", "Ravi", -0.5, true, 3, BankCurrency.INR));
+        source.savePin("ACC000000002", "2222");
+
+        Path first = dir.resolve("small.snap");
+        SnapshotWriter.write(source, first, 10);
+        try (SnapshotAccountRepository repository = new SnapshotAccountRepository(first)) {
+            AccountRecord blocked = repository.findAccount("ACC000000002");
+            check(blocked.getBalance() == -0.5 && blocked.isBlocked() && blocked.getFailedAttempts() == 3,
+                    "blocked account differs");
+            check(repository.findAccount("ACC000000001").getCurrency() == BankCurrency.USD, "currency lost");
+            check(repository.findTransactions("ACC000000001").size() == 1, "history lost");
+
+            String stored = repository.findPin("ACC000000002");
+            check(PinHash.isHashed(stored) && PinHash.matches(stored, "2222"), "PIN not stored as a hash");
+
+            repository.saveAccount(new AccountRecord("ACC000000003", "New", 1, false, 0, BankCurrency.INR));
+            repository.saveAccount(new AccountRecord("ACC000000001", "Asha", 50, false, 0, BankCurrency.USD));
+            repository.appendTransactions("ACC000000001", Arrays.asList(
+                    new Transaction("WITHDRAWAL", 45, 50, new Date(BASE_MILLIS + 1), BankCurrency.USD)));
+            check(repository.countAccounts() == 3, "overlay account not counted");
+            check(repository.findTransactions("ACC000000001").size() == 2, "overlay history not appended");
+
+            Path second = dir.resolve("small2.snap");
+            SnapshotWriter.write(repository, second, 1);
+            try (SnapshotAccountRepository folded = new SnapshotAccountRepository(second)) {
+                check(folded.countAccounts() == 3, "folded image counts " + folded.countAccounts());
+                check(folded.findAccount("ACC000000001").getBalance() == 50, "overlay balance not folded in");
+                check(folded.findAccount("ACC000000001").getOpeningBalance() == 95, "opening balance not moved to the kept tail");
+                check(folded.findTransactions("ACC000000001").size() == 1, "recent history not trimmed");
+            }
+        }
+        System.out.println("round trip with overlay and hashed PINs: OK");
+    }
+
+    // A writer closed without finish() leaves the previous image untouched
+    private static void checkAbandonedWrite(Path dir) throws IOException {
+        InMemoryAccountRepository source = new InMemoryAccountRepository();
+        source.saveAccount(new AccountRecord("ACC000000001", "Asha", 100, false, 0));
+        Path image = dir.resolve("replace.snap");
+        SnapshotWriter.write(source, image, 10);
+        byte[] before = Files.readAllBytes(image);
+
+        try (SnapshotWriter writer = new SnapshotWriter(image, 10)) {
+            writer.add(new AccountRecord("ACC000000002", "Ravi", 1, false, 0), null, new ArrayList<>());
+        }
+        check(Arrays.equals(before, Files.readAllBytes(image)), "abandoned write changed the image");
+        check(!Files.exists(image.resolveSibling(image.getFileName() + ".tmp")), "temporary file left behind");
+        try (SnapshotAccountRepository repository = new SnapshotAccountRepository(image)) {
+            check(repository.countAccounts() == 1 && repository.findAccount("ACC000000001") != null,
+                    "old image unreadable");
+        }
+
+        source.saveAccount(new AccountRecord("ACC000000002", "Ravi", 1, false, 0));
+        SnapshotWriter.write(source, image, 10);
+        try (SnapshotAccountRepository repository = new SnapshotAccountRepository(image)) {
+            check(repository.countAccounts() == 2, "finished write did not replace the image");
+        }
+        System.out.println("abandoned write keeps the old image: OK");
+    }
+
+    // Changes made on top of an image are still there when the image is opened again
+    private static void checkDurableOverlay(Path dir) throws IOException {
+        InMemoryAccountRepository source = new InMemoryAccountRepository();
+        source.saveAccount(new AccountRecord("ACC000000001", "Asha", 100, false, 0));
+        source.savePin("ACC000000001", PinHash.hash("1111"));
+        Path image = dir.resolve("durable.snap");
+        SnapshotWriter.write(source, image, 10);
+
+        boolean jdbc = hasH2();
+        AccountRepository overlay = jdbc ? h2(dir) : new InMemoryAccountRepository();
+        SnapshotAccountRepository repository = new SnapshotAccountRepository(image, overlay);
+        ATM atm = repository.loadAtm("ACC000000001");
+        check(atm.deposit(25).isSuccess(), "deposit failed");
+        repository.saveAccount(new AccountRecord("ACC000000002", "Ravi", 7, false, 0));
+        if (jdbc) {
+            repository.close();
+            overlay = h2(dir);
+        }
+
+        try (SnapshotAccountRepository reopened = new SnapshotAccountRepository(image, overlay)) {
+            check(reopened.countAccounts() == 2, "account added on top of the image lost, count " + reopened.countAccounts());
+            check(reopened.findAccount("ACC000000002") != null, "added account not found");
+            check(reopened.findAccount("ACC000000001").getBalance() == 125, "deposit lost");
+            check(reopened.findTransactions("ACC000000001").size() == 1, "history lost");
+            check(ReconciliationEngine.verify(reopened.loadAtm("ACC000000001"), new java.io.StringWriter()),
+                    "reopened account does not reconcile");
+            long[] seen = new long[1];
+            reopened.forEachAccount(account -> seen[0]++);
+            check(seen[0] == 2, "scan saw " + seen[0] + " accounts");
+        }
+        System.out.println("durable overlay (" + (jdbc ? "jdbc h2 file" : "in-memory stand-in") + ") after reopen: OK");
+    }
+
+    private static boolean hasH2() {
+        try {
+            Class.forName("org.h2.Driver");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static JdbcAccountRepository h2(Path dir) {
+        return new JdbcAccountRepository(new ConnectionPool("jdbc:h2:" + dir.resolve("overlay"), "sa", "", 2, 5000));
+    }
+
+    private static String account(int i) {
+        return String.format("ACC%09d", i);
+    }
+
+    private static AccountRecord record(int i) {
+        return new AccountRecord(account(i), "Holder " + i, 5000 + i % 1000, false, 0, BankCurrency.INR, 5000);
+    }
+
+    private static List<Transaction> history(int i) {
+        List<Transaction> history = new ArrayList<>(2);
+        history.add(new Transaction("DEPOSIT", 1000, 6000, new Date(BASE_MILLIS + i), BankCurrency.INR));
+        history.add(new Transaction("WITHDRAWAL", 1000 - i % 1000, 5000 + i % 1000,
+                new Date(BASE_MILLIS + i + 60_000), BankCurrency.INR));
+        return history;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+}
@@ -0,0 +1,166 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Transactions per second of the storage backends: the in-memory store and
+// JdbcAccountRepository on an embedded database. Each transaction reads an account,
+// writes the new balance and appends one history row, like a withdrawal.
+// Also checks concurrent appends to one account and the upgrade of an old schema.
+//
+// Needs a JDBC driver on the classpath for the JDBC runs, e.g. the H2 jar:
+//   javac -encoding UTF-8 -d out *.java bench/StorageBench.java
+//   java -cp out:h2.jar StorageBench [accounts] [transactions] [threads]
+public class StorageBench {
+    public static void main(String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        run("in-memory", new InMemoryAccountRepository(), accounts, transactions, threads);
+        run("jdbc h2 mem", jdbc("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", threads), accounts, transactions, threads);
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("storage-bench");
+        run("jdbc h2 file", jdbc("jdbc:h2:" + dir.resolve("bank"), threads), accounts, transactions, threads);
+
+        checkConcurrentAppends();
+        checkLegacySchemaUpgrade();
+        checkWriteThrough();
+    }
+
+    private static JdbcAccountRepository jdbc(String url, int threads) {
+        return new JdbcAccountRepository(new ConnectionPool(url, "sa", "", threads + 1, 5000));
+    }
+
+    private static void run(String name, AccountRepository repository, int accounts, int transactions, int threads)
+            throws InterruptedException {
+        List<AccountRecord> seed = new ArrayList<>(accounts);
+        for (int i = 0; i < accounts; i++) {
+            seed.add(new AccountRecord(account(i), "Holder " + i, 1_000_000, false, 0));
+        }
+        repository.saveAccounts(seed);
+
+        // Each thread owns a slice of the accounts, as terminals would own their sessions
+        for (int round = 1; round <= 2; round++) {
+            AtomicLong done = new AtomicLong();
+            List<Thread> workers = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int slice = t;
+                Thread worker = new Thread(() -> {
+                    Random random = new Random(slice);
+                    int perThread = transactions / threads;
+                    for (int i = 0; i < perThread; i++) {
+                        int index = slice + threads * random.nextInt(accounts / threads);
+                        String number = account(index);
+                        AccountRecord record = repository.findAccount(number);
+                        double balance = record.getBalance() - 1;
+                        repository.saveAccount(new AccountRecord(number, record.getHolderName(), balance, false, 0));
+                        repository.appendTransactions(number,
+                                Collections.singletonList(new Transaction("WITHDRAWAL", 1, balance)));
+                        done.incrementAndGet();
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-13s round %d: %,10.0f tx/s (%d threads)%n", name, round, done.get() / seconds, threads);
+        }
+        repository.close();
+    }
+
+    // Four writers appending to the same account must neither collide nor lose rows
+    private static void checkConcurrentAppends() throws InterruptedException {
+        JdbcAccountRepository repository = jdbc("jdbc:h2:mem:appends;DB_CLOSE_DELAY=-1", 4);
+        repository.saveAccount(new AccountRecord("ACC000000001", "Shared", 0, false, 0));
+        List<Thread> writers = new ArrayList<>();
+        AtomicLong errors = new AtomicLong();
+        for (int t = 0; t < 4; t++) {
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    try {
+                        repository.appendTransactions("ACC000000001", Collections.singletonList(
+                                new Transaction("TRANSFER TO " + String.format("%0200d", i), 1, 0)));
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        System.out.println("concurrent appends: rows=" + repository.findTransactions("ACC000000001").size()
+                + " errors=" + errors.get());
+        repository.close();
+    }
+
+    // A database written by an earlier schema version: no currency or opening balance column,
+    // plain PINs and narrow columns
+    private static void checkLegacySchemaUpgrade() throws Exception {
+        String url = "jdbc:h2:mem:legacy;DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE accounts (account_number VARCHAR(32) PRIMARY KEY, "
+                    + "holder_name VARCHAR(100) NOT NULL, balance_paise BIGINT NOT NULL, "
+                    + "blocked BOOLEAN NOT NULL, failed_attempts INT NOT NULL)");
+            statement.execute("CREATE TABLE credentials (account_number VARCHAR(32) PRIMARY KEY, pin VARCHAR(16) NOT NULL)");
+            statement.execute("CREATE TABLE transactions (account_number VARCHAR(32) NOT NULL, seq BIGINT NOT NULL, "
+                    + "type VARCHAR(64) NOT NULL, amount_paise BIGINT NOT NULL, balance_after_paise BIGINT NOT NULL, "
+                    + "created_at BIGINT NOT NULL, PRIMARY KEY (account_number, seq))");
+            statement.execute("INSERT INTO accounts VALUES ('ACC000000009', 'Legacy', 150000, FALSE, 0)");
+            statement.execute("INSERT INTO credentials VALUES ('ACC000000009', '4321')");
+            statement.execute("INSERT INTO transactions VALUES ('ACC000000009', 1, 'DEPOSIT', 50000, 150000, 0)");
+        }
+        JdbcAccountRepository repository = jdbc(url, 1);
+        ATM atm = repository.loadAtm("ACC000000009");
+        System.out.println("legacy upgrade: balance=" + atm.getBalance() + " currency=" + atm.getCurrency()
+                + " stored pin hashed=" + PinHash.isHashed(repository.findPin("ACC000000009"))
+                + " pin accepted=" + atm.validatePin("4321") + " opening=" + atm.getOpeningBalance()
+                + " reconciles=" + ReconciliationEngine.verify(atm, new java.io.StringWriter()));
+        repository.close();
+    }
+
+    // An ATM loaded from the database writes its changes back; a single pooled connection
+    // is enough, including for history reads nested inside forEachAccount
+    private static void checkWriteThrough() {
+        String url = "jdbc:h2:mem:through;DB_CLOSE_DELAY=-1";
+        JdbcAccountRepository repository = jdbc(url, 0);
+        repository.saveAccount(new AccountRecord("ACC000000007", "Through", 500, false, 0));
+        repository.savePin("ACC000000007", "1111");
+        ATM atm = repository.loadAtm("ACC000000007");
+        check(atm.withdraw(120).isSuccess() && atm.deposit(20).isSuccess(), "transactions failed");
+        check(!atm.validatePin("0000"), "wrong PIN accepted");
+        check(atm.changePin("1111", "2222"), "PIN change failed");
+        repository.close();
+
+        repository = jdbc(url, 0);
+        ATM reloaded = repository.loadAtm("ACC000000007");
+        check(reloaded.getBalance() == 400, "balance not written back: " + reloaded.getBalance());
+        check(reloaded.getTransactionHistory().size() == 2, "history not written back");
+        check(reloaded.validatePin("2222") && !reloaded.validatePin("1111"), "PIN change not written back");
+        long[] rows = new long[1];
+        JdbcAccountRepository nested = repository;
+        repository.forEachAccount(account -> nested.forEachTransaction(account.getAccountNumber(), t -> rows[0]++));
+        check(rows[0] == 2, "nested history read saw " + rows[0] + " rows");
+        System.out.println("write-through: OK");
+        repository.close();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    private static String account(int i) {
+        return String.format("ACC%09d", i);
+    }
+}